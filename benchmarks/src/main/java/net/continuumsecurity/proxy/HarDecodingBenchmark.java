@@ -0,0 +1,51 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the HAR logs returned by the history and search endpoints, from a few hundred kilobytes up to the
+ * tens of megabytes a long scan produces.
+ * <pre>
+ * java -jar target/benchmarks.jar HarDecodingBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HarDecodingBenchmark {
+    @Param({"100", "1000"})
+    public int entries;
+
+    @Param({"2048", "32768"})
+    public int bodyBytes;
+
+    private byte[] harLog;
+
+    @Setup
+    public void setUp() throws IOException {
+        harLog = Payloads.harLog(entries, bodyBytes);
+    }
+
+    @Benchmark
+    public List<HarEntry> readHarLog() throws IOException {
+        return HarUtils.readHarLog(harLog).getEntries().getEntries();
+    }
+}
@@ -0,0 +1,57 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request work of replaying history: swapping a session cookie with {@link HarUtils#changeCookieValue} and
+ * serializing the request for ZAP's core/sendHarRequest with {@link HarRequestSerializer}. Requests range from a small GET to a form post carrying
+ * many cookies and fields. {@code changeCookieValue} modifies the request in place, so each thread has its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class HarRequestBenchmark {
+    @Param({"2", "40"})
+    public int cookies;
+
+    @Param({"0", "200"})
+    public int formFields;
+
+    private HarRequest request;
+
+    @Setup
+    public void setUp() {
+        request = Payloads.harRequest(new Random(42), formFields > 0 ? "POST" : "GET",
+                "/app/account/settings?tab=profile&lang=en", cookies, formFields);
+    }
+
+    @Benchmark
+    public HarRequest changeCookieValue() {
+        return HarUtils.changeCookieValue(request, "JSESSIONID", "0F4A9C7E21B35D6870E1F2A3B4C5D6E7");
+    }
+
+    @Benchmark
+    public String serialize() throws IOException {
+        return HarRequestSerializer.serialize(request);
+    }
+}
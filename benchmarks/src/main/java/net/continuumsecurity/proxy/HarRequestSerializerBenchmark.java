@@ -0,0 +1,82 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarCookie;
+import edu.umass.cs.benchlab.har.HarCookies;
+import edu.umass.cs.benchlab.har.HarHeader;
+import edu.umass.cs.benchlab.har.HarHeaders;
+import edu.umass.cs.benchlab.har.HarPostData;
+import edu.umass.cs.benchlab.har.HarPostDataParams;
+import edu.umass.cs.benchlab.har.HarQueryParam;
+import edu.umass.cs.benchlab.har.HarQueryString;
+import edu.umass.cs.benchlab.har.HarRequest;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the original per-call JsonFactory serialization with {@link HarRequestSerializer}. Run with the GC
+ * profiler to see the allocation per request:
+ * <pre>
+ * java -jar target/benchmarks.jar HarRequestSerializerBenchmark -prof gc
+ * </pre>
+ * and compare gc.alloc.rate.norm of both benchmarks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class HarRequestSerializerBenchmark {
+    private HarRequest request;
+
+    @Setup
+    public void setUp() {
+        HarCookies cookies = new HarCookies();
+        cookies.addCookie(new HarCookie("JSESSIONID", "4D815DF50A74E9C456A1FB5CFD9B0A3D", "/", "localhost",
+                new Date(0), true, true, null));
+        HarHeaders headers = new HarHeaders();
+        headers.addHeader(new HarHeader("Host", "localhost:9090"));
+        headers.addHeader(new HarHeader("User-Agent", "Mozilla/5.0 (X11; Linux x86_64) Gecko/20100101 Firefox/60.0"));
+        headers.addHeader(new HarHeader("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8"));
+        headers.addHeader(new HarHeader("Content-Type", "application/x-www-form-urlencoded"));
+        headers.addHeader(new HarHeader("Cookie", "JSESSIONID=4D815DF50A74E9C456A1FB5CFD9B0A3D; theme=dark"));
+        HarQueryString query = new HarQueryString();
+        query.addQueryParam(new HarQueryParam("page", "2"));
+        query.addQueryParam(new HarQueryParam("sort", "name"));
+        request = new HarRequest("POST", "http://localhost:9090/app/users?page=2&sort=name", "HTTP/1.1", cookies,
+                headers, query, new HarPostData("application/x-www-form-urlencoded", new HarPostDataParams(),
+                "username=alice&password=secret&remember=true", null), -1, 44, null);
+    }
+
+    @Benchmark
+    public String perCallFactory() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        JsonGenerator g = new JsonFactory().createJsonGenerator(os);
+        g.writeStartObject();
+        request.writeHar(g);
+        g.close();
+        return os.toString("UTF-8");
+    }
+
+    @Benchmark
+    public String sharedSerializer() throws IOException {
+        return HarRequestSerializer.serialize(request);
+    }
+}
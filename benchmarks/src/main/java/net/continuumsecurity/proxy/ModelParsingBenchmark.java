@@ -0,0 +1,98 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.model.Context;
+import net.continuumsecurity.proxy.model.ScanResponse;
+import net.continuumsecurity.proxy.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zaproxy.clientapi.core.ApiResponse;
+import org.zaproxy.clientapi.core.ApiResponseList;
+import org.zaproxy.clientapi.core.ApiResponseSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the model from ZAP's answers: {@link ScanResponse} from the scans view that progress polling reads on every
+ * call, {@link Context} and {@link User}. The fromXml variants include parsing the XML into an {@link ApiResponse}, as
+ * the client API does, so the share of the model itself can be told apart.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelParsingBenchmark {
+    /**
+     * Number of scans, of include and exclude regexes of the context, and of users.
+     */
+    @Param({"10", "1000"})
+    public int size;
+
+    private String scansXml;
+    private String contextXml;
+    private String usersXml;
+    private ApiResponseList scans;
+    private ApiResponseSet context;
+    private ApiResponseList users;
+
+    @Setup
+    public void setUp() throws Exception {
+        scansXml = Payloads.scansXml(size);
+        contextXml = Payloads.contextXml(size);
+        usersXml = Payloads.usersXml(size);
+        scans = (ApiResponseList) Payloads.apiResponse(scansXml);
+        context = (ApiResponseSet) Payloads.apiResponse(contextXml);
+        users = (ApiResponseList) Payloads.apiResponse(usersXml);
+    }
+
+    @Benchmark
+    public ScanResponse scanResponse() {
+        return new ScanResponse(scans);
+    }
+
+    @Benchmark
+    public ScanResponse scanResponseFromXml() throws Exception {
+        return new ScanResponse((ApiResponseList) Payloads.apiResponse(scansXml));
+    }
+
+    @Benchmark
+    public Context context() {
+        return new Context(context);
+    }
+
+    @Benchmark
+    public Context contextFromXml() throws Exception {
+        return new Context((ApiResponseSet) Payloads.apiResponse(contextXml));
+    }
+
+    @Benchmark
+    public List<User> users() throws IOException {
+        return users(users);
+    }
+
+    @Benchmark
+    public List<User> usersFromXml() throws Exception {
+        return users((ApiResponseList) Payloads.apiResponse(usersXml));
+    }
+
+    private static List<User> users(ApiResponseList list) throws IOException {
+        List<User> result = new ArrayList<User>();
+        for (ApiResponse item : list.getItems()) {
+            result.add(new User((ApiResponseSet) item));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,254 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarCache;
+import edu.umass.cs.benchlab.har.HarContent;
+import edu.umass.cs.benchlab.har.HarCookie;
+import edu.umass.cs.benchlab.har.HarCookies;
+import edu.umass.cs.benchlab.har.HarCreator;
+import edu.umass.cs.benchlab.har.HarEntries;
+import edu.umass.cs.benchlab.har.HarEntry;
+import edu.umass.cs.benchlab.har.HarEntryTimings;
+import edu.umass.cs.benchlab.har.HarHeader;
+import edu.umass.cs.benchlab.har.HarHeaders;
+import edu.umass.cs.benchlab.har.HarLog;
+import edu.umass.cs.benchlab.har.HarPostData;
+import edu.umass.cs.benchlab.har.HarPostDataParams;
+import edu.umass.cs.benchlab.har.HarQueryParam;
+import edu.umass.cs.benchlab.har.HarQueryString;
+import edu.umass.cs.benchlab.har.HarRequest;
+import edu.umass.cs.benchlab.har.HarResponse;
+import edu.umass.cs.benchlab.har.tools.HarFileWriter;
+import org.apache.commons.codec.binary.Base64;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.zaproxy.clientapi.core.ApiResponse;
+import org.zaproxy.clientapi.core.ApiResponseFactory;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generators for realistic payloads of the size ZAP returns after a long scan: HAR logs of browsing sessions with HTML
+ * pages, JSON API calls, form posts and base64 encoded images, and the XML that ZAP's API answers views with.
+ * <p>
+ * Every generator is seeded, so a benchmark sees the same payload on every run and results stay comparable.
+ */
+final class Payloads {
+    /**
+     * Text that occurs only in the responses generated with {@link #harEntries} at every 100th index.
+     */
+    static final String NEEDLE = "csrf-token-leak-9f2c";
+
+    private static final String[] WORDS = {"account", "order", "invoice", "customer", "search", "report", "settings",
+            "profile", "product", "cart", "payment", "shipping", "review", "session", "admin", "export"};
+    private static final String[] PATHS = {"/app/", "/api/v2/", "/static/", "/admin/", "/account/"};
+    private static final String USER_AGENT = "Mozilla/5.0 (X11; Linux x86_64; rv:60.0) Gecko/20100101 Firefox/60.0";
+
+    private Payloads() {
+    }
+
+    /**
+     * @param count     Number of entries.
+     * @param bodyBytes Approximate size of each response body.
+     * @return HAR log as ZAP's core/messagesHar returns it.
+     */
+    static byte[] harLog(int count, int bodyBytes) throws IOException {
+        HarLog log = new HarLog(new HarCreator("OWASP ZAP", "2.7.0"));
+        HarEntries entries = new HarEntries();
+        for (HarEntry entry : harEntries(count, bodyBytes)) {
+            entries.addEntry(entry);
+        }
+        log.setEntries(entries);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new HarFileWriter().writeHarFile(log, os);
+        return os.toByteArray();
+    }
+
+    /**
+     * Entries cycle through an HTML page, a JSON API call, a form post and a base64 encoded image. Every 100th
+     * response contains {@link #NEEDLE}.
+     */
+    static List<HarEntry> harEntries(int count, int bodyBytes) {
+        Random random = new Random(42);
+        List<HarEntry> entries = new ArrayList<HarEntry>(count);
+        for (int i = 0; i < count; i++) {
+            int kind = i % 4;
+            String path = PATHS[random.nextInt(PATHS.length)] + word(random) + "/" + i;
+            HarRequest request = kind == 2
+                    ? harRequest(random, "POST", path, 4, 20)
+                    : harRequest(random, "GET", path + "?page=" + random.nextInt(50) + "&q=" + word(random), 4, 0);
+            HarContent content;
+            if (kind == 3) {
+                byte[] image = new byte[bodyBytes];
+                random.nextBytes(image);
+                content = new HarContent(image.length, 0, "image/png", Base64.encodeBase64String(image), "base64",
+                        null);
+            } else {
+                String text = kind == 1 ? json(random, bodyBytes) : html(random, bodyBytes);
+                if (i % 100 == 0) {
+                    text = text + NEEDLE;
+                }
+                content = new HarContent(text.length(), 0, kind == 1 ? "application/json" : "text/html; charset=UTF-8",
+                        text, null, null);
+            }
+            HarHeaders headers = new HarHeaders();
+            headers.addHeader(new HarHeader("Date", "Mon, 02 Jul 2018 10:15:00 GMT"));
+            headers.addHeader(new HarHeader("Server", "Apache-Coyote/1.1"));
+            headers.addHeader(new HarHeader("Content-Type", content.getMimeType()));
+            headers.addHeader(new HarHeader("Content-Length", String.valueOf(content.getSize())));
+            headers.addHeader(new HarHeader("Cache-Control", "no-cache, no-store, must-revalidate"));
+            HarResponse response = new HarResponse(200, "OK", "HTTP/1.1", new HarCookies(), headers, content, "",
+                    -1, content.getSize(), null);
+            entries.add(new HarEntry(new Date(1530526500000L + i * 250L), 120 + random.nextInt(400), request,
+                    response, new HarCache(), new HarEntryTimings(0, 120, 40)));
+        }
+        return entries;
+    }
+
+    /**
+     * @param cookies    Number of cookies, also sent in the Cookie header.
+     * @param formFields Number of url-encoded form fields in the body, 0 for a request without one.
+     */
+    static HarRequest harRequest(Random random, String method, String path, int cookies, int formFields) {
+        String url = "https://shop.example.com" + path;
+        HarCookies harCookies = new HarCookies();
+        StringBuilder cookieHeader = new StringBuilder("JSESSIONID=4D815DF50A74E9C456A1FB5CFD9B0A3D");
+        harCookies.addCookie(new HarCookie("JSESSIONID", "4D815DF50A74E9C456A1FB5CFD9B0A3D", "/", "shop.example.com",
+                new Date(0), true, true, null));
+        for (int i = 1; i < cookies; i++) {
+            String value = Long.toHexString(random.nextLong());
+            harCookies.addCookie(new HarCookie("pref_" + i, value, "/", "shop.example.com", new Date(0), false,
+                    false, null));
+            cookieHeader.append("; pref_").append(i).append('=').append(value);
+        }
+        HarHeaders headers = new HarHeaders();
+        headers.addHeader(new HarHeader("Host", "shop.example.com"));
+        headers.addHeader(new HarHeader("User-Agent", USER_AGENT));
+        headers.addHeader(new HarHeader("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8"));
+        headers.addHeader(new HarHeader("Accept-Language", "en-GB,en;q=0.5"));
+        headers.addHeader(new HarHeader("Referer", "https://shop.example.com/app/" + word(random)));
+        headers.addHeader(new HarHeader("Cookie", cookieHeader.toString()));
+        HarQueryString query = new HarQueryString();
+        int queryStart = url.indexOf('?');
+        if (queryStart >= 0) {
+            for (String pair : url.substring(queryStart + 1).split("&")) {
+                String[] nameValue = pair.split("=", 2);
+                query.addQueryParam(new HarQueryParam(nameValue[0], nameValue[1]));
+            }
+        }
+        HarPostData postData = null;
+        long bodySize = 0;
+        if (formFields > 0) {
+            StringBuilder body = new StringBuilder("csrf=").append(Long.toHexString(random.nextLong()));
+            for (int i = 1; i < formFields; i++) {
+                body.append('&').append(word(random)).append(i).append('=').append(word(random));
+            }
+            headers.addHeader(new HarHeader("Content-Type", "application/x-www-form-urlencoded"));
+            headers.addHeader(new HarHeader("Content-Length", String.valueOf(body.length())));
+            postData = new HarPostData("application/x-www-form-urlencoded", new HarPostDataParams(),
+                    body.toString(), null);
+            bodySize = body.length();
+        }
+        return new HarRequest(method, url, "HTTP/1.1", harCookies, headers, query, postData, -1, bodySize, null);
+    }
+
+    /**
+     * @return XML of ascan/view/scans listing the given number of scans.
+     */
+    static String scansXml(int count) {
+        StringBuilder xml = new StringBuilder("<scans type=\"list\">");
+        for (int i = 0; i < count; i++) {
+            boolean finished = i < count - 1;
+            xml.append("<scan type=\"set\"><progress>").append(finished ? 100 : 42).append("</progress><id>")
+                    .append(i).append("</id><state>").append(finished ? "FINISHED" : "RUNNING")
+                    .append("</state></scan>");
+        }
+        return xml.append("</scans>").toString();
+    }
+
+    /**
+     * @return XML of context/view/context for a context with the given number of include and of exclude regexes.
+     */
+    static String contextXml(int regexes) {
+        Random random = new Random(42);
+        StringBuilder include = new StringBuilder("[");
+        StringBuilder exclude = new StringBuilder("[");
+        for (int i = 0; i < regexes; i++) {
+            if (i > 0) {
+                include.append(", ");
+                exclude.append(", ");
+            }
+            include.append("https://shop.example.com/").append(word(random)).append('/').append(i).append(".*");
+            exclude.append("https://shop.example.com/").append(word(random)).append("/logout").append(i);
+        }
+        return "<context type=\"set\"><id>1</id><name>shop</name><description>Shop under test</description>"
+                + "<inScope>true</inScope><loggedInPattern>\\Q&lt;a href=\"logout\"&gt;\\E</loggedInPattern>"
+                + "<loggedOutPattern>\\Q&lt;a href=\"login\"&gt;\\E</loggedOutPattern>"
+                + "<includeRegexs>" + include + "]</includeRegexs><excludeRegexs>" + exclude + "]</excludeRegexs>"
+                + "<authType>formBasedAuthentication</authType>"
+                + "<authenticationDetectionMethodId>1</authenticationDetectionMethodId></context>";
+    }
+
+    /**
+     * @return XML of users/view/usersList listing the given number of users with form credentials.
+     */
+    static String usersXml(int count) {
+        StringBuilder xml = new StringBuilder("<usersList type=\"list\">");
+        for (int i = 0; i < count; i++) {
+            xml.append("<user type=\"set\"><id>").append(i).append("</id><enabled>true</enabled>")
+                    .append("<contextId>1</contextId><name>user").append(i).append("</name><credentials>")
+                    .append("{\"type\":\"UsernamePasswordAuthenticationCredentials\",\"username\":\"user")
+                    .append(i).append("@example.com\",\"password\":\"Passw0rd!").append(i)
+                    .append("\"}</credentials></user>");
+        }
+        return xml.append("</usersList>").toString();
+    }
+
+    /**
+     * Parses XML the way the client API does with ZAP's answers.
+     */
+    static ApiResponse apiResponse(String xml) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(xml)));
+        return ApiResponseFactory.getResponse(document.getFirstChild());
+    }
+
+    private static String html(Random random, int bytes) {
+        StringBuilder html = new StringBuilder(bytes + 64);
+        html.append("<!DOCTYPE html><html><head><title>").append(word(random)).append("</title></head><body>");
+        while (html.length() < bytes) {
+            String word = word(random);
+            html.append("<div class=\"row\"><a href=\"/app/").append(word).append("/").append(random.nextInt(1000))
+                    .append("\">").append(word).append("</a><p>");
+            for (int i = 0; i < 12; i++) {
+                html.append(word(random)).append(' ');
+            }
+            html.append("</p></div>\n");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    private static String json(Random random, int bytes) {
+        StringBuilder json = new StringBuilder(bytes + 64);
+        json.append("{\"items\":[");
+        for (int i = 0; json.length() < bytes; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i).append(",\"name\":\"").append(word(random)).append(' ')
+                    .append(word(random)).append("\",\"price\":").append(random.nextInt(10000) / 100.0)
+                    .append(",\"tags\":[\"").append(word(random)).append("\",\"").append(word(random)).append("\"]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+}
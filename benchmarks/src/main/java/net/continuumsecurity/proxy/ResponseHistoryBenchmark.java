@@ -0,0 +1,53 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searching decoded history for text in the responses with {@link HarUtils#responsesContaining}, as
+ * {@link ZAProxyScanner#findInResponseHistory(String, List)} does. A quarter of the generated responses are base64
+ * encoded images, which are decoded before searching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseHistoryBenchmark {
+    @Param({"1000", "10000"})
+    public int entries;
+
+    @Param({"4096"})
+    public int bodyBytes;
+
+    private List<HarEntry> history;
+
+    @Setup
+    public void setUp() {
+        history = Payloads.harEntries(entries, bodyBytes);
+    }
+
+    @Benchmark
+    public List<HarEntry> rareMatch() {
+        return HarUtils.responsesContaining(Payloads.NEEDLE, history);
+    }
+
+    @Benchmark
+    public List<HarEntry> noMatch() {
+        return HarUtils.responsesContaining("no-such-text-in-any-response", history);
+    }
+}
@@ -0,0 +1,162 @@
+package net.continuumsecurity.proxy;
+
+/**
+ * Slows browser traffic sent through {@link LoggingProxy#getSeleniumProxy()} down to the rate ZAP's passive scanner
+ * can keep up with, so its backlog of records to scan (which ZAP keeps in memory) does not grow without bound.
+ * <p>
+ * Test harnesses call {@link #awaitCapacity()} between browser actions. It returns at once while there is capacity and
+ * blocks while the passive scanner is saturated. Saturation starts when the backlog, projected one sample interval
+ * ahead from the growth rate of the history and the drain rate of the backlog, exceeds the high watermark, and ends
+ * once the backlog has dropped to the low watermark. The gap between the two keeps browsers from being released and
+ * stopped on every sample.
+ * <p>
+ * ZAP is sampled at most once per sample interval, however many threads call {@link #awaitCapacity()}, so the monitor
+ * can be shared by all browsers of a grid.
+ */
+public class BackpressureMonitor {
+    public static final int DEFAULT_HIGH_WATERMARK = 1000;
+    public static final int DEFAULT_LOW_WATERMARK = 200;
+    public static final long DEFAULT_SAMPLE_INTERVAL_MILLIS = 500;
+
+    private final ScanningProxy scanner;
+    private int highWatermark = DEFAULT_HIGH_WATERMARK;
+    private int lowWatermark = DEFAULT_LOW_WATERMARK;
+    private long sampleIntervalMillis = DEFAULT_SAMPLE_INTERVAL_MILLIS;
+
+    // Guarded by this.
+    private long sampledAt;
+    private boolean sampled;
+    private int backlog;
+    private int historyCount;
+    private double arrivalRate;
+    private double drainRate;
+    private boolean saturated;
+    private long throttledMillis;
+
+    public BackpressureMonitor(ScanningProxy scanner) {
+        this.scanner = scanner;
+    }
+
+    /**
+     * @param highWatermark Projected number of records to scan above which callers are held back.
+     * @param lowWatermark  Number of records to scan at or below which held back callers are released.
+     */
+    public synchronized void setWatermarks(int highWatermark, int lowWatermark) {
+        if (lowWatermark < 0 || lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("Parameter lowWatermark must be between 0 and highWatermark.");
+        }
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+    }
+
+    public synchronized void setSampleIntervalMillis(long sampleIntervalMillis) {
+        this.sampleIntervalMillis = sampleIntervalMillis;
+    }
+
+    /**
+     * Blocks until the passive scanner has capacity for more traffic.
+     *
+     * @throws ProxyException If interrupted while waiting.
+     */
+    public void awaitCapacity() throws ProxyException {
+        awaitCapacity(Long.MAX_VALUE / 1000000L);
+    }
+
+    /**
+     * Blocks until the passive scanner has capacity for more traffic or the timeout expires.
+     *
+     * @param timeoutMillis Maximum time to wait.
+     * @return Whether there is capacity, false if the timeout expired first.
+     * @throws ProxyException If interrupted while waiting.
+     */
+    public boolean awaitCapacity(long timeoutMillis) throws ProxyException {
+        long start = System.nanoTime();
+        long deadline = start + timeoutMillis * 1000000L;
+        try {
+            while (isSaturated()) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    return false;
+                }
+                try {
+                    Thread.sleep(Math.min(sampleIntervalMillis(), (left + 999999L) / 1000000L));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ProxyException(e);
+                }
+            }
+            return true;
+        } finally {
+            long waited = (System.nanoTime() - start) / 1000000L;
+            synchronized (this) {
+                throttledMillis += waited;
+            }
+        }
+    }
+
+    /**
+     * Returns whether callers are currently held back, sampling ZAP if the last sample is older than the sample
+     * interval.
+     */
+    public synchronized boolean isSaturated() throws ProxyException {
+        long now = System.nanoTime();
+        if (!sampled || now - sampledAt >= sampleIntervalMillis * 1000000L) {
+            sample(now);
+        }
+        return saturated;
+    }
+
+    private void sample(long now) {
+        int currentBacklog = scanner.getPassiveScanRecordsToScan();
+        int currentHistory = scanner.getHistoryCount();
+        if (sampled) {
+            double seconds = Math.max(1, now - sampledAt) / 1000000000.0;
+            // A new session resets the history, in which case the new count is all that arrived.
+            int arrived = currentHistory >= historyCount ? currentHistory - historyCount : currentHistory;
+            arrivalRate = arrived / seconds;
+            drainRate = Math.max(0, backlog + arrived - currentBacklog) / seconds;
+        }
+        sampled = true;
+        sampledAt = now;
+        backlog = currentBacklog;
+        historyCount = currentHistory;
+        double projected = backlog + (arrivalRate - drainRate) * sampleIntervalMillis / 1000.0;
+        if (saturated) {
+            saturated = backlog > lowWatermark;
+        } else {
+            saturated = projected > highWatermark;
+        }
+    }
+
+    private synchronized long sampleIntervalMillis() {
+        return sampleIntervalMillis;
+    }
+
+    /**
+     * @return Number of records to scan at the last sample.
+     */
+    public synchronized int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * @return Messages added to the history per second between the last two samples.
+     */
+    public synchronized double getArrivalRate() {
+        return arrivalRate;
+    }
+
+    /**
+     * @return Records passively scanned per second between the last two samples.
+     */
+    public synchronized double getDrainRate() {
+        return drainRate;
+    }
+
+    /**
+     * @return Total time callers have spent in {@link #awaitCapacity()}.
+     */
+    public synchronized long getThrottledMillis() {
+        return throttledMillis;
+    }
+}
@@ -0,0 +1,175 @@
+package net.continuumsecurity.proxy;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache for ZAP configuration that is read far more often than it changes: contexts, users,
+ * authentication methods and scripts. Entries are invalidated by the mutators of {@link ZAProxyScanner}; a time to
+ * live can be set to also pick up changes made to ZAP by other clients.
+ * Keys are grouped by region ("context/", "users/", ...), so a mutator can drop exactly what it affects.
+ * <p>
+ * Every invalidation starts a new generation. A reader takes the {@link #generation()} before fetching from ZAP and
+ * passes it to {@link #put}, which drops the value if anything was invalidated in the meantime, as it may have been
+ * read before the change. Cached values are shared, so callers hand out copies of mutable ones.
+ */
+class ConfigurationCache {
+    static final String CONTEXTS = "contexts";
+    static final String SCRIPTS = "scripts";
+
+    private final ConcurrentMap<String, Entry<?>> entries = new ConcurrentHashMap<String, Entry<?>>();
+    private final ConcurrentMap<String, String> contextNamesById = new ConcurrentHashMap<String, String>();
+    private volatile boolean enabled = true;
+    private volatile long ttlMillis;
+    private final AtomicLong generation = new AtomicLong();
+
+    static class Entry<T> {
+        private final T value;
+        private final long createdAt = System.currentTimeMillis();
+
+        Entry(T value) {
+            this.value = value;
+        }
+
+        T getValue() {
+            return value;
+        }
+    }
+
+    static String context(String contextName) {
+        return "context/" + contextName;
+    }
+
+    static String includeRegexs(String contextName) {
+        return "context/" + contextName + "/includeRegexs";
+    }
+
+    static String excludeRegexs(String contextName) {
+        return "context/" + contextName + "/excludeRegexs";
+    }
+
+    static String users(String contextId) {
+        return "users/" + contextId;
+    }
+
+    static String user(String contextId, String userId) {
+        return "users/" + contextId + "/" + userId;
+    }
+
+    static String authMethod(String contextId) {
+        return "authMethod/" + contextId;
+    }
+
+    static String authMethodConfigParams(String authMethod) {
+        return "authMethodConfigParams/" + authMethod;
+    }
+
+    /**
+     * Returns the cached entry for the key, or null on a miss. The entry's value may itself be null, as ZAP reports
+     * e.g. an empty list of include regexes as null.
+     */
+    @SuppressWarnings("unchecked")
+    <T> Entry<T> get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        Entry<T> entry = (Entry<T>) entries.get(key);
+        if (entry != null && ttlMillis > 0 && System.currentTimeMillis() - entry.createdAt >= ttlMillis) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * @return The current generation, to be read before fetching a value that is then {@link #put}.
+     */
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Caches the value unless the cache was invalidated since the given generation.
+     */
+    void put(String key, Object value, long readAt) {
+        if (!enabled || generation.get() != readAt) {
+            return;
+        }
+        Entry<Object> entry = new Entry<Object>(value);
+        entries.put(key, entry);
+        if (generation.get() != readAt) {
+            // Invalidated while storing.
+            entries.remove(key, entry);
+        }
+    }
+
+    void putContext(String contextName, Object context, String contextId, long readAt) {
+        if (contextId != null) {
+            contextNamesById.put(contextId, contextName);
+        }
+        put(context(contextName), context, readAt);
+    }
+
+    void invalidate(String key) {
+        generation.incrementAndGet();
+        entries.remove(key);
+    }
+
+    /**
+     * Drops the key and every key below it, e.g. "context/Default Context" also drops its regex lists.
+     */
+    void invalidateTree(String key) {
+        generation.incrementAndGet();
+        for (Iterator<String> keys = entries.keySet().iterator(); keys.hasNext(); ) {
+            String candidate = keys.next();
+            if (candidate.equals(key) || candidate.startsWith(key + "/")) {
+                keys.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops the context details for a context known only by id, as the authentication and user APIs address
+     * contexts by id while the context APIs use names.
+     */
+    void invalidateContextById(String contextId) {
+        String contextName = contextNamesById.get(contextId);
+        if (contextName != null) {
+            invalidate(context(contextName));
+        } else {
+            invalidateTree("context");
+        }
+    }
+
+    void invalidateUser(String contextId, String userId) {
+        invalidate(users(contextId));
+        invalidate(user(contextId, userId));
+    }
+
+    void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+        contextNamesById.clear();
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            invalidateAll();
+        }
+    }
+
+    long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+}
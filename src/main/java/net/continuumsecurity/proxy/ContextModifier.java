@@ -1,5 +1,15 @@
 package net.continuumsecurity.proxy;
 
+import java.util.List;
+
 public interface ContextModifier {
     void setIncludeInContext(String contextName, String regex);
+
+    void setExcludeFromContext(String contextName, String regex);
+
+    /**
+     * Replaces the include and exclude regexes of the context, the only way to remove regexes from a context.
+     * Requires ZAP 2.9 or later.
+     */
+    void setContextRegexs(String contextName, List<String> includeRegexs, List<String> excludeRegexs);
 }
@@ -0,0 +1,257 @@
+package net.continuumsecurity.proxy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Collects spider, scanner and context exclusions and pushes them to ZAP as a few compacted regexes instead of one
+ * regex per exclusion. ZAP matches every request it sends against each exclusion regex in turn, so hundreds of
+ * exclusions slow scans down noticeably; a handful of alternations matching the same URLs does not.
+ * <p>
+ * Compaction drops duplicates, drops literals and prefixes covered by a shorter prefix ({@code literal.*}), and
+ * factors the common prefixes of the remaining literals into a single regex, e.g. {@code http://a/x} and
+ * {@code http://a/y.*} become {@code http://a/(?:x|y.*)}. Other regexes are joined into alternations. Each compacted
+ * regex is kept below a maximum length so it still fits in an API request.
+ * <p>
+ * The spider and scanner exclusion lists are replaced on {@link #flush()}, removing exclusions added to ZAP by other
+ * means. So are the exclusions of contexts given new exclusions since the last flush, keeping their include regexes;
+ * when ZAP only lacks some of the compacted regexes, those are added instead, which also works before ZAP 2.9.
+ */
+public class ExclusionManager {
+    public static final int DEFAULT_MAX_REGEX_LENGTH = 2000;
+    private static final int ENTRY_OVERHEAD = 8;
+
+    private final ScanningProxy scanner;
+    private final Spider spider;
+    private final ContextModifier contextModifier;
+    private final int maxRegexLength;
+    private final Set<String> spiderExclusions = new LinkedHashSet<String>();
+    private final Set<String> scannerExclusions = new LinkedHashSet<String>();
+    private final Map<String, Set<String>> contexts = new LinkedHashMap<String, Set<String>>();
+    private final Set<String> changedContexts = new LinkedHashSet<String>();
+    private boolean spiderChanged;
+    private boolean scannerChanged;
+
+    public ExclusionManager(ZAProxyScanner scanner) {
+        this(scanner, scanner, scanner, DEFAULT_MAX_REGEX_LENGTH);
+    }
+
+    /**
+     * @param scanner         Scanner the scanner exclusions are pushed to, also used to read context regexes.
+     * @param spider          Spider the spider exclusions are pushed to.
+     * @param contextModifier Receives the context exclusions.
+     * @param maxRegexLength  Maximum length of a compacted regex, individual regexes longer than this are kept as is.
+     */
+    public ExclusionManager(ScanningProxy scanner, Spider spider, ContextModifier contextModifier,
+                            int maxRegexLength) {
+        this.scanner = scanner;
+        this.spider = spider;
+        this.contextModifier = contextModifier;
+        this.maxRegexLength = maxRegexLength;
+    }
+
+    public synchronized void excludeFromSpider(String regex) {
+        spiderChanged |= spiderExclusions.add(regex);
+    }
+
+    public synchronized void excludeFromScanner(String regex) {
+        scannerChanged |= scannerExclusions.add(regex);
+    }
+
+    public synchronized void excludeFromContext(String contextName, String regex) {
+        Set<String> exclusions = contexts.get(contextName);
+        if (exclusions == null) {
+            exclusions = new LinkedHashSet<String>();
+            contexts.put(contextName, exclusions);
+        }
+        if (exclusions.add(regex)) {
+            changedContexts.add(contextName);
+        }
+    }
+
+    /**
+     * Pushes the compacted exclusions that changed since the last flush.
+     *
+     * @throws ProxyException
+     */
+    public synchronized void flush() throws ProxyException {
+        if (spiderChanged) {
+            spider.clearExcludedFromSpider();
+            for (String regex : compact(spiderExclusions, maxRegexLength)) {
+                spider.excludeFromSpider(regex);
+            }
+            spiderChanged = false;
+        }
+        if (scannerChanged) {
+            scanner.clearExcludedFromScanner();
+            for (String regex : compact(scannerExclusions, maxRegexLength)) {
+                scanner.excludeFromScanner(regex);
+            }
+            scannerChanged = false;
+        }
+        for (Iterator<String> changed = changedContexts.iterator(); changed.hasNext(); ) {
+            String contextName = changed.next();
+            List<String> compacted = compact(contexts.get(contextName), maxRegexLength);
+            List<String> excluded = orEmpty(scanner.getExcludedRegexs(contextName));
+            if (compacted.containsAll(excluded)) {
+                for (String regex : compacted) {
+                    if (!excluded.contains(regex)) {
+                        contextModifier.setExcludeFromContext(contextName, regex);
+                    }
+                }
+            } else {
+                // Drops the regexes pushed before that the compacted ones now cover.
+                contextModifier.setContextRegexs(contextName, orEmpty(scanner.getIncludedRegexs(contextName)),
+                        compacted);
+            }
+            changed.remove();
+        }
+    }
+
+    private static List<String> orEmpty(List<String> regexs) {
+        return regexs == null ? Collections.<String>emptyList() : regexs;
+    }
+
+    /**
+     * Merges the regexes into as few regexes as possible, each at most maxLength characters long, that together
+     * match exactly the same URLs.
+     */
+    static List<String> compact(Collection<String> regexs, int maxLength) {
+        Set<String> literals = new TreeSet<String>();
+        Set<String> prefixes = new TreeSet<String>();
+        List<String> others = new ArrayList<String>();
+        for (String regex : new LinkedHashSet<String>(regexs)) {
+            String literal;
+            if ((literal = Regexes.literalPrefix(regex)) != null) {
+                prefixes.add(literal);
+            } else if ((literal = Regexes.literal(regex)) != null) {
+                literals.add(literal);
+            } else {
+                others.add(regex);
+            }
+        }
+
+        // Sorted, so a prefix covering later entries comes before them.
+        TreeMap<String, Boolean> entries = new TreeMap<String, Boolean>();
+        for (String literal : literals) {
+            entries.put(literal, Boolean.FALSE);
+        }
+        for (String prefix : prefixes) {
+            entries.put(prefix, Boolean.TRUE);
+        }
+        List<String> compacted = new ArrayList<String>();
+        Node root = new Node();
+        int bound = 0;
+        String coveringPrefix = null;
+        for (Map.Entry<String, Boolean> entry : entries.entrySet()) {
+            String text = entry.getKey();
+            if (coveringPrefix != null && text.startsWith(coveringPrefix)) {
+                continue;
+            }
+            if (entry.getValue()) {
+                coveringPrefix = text;
+            }
+            // Upper bound of the factored regex: every entry adds at most its escaped text, a group and a separator.
+            int cost = Regexes.escape(text).length() + ENTRY_OVERHEAD;
+            if (bound > 0 && bound + cost > maxLength) {
+                compacted.add(root.toRegex());
+                root = new Node();
+                bound = 0;
+            }
+            root.add(text, entry.getValue());
+            bound += cost;
+        }
+        if (bound > 0) {
+            compacted.add(root.toRegex());
+        }
+
+        StringBuilder alternation = new StringBuilder();
+        for (String regex : others) {
+            if (!Regexes.isSelfContained(regex) || regex.length() + 5 > maxLength) {
+                compacted.add(regex);
+                continue;
+            }
+            if (alternation.length() > 0 && alternation.length() + regex.length() + 6 > maxLength) {
+                compacted.add(alternation.toString());
+                alternation.setLength(0);
+            }
+            if (alternation.length() > 0) {
+                alternation.append('|');
+            }
+            alternation.append("(?:").append(regex).append(')');
+        }
+        if (alternation.length() > 0) {
+            compacted.add(alternation.toString());
+        }
+        return compacted;
+    }
+
+    /**
+     * Character trie of literals (terminal) and prefixes (any suffix).
+     */
+    private static final class Node {
+        private final TreeMap<Character, Node> children = new TreeMap<Character, Node>();
+        private boolean terminal;
+        private boolean anySuffix;
+
+        void add(String text, boolean prefix) {
+            Node node = this;
+            for (int i = 0; i < text.length(); i++) {
+                Node child = node.children.get(text.charAt(i));
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(text.charAt(i), child);
+                }
+                node = child;
+            }
+            if (prefix) {
+                node.anySuffix = true;
+                node.children.clear();
+            } else {
+                node.terminal = true;
+            }
+        }
+
+        String toRegex() {
+            StringBuilder regex = new StringBuilder();
+            append(regex);
+            return regex.toString();
+        }
+
+        private void append(StringBuilder regex) {
+            if (anySuffix) {
+                regex.append(Regexes.ANY_SUFFIX);
+                return;
+            }
+            if (children.size() == 1 && !terminal) {
+                Map.Entry<Character, Node> only = children.firstEntry();
+                regex.append(Regexes.escape(String.valueOf(only.getKey())));
+                only.getValue().append(regex);
+                return;
+            }
+            if (children.isEmpty()) {
+                return;
+            }
+            regex.append("(?:");
+            boolean first = true;
+            for (Map.Entry<Character, Node> child : children.entrySet()) {
+                if (!first) {
+                    regex.append('|');
+                }
+                first = false;
+                regex.append(Regexes.escape(String.valueOf(child.getKey())));
+                child.getValue().append(regex);
+            }
+            regex.append(terminal ? ")?" : ")");
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarEntry;
+import edu.umass.cs.benchlab.har.HarHeader;
+import edu.umass.cs.benchlab.har.HarPostData;
+import edu.umass.cs.benchlab.har.HarRequest;
+import net.continuumsecurity.proxy.model.ReplayResult;
+import net.continuumsecurity.proxy.model.ResponseFingerprint;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Fuzzes named injection points of a template request with lists of payloads, sending the requests concurrently
+ * through a {@link HarReplayEngine}. Injection points are marked in the template (URL, headers, cookies, query or
+ * body) as {@code {{name}}}; each payload is placed in one point at a time while the other points keep their default
+ * values. Payloads are inserted as given, so they must already be encoded as the surrounding text requires.
+ * <p>
+ * Each response is reduced to a {@link ResponseFingerprint} as soon as it arrives and compared with the response to
+ * the defaults (the baseline), so anomalies can be found across many payloads without keeping response bodies.
+ */
+public class HarFuzzer {
+    public static final int DEFAULT_MAX_DISTANCE = 8;
+    public static final long DEFAULT_MAX_EXTRA_TIME_MILLIS = 2000;
+
+    private final LoggingProxy proxy;
+    private final String template;
+    private final Map<String, String> defaults = new LinkedHashMap<String, String>();
+    private final Map<String, List<String>> payloads = new LinkedHashMap<String, List<String>>();
+    private final HarReplayEngine engine;
+    private int maxDistance = DEFAULT_MAX_DISTANCE;
+    private long maxExtraTimeMillis = DEFAULT_MAX_EXTRA_TIME_MILLIS;
+
+    public HarFuzzer(LoggingProxy proxy, HarRequest template) {
+        this.proxy = proxy;
+        this.engine = new HarReplayEngine(proxy);
+        try {
+            this.template = HarRequestSerializer.serialize(template);
+        } catch (IOException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    /**
+     * @param name         Name of the point, marked as {{name}} in the template.
+     * @param defaultValue Value used while other points are fuzzed, and for the baseline.
+     * @param values       Payloads to try.
+     */
+    public HarFuzzer injectionPoint(String name, String defaultValue, List<String> values) {
+        defaults.put(name, defaultValue);
+        payloads.put(name, values);
+        return this;
+    }
+
+    public void setConcurrency(int concurrency) {
+        engine.setConcurrency(concurrency);
+    }
+
+    public void setRequestsPerSecondPerHost(double requestsPerSecondPerHost) {
+        engine.setRequestsPerSecondPerHost(requestsPerSecondPerHost);
+    }
+
+    /**
+     * @param maxDistance Number of simhash bits a body may differ from the baseline before it is anomalous.
+     */
+    public void setMaxDistance(int maxDistance) {
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * @param maxExtraTimeMillis Time a response may take longer than the baseline before it is anomalous.
+     */
+    public void setMaxExtraTimeMillis(long maxExtraTimeMillis) {
+        this.maxExtraTimeMillis = maxExtraTimeMillis;
+    }
+
+    /**
+     * Builds the request for the given injection point values.
+     */
+    public HarRequest request(Map<String, String> values) {
+        String json = template;
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            json = json.replace("{{" + value.getKey() + "}}", HarRequestSerializer.escape(value.getValue()));
+        }
+        try {
+            HarRequest request = HarRequestSerializer.deserialize(json);
+            updateBodySize(request);
+            return request;
+        } catch (IOException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    /**
+     * Sets bodySize and any Content-Length header to the length of the body with the payloads in place.
+     */
+    private static void updateBodySize(HarRequest request) throws UnsupportedEncodingException {
+        HarPostData postData = request.getPostData();
+        if (postData == null || postData.getText() == null) {
+            return;
+        }
+        long bodySize = postData.getText().getBytes("UTF-8").length;
+        request.setBodySize(bodySize);
+        if (request.getHeaders() == null) {
+            return;
+        }
+        for (HarHeader header : request.getHeaders().getHeaders()) {
+            if ("content-length".equalsIgnoreCase(header.getName())) {
+                header.setValue(Long.toString(bodySize));
+            }
+        }
+    }
+
+    /**
+     * Sends the baseline request, then all payloads.
+     *
+     * @return The fingerprints of the payload responses in completion order, each compared with the baseline.
+     */
+    public Iterator<ResponseFingerprint> run() {
+        final ResponseFingerprint baseline = baseline();
+        final Map<HarRequest, String[]> sent = Collections.synchronizedMap(new IdentityHashMap<HarRequest, String[]>());
+        final HarReplayEngine.Replay replay = engine.replay(new PayloadIterator(sent));
+        return new Iterator<ResponseFingerprint>() {
+            @Override
+            public boolean hasNext() {
+                return replay.hasNext();
+            }
+
+            @Override
+            public ResponseFingerprint next() {
+                ReplayResult result = replay.next();
+                String[] pointAndPayload = result.getRequest() == null ? null : sent.remove(result.getRequest());
+                if (pointAndPayload == null) {
+                    pointAndPayload = new String[2];
+                }
+                ResponseFingerprint fingerprint = fingerprint(pointAndPayload[0], pointAndPayload[1],
+                        result.getEntries(), result.getError());
+                compare(baseline, fingerprint);
+                return fingerprint;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Sends the request with all points at their default values.
+     */
+    public ResponseFingerprint baseline() {
+        try {
+            return fingerprint(null, null, proxy.makeRequest(request(defaults), false), null);
+        } catch (RuntimeException e) {
+            return fingerprint(null, null, null, e);
+        }
+    }
+
+    private void compare(ResponseFingerprint baseline, ResponseFingerprint fingerprint) {
+        fingerprint.setDistance(ResponseSketches.hammingDistance(baseline.getSimhash(), fingerprint.getSimhash()));
+        fingerprint.setAnomalous(fingerprint.getError() != null
+                || fingerprint.getStatus() != baseline.getStatus()
+                || fingerprint.getLengthBucket() != baseline.getLengthBucket()
+                || fingerprint.getDistance() > maxDistance
+                || fingerprint.getTimeMillis() - baseline.getTimeMillis() > maxExtraTimeMillis);
+    }
+
+    static ResponseFingerprint fingerprint(String point, String payload, List<HarEntry> entries,
+                                           RuntimeException error) {
+        if (error != null || entries == null || entries.isEmpty()) {
+            return new ResponseFingerprint(point, payload, 0, 0, 0, 0, 0,
+                    error != null ? String.valueOf(error.getMessage()) : "No response");
+        }
+        HarEntry entry = entries.get(entries.size() - 1);
+        String body = ResponseSketches.bodyText(entry);
+        return new ResponseFingerprint(point, payload, entry.getResponse().getStatus(), body.length(),
+                ResponseSketches.lengthBucket(body.length()), ResponseSketches.simhash(body), entry.getTime(), null);
+    }
+
+    /**
+     * Builds the payload requests lazily, recording which point and payload each one carries.
+     */
+    private class PayloadIterator implements Iterator<HarRequest> {
+        private final Map<HarRequest, String[]> sent;
+        private final Iterator<Map.Entry<String, List<String>>> points = payloads.entrySet().iterator();
+        private String point;
+        private Iterator<String> values = Collections.<String>emptyList().iterator();
+
+        PayloadIterator(Map<HarRequest, String[]> sent) {
+            this.sent = sent;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!values.hasNext() && points.hasNext()) {
+                Map.Entry<String, List<String>> next = points.next();
+                point = next.getKey();
+                values = next.getValue().iterator();
+            }
+            return values.hasNext();
+        }
+
+        @Override
+        public HarRequest next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String payload = values.next();
+            Map<String, String> current = new LinkedHashMap<String, String>(defaults);
+            current.put(point, payload);
+            HarRequest request = request(current);
+            sent.put(request, new String[]{point, payload});
+            return request;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
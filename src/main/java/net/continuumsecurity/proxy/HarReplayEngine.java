@@ -0,0 +1,263 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarEntry;
+import edu.umass.cs.benchlab.har.HarRequest;
+import net.continuumsecurity.proxy.model.ReplayResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays recorded requests through ZAP ({@link LoggingProxy#makeRequest}) with bounded concurrency and an optional
+ * rate limit per target host, after passing each request through the configured mutators. Results are streamed back
+ * in completion order, so they can be checked while later requests are still in flight:
+ * <pre>
+ * HarReplayEngine engine = new HarReplayEngine(scanner);
+ * engine.addMutator(sessionOfOtherUser);
+ * engine.setRequestsPerSecondPerHost(20);
+ * for (Iterator&lt;ReplayResult&gt; results = engine.replay(history); results.hasNext(); ) {
+ *     ReplayResult result = results.next();
+ *     ...
+ * }
+ * </pre>
+ * Requests are read from the input lazily: at most twice the concurrency are sent or waiting to be consumed, so
+ * replaying a large recording does not hold all responses in memory. Mutators work on a copy of each request, so the
+ * input is left as it was and can be replayed again, also concurrently.
+ * <p>
+ * A replay that is not consumed to the end must be {@link Replay#close() closed}, otherwise its threads keep waiting
+ * for results to be taken.
+ */
+public class HarReplayEngine {
+    public static final int DEFAULT_CONCURRENCY = 8;
+
+    private final LoggingProxy proxy;
+    private final List<HarRequestMutator> mutators = new ArrayList<HarRequestMutator>();
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private double requestsPerSecondPerHost;
+    private boolean followRedirects;
+
+    public HarReplayEngine(LoggingProxy proxy) {
+        this.proxy = proxy;
+    }
+
+    /**
+     * Adds a mutator, mutators are applied in the order they were added.
+     */
+    public HarReplayEngine addMutator(HarRequestMutator mutator) {
+        mutators.add(mutator);
+        return this;
+    }
+
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Parameter concurrency must be at least 1.");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @param requestsPerSecondPerHost Maximum request rate per host (host and port), 0 for no limit (the default).
+     */
+    public void setRequestsPerSecondPerHost(double requestsPerSecondPerHost) {
+        this.requestsPerSecondPerHost = requestsPerSecondPerHost;
+    }
+
+    public void setFollowRedirects(boolean followRedirects) {
+        this.followRedirects = followRedirects;
+    }
+
+    public Replay replay(Iterable<HarRequest> requests) {
+        return replay(requests.iterator());
+    }
+
+    /**
+     * Starts replaying the requests in the background.
+     *
+     * @param requests Requests to send, consumed lazily.
+     * @return Results in completion order.
+     */
+    public Replay replay(Iterator<HarRequest> requests) {
+        Replay replay = new Replay(new ArrayList<HarRequestMutator>(mutators), concurrency,
+                new HostRateLimiter(requestsPerSecondPerHost), followRedirects);
+        replay.start(requests);
+        return replay;
+    }
+
+    /**
+     * A running replay. {@link #hasNext()} blocks until the next result is available or all requests are done.
+     */
+    public class Replay implements Iterator<ReplayResult>, Closeable {
+        private final ReplayResult end = new ReplayResult(null, null, null);
+        private final List<HarRequestMutator> mutators;
+        private final HostRateLimiter rateLimiter;
+        private final boolean followRedirects;
+        private final ExecutorService executor;
+        private final Semaphore permits;
+        private final BlockingQueue<ReplayResult> results = new LinkedBlockingQueue<ReplayResult>();
+        // Requests sent or being dispatched, plus one for the dispatcher itself.
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private Thread dispatcher;
+        private ReplayResult next;
+        private boolean finished;
+
+        private Replay(List<HarRequestMutator> mutators, int concurrency, HostRateLimiter rateLimiter,
+                       boolean followRedirects) {
+            this.mutators = mutators;
+            this.rateLimiter = rateLimiter;
+            this.followRedirects = followRedirects;
+            this.executor = Executors.newFixedThreadPool(concurrency, new ReplayThreadFactory());
+            this.permits = new Semaphore(concurrency * 2);
+        }
+
+        private void start(final Iterator<HarRequest> requests) {
+            dispatcher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (requests.hasNext()) {
+                            permits.acquire();
+                            final HarRequest request = requests.next();
+                            pending.incrementAndGet();
+                            executor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    complete(send(request));
+                                }
+                            });
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (RuntimeException e) {
+                        // Reading the input failed, report it as a result and stop.
+                        results.add(new ReplayResult(null, null, e));
+                    } finally {
+                        executor.shutdown();
+                        complete(null);
+                    }
+                }
+            }, "har-replay-dispatcher");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        }
+
+        private ReplayResult send(HarRequest request) {
+            HarRequest mutated = request;
+            try {
+                if (!mutators.isEmpty()) {
+                    mutated = HarRequestSerializer.copy(request);
+                }
+                for (HarRequestMutator mutator : mutators) {
+                    mutated = mutator.mutate(mutated);
+                }
+                rateLimiter.acquire(host(mutated.getUrl()));
+                List<HarEntry> entries = proxy.makeRequest(mutated, followRedirects);
+                return new ReplayResult(mutated, entries, null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new ReplayResult(mutated, null, new ProxyException(e));
+            } catch (IOException e) {
+                return new ReplayResult(request, null, new ProxyException(e));
+            } catch (RuntimeException e) {
+                return new ReplayResult(mutated, null, e);
+            }
+        }
+
+        private void complete(ReplayResult result) {
+            if (result != null) {
+                results.add(result);
+            }
+            if (pending.decrementAndGet() == 0) {
+                results.add(end);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            try {
+                ReplayResult result = results.take();
+                if (result == end) {
+                    finished = true;
+                    return false;
+                }
+                next = result;
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new ProxyException(e);
+            }
+        }
+
+        @Override
+        public ReplayResult next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ReplayResult result = next;
+            next = null;
+            permits.release();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Stops dispatching requests and interrupts those in flight; {@link #hasNext()} returns false afterwards.
+         */
+        public void cancel() {
+            dispatcher.interrupt();
+            executor.shutdownNow();
+            finished = true;
+            next = null;
+        }
+
+        /**
+         * Same as {@link #cancel()}; does nothing once all results have been consumed.
+         */
+        @Override
+        public void close() {
+            cancel();
+        }
+    }
+
+    private static String host(String url) {
+        try {
+            String authority = URI.create(url).getAuthority();
+            return authority != null ? authority : url;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    private static class ReplayThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "har-replay-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
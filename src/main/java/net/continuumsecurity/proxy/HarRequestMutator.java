@@ -0,0 +1,15 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarRequest;
+
+/**
+ * Rewrites a request before it is sent, e.g. to swap the session cookie of one user for another's.
+ */
+public interface HarRequestMutator {
+
+    /**
+     * @param request Request to rewrite, may be modified in place.
+     * @return The request to send, usually the given one.
+     */
+    HarRequest mutate(HarRequest request);
+}
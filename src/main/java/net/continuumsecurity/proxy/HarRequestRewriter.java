@@ -0,0 +1,335 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.AbstractNameValueComment;
+import edu.umass.cs.benchlab.har.HarCookie;
+import edu.umass.cs.benchlab.har.HarHeader;
+import edu.umass.cs.benchlab.har.HarPostData;
+import edu.umass.cs.benchlab.har.HarRequest;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.NullNode;
+import org.codehaus.jackson.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Rewrites cookies, headers, query parameters, form fields and JSON body fields of requests, e.g. to replay
+ * recorded requests as another user:
+ * <pre>
+ * HarRequestRewriter asBob = new HarRequestRewriter()
+ *         .cookie("JSESSIONID", bobSession)
+ *         .header("X-CSRF-Token", bobToken)
+ *         .jsonField("user.id", 42);
+ * </pre>
+ * Rules are looked up by name while walking each part of the request once; parts that no rule applies to are left
+ * untouched. JSON bodies are parsed, changed at the targeted paths and written back in compact form. Cookie, query,
+ * form and JSON rules only change values that are present, header rules also add missing headers. Query and form
+ * values are inserted as given, so they must already be URL encoded.
+ * <p>
+ * Further mutators added with {@link #then(HarRequestMutator)} run after the rules. Configure the rewriter before
+ * sharing it, {@link #mutate(HarRequest)} may then be called from many threads.
+ */
+public class HarRequestRewriter implements HarRequestMutator {
+    private static final String COOKIE = "cookie";
+    private static final String CONTENT_LENGTH = "content-length";
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    static {
+        // Keeps decimals in bodies that are written back exactly as they were.
+        mapper.configure(DeserializationConfig.Feature.USE_BIG_DECIMAL_FOR_FLOATS, true);
+    }
+
+    private final Map<String, String> cookies = new LinkedHashMap<String, String>();
+    private final Map<String, String> headers = new LinkedHashMap<String, String>();
+    private final Map<String, String> headerNames = new LinkedHashMap<String, String>();
+    private final Map<String, String> queryParams = new LinkedHashMap<String, String>();
+    private final Map<String, String> formFields = new LinkedHashMap<String, String>();
+    private final Map<String, JsonNode> jsonFields = new LinkedHashMap<String, JsonNode>();
+    private final List<HarRequestMutator> mutators = new ArrayList<HarRequestMutator>();
+
+    /**
+     * Sets the value of the cookie in the Cookie header(s) and the request's cookie list.
+     */
+    public HarRequestRewriter cookie(String name, String value) {
+        cookies.put(name, value);
+        return this;
+    }
+
+    /**
+     * Sets the header, replacing all headers of that name (case insensitive) or adding it if missing.
+     */
+    public HarRequestRewriter header(String name, String value) {
+        headers.put(name.toLowerCase(Locale.ENGLISH), value);
+        headerNames.put(name.toLowerCase(Locale.ENGLISH), name);
+        return this;
+    }
+
+    /**
+     * Removes all headers of that name (case insensitive).
+     */
+    public HarRequestRewriter removeHeader(String name) {
+        return header(name, null);
+    }
+
+    public HarRequestRewriter queryParam(String name, String value) {
+        queryParams.put(name, value);
+        return this;
+    }
+
+    /**
+     * Sets the value of a field in a form-urlencoded body.
+     */
+    public HarRequestRewriter formField(String name, String value) {
+        formFields.put(name, value);
+        return this;
+    }
+
+    /**
+     * Sets a field of a JSON body that is present to the given value.
+     *
+     * @param path  Field names from the top level separated by dots, e.g. {@code user.address.city}. A number selects
+     *              an array element, a name met by an array applies to each of its elements.
+     * @param value String, number, boolean, null, or a map or list written as a JSON object or array.
+     */
+    public HarRequestRewriter jsonField(String path, Object value) {
+        jsonFields.put(path, value == null ? NullNode.getInstance() : mapper.valueToTree(value));
+        return this;
+    }
+
+    public HarRequestRewriter then(HarRequestMutator mutator) {
+        mutators.add(mutator);
+        return this;
+    }
+
+    @Override
+    public HarRequest mutate(HarRequest request) {
+        boolean bodyChanged = rewriteBody(request);
+        rewriteHeaders(request, bodyChanged);
+        if (!cookies.isEmpty() && request.getCookies() != null) {
+            rewriteCookies(request.getCookies().getCookies(), cookies);
+        }
+        if (!queryParams.isEmpty()) {
+            request.setUrl(rewriteQuery(request.getUrl()));
+            if (request.getQueryString() != null) {
+                rewriteParams(request.getQueryString().getQueryParams(), queryParams);
+            }
+        }
+        HarRequest mutated = request;
+        for (HarRequestMutator mutator : mutators) {
+            mutated = mutator.mutate(mutated);
+        }
+        return mutated;
+    }
+
+    private void rewriteHeaders(HarRequest request, boolean bodyChanged) {
+        if ((headers.isEmpty() && cookies.isEmpty() && !bodyChanged) || request.getHeaders() == null) {
+            return;
+        }
+        Map<String, String> missing = new LinkedHashMap<String, String>(headers);
+        for (Iterator<HarHeader> it = request.getHeaders().getHeaders().iterator(); it.hasNext(); ) {
+            HarHeader header = it.next();
+            String name = header.getName().toLowerCase(Locale.ENGLISH);
+            if (headers.containsKey(name)) {
+                String value = missing.remove(name);
+                if (value == null) {
+                    // Removed, or a duplicate of a header that was already set.
+                    it.remove();
+                } else {
+                    header.setValue(value);
+                }
+            } else if (COOKIE.equals(name) && !cookies.isEmpty() && header.getValue() != null) {
+                String rewritten = rewritePairs(header.getValue(), ';', cookies);
+                if (rewritten != null) {
+                    header.setValue(rewritten);
+                }
+            } else if (CONTENT_LENGTH.equals(name) && bodyChanged) {
+                header.setValue(Long.toString(request.getBodySize()));
+            }
+        }
+        for (Map.Entry<String, String> header : missing.entrySet()) {
+            if (header.getValue() != null) {
+                request.getHeaders().addHeader(new HarHeader(headerNames.get(header.getKey()), header.getValue()));
+            }
+        }
+    }
+
+    private String rewriteQuery(String url) {
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return url;
+        }
+        int fragment = url.indexOf('#', query);
+        int end = fragment < 0 ? url.length() : fragment;
+        String rewritten = rewritePairs(url.substring(query + 1, end), '&', queryParams);
+        return rewritten == null ? url : url.substring(0, query + 1) + rewritten + url.substring(end);
+    }
+
+    private boolean rewriteBody(HarRequest request) {
+        HarPostData postData = request.getPostData();
+        if (postData == null || postData.getText() == null || formFields.isEmpty() && jsonFields.isEmpty()) {
+            return false;
+        }
+        String text = postData.getText();
+        String rewritten = null;
+        String mimeType = postData.getMimeType() == null ? "" : postData.getMimeType().toLowerCase(Locale.ENGLISH);
+        if (!formFields.isEmpty() && mimeType.startsWith("application/x-www-form-urlencoded")) {
+            rewritten = rewritePairs(text, '&', formFields);
+            if (postData.getParams() != null) {
+                rewriteParams(postData.getParams().getPostDataParams(), formFields);
+            }
+        } else if (!jsonFields.isEmpty() && mimeType.contains("json")) {
+            rewritten = rewriteJson(text);
+        }
+        if (rewritten == null) {
+            return false;
+        }
+        postData.setText(rewritten);
+        try {
+            request.setBodySize(rewritten.getBytes("UTF-8").length);
+        } catch (UnsupportedEncodingException e) {
+            throw new ProxyException(e);
+        }
+        return true;
+    }
+
+    /**
+     * Rewrites the values of name=value pairs, returning null if nothing changed. Spaces before a name (as in
+     * "a=1; b=2") are kept.
+     */
+    static String rewritePairs(String pairs, char separator, Map<String, String> values) {
+        StringBuilder rewritten = null;
+        int start = 0;
+        while (start <= pairs.length()) {
+            int end = pairs.indexOf(separator, start);
+            if (end < 0) {
+                end = pairs.length();
+            }
+            int nameStart = start;
+            while (nameStart < end && pairs.charAt(nameStart) == ' ') {
+                nameStart++;
+            }
+            int equals = pairs.indexOf('=', nameStart);
+            String replacement = equals > nameStart && equals < end
+                    ? values.get(pairs.substring(nameStart, equals)) : null;
+            if (replacement != null && rewritten == null) {
+                rewritten = new StringBuilder(pairs.length() + replacement.length());
+                rewritten.append(pairs, 0, start);
+            }
+            if (rewritten != null) {
+                if (replacement != null) {
+                    rewritten.append(pairs, start, equals + 1).append(replacement);
+                } else {
+                    rewritten.append(pairs, start, end);
+                }
+                if (end < pairs.length()) {
+                    rewritten.append(separator);
+                }
+            }
+            start = end + 1;
+        }
+        return rewritten == null ? null : rewritten.toString();
+    }
+
+    private String rewriteJson(String json) {
+        JsonNode root;
+        try {
+            root = mapper.readTree(json);
+        } catch (IOException e) {
+            // Not JSON after all, sent as recorded.
+            return null;
+        }
+        boolean changed = false;
+        for (Map.Entry<String, JsonNode> field : jsonFields.entrySet()) {
+            changed |= root != null && replace(root, field.getKey().split("\\."), 0, field.getValue());
+        }
+        if (!changed) {
+            return null;
+        }
+        try {
+            return mapper.writeValueAsString(root);
+        } catch (IOException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    private static boolean replace(JsonNode node, String[] path, int depth, JsonNode value) {
+        String name = path[depth];
+        boolean last = depth == path.length - 1;
+        if (node.isObject()) {
+            JsonNode child = node.get(name);
+            if (child == null) {
+                return false;
+            }
+            if (last) {
+                ((ObjectNode) node).put(name, value);
+                return true;
+            }
+            return replace(child, path, depth + 1, value);
+        }
+        if (!node.isArray()) {
+            return false;
+        }
+        ArrayNode array = (ArrayNode) node;
+        if (isIndex(name)) {
+            int index = Integer.parseInt(name);
+            if (index >= array.size()) {
+                return false;
+            }
+            if (last) {
+                array.set(index, value);
+                return true;
+            }
+            return replace(array.get(index), path, depth + 1, value);
+        }
+        boolean changed = false;
+        for (JsonNode element : array) {
+            changed |= replace(element, path, depth, value);
+        }
+        return changed;
+    }
+
+    private static boolean isIndex(String name) {
+        if (name.length() == 0 || name.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) < '0' || name.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void rewriteParams(List<? extends AbstractNameValueComment> params, Map<String, String> values) {
+        if (params == null) {
+            return;
+        }
+        for (AbstractNameValueComment param : params) {
+            String value = values.get(param.getName());
+            if (value != null) {
+                param.setValue(value);
+            }
+        }
+    }
+
+    private static void rewriteCookies(List<HarCookie> harCookies, Map<String, String> values) {
+        if (harCookies == null) {
+            return;
+        }
+        for (HarCookie cookie : harCookies) {
+            String value = values.get(cookie.getName());
+            if (value != null) {
+                cookie.setValue(value);
+            }
+        }
+    }
+}
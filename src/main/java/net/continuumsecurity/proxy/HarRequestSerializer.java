@@ -0,0 +1,114 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarRequest;
+import edu.umass.cs.benchlab.har.HarWarning;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Serializes requests into the HAR JSON accepted by core/sendHarRequest, and back.
+ * <p>
+ * The JsonFactory is shared (it is thread-safe once configured and lets Jackson recycle its per-thread buffers) and
+ * each thread reuses one character buffer, so serializing a request allocates little more than the generator and the
+ * resulting String. Writing characters also avoids the UTF-8 encode/decode round trip through a byte array. The
+ * String itself cannot be avoided, as ClientApi takes parameters as Strings and encodes them into the request body.
+ */
+public final class HarRequestSerializer {
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    // Buffers grown beyond this by unusually large requests are not kept.
+    private static final int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final ThreadLocal<ReusableWriter> BUFFERS = new ThreadLocal<ReusableWriter>() {
+        @Override
+        protected ReusableWriter initialValue() {
+            return new ReusableWriter();
+        }
+    };
+
+    private HarRequestSerializer() {
+    }
+
+    /**
+     * Writes the request as the HAR JSON accepted by core/sendHarRequest.
+     */
+    public static String serialize(HarRequest request) throws IOException {
+        ReusableWriter writer = BUFFERS.get();
+        writer.reset();
+        try {
+            JsonGenerator generator = FACTORY.createJsonGenerator(writer);
+            generator.writeStartObject();
+            request.writeHar(generator);
+            generator.close();
+            return writer.toString();
+        } finally {
+            if (writer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                BUFFERS.remove();
+            }
+        }
+    }
+
+    /**
+     * Reads a request written by {@link #serialize(HarRequest)}.
+     */
+    public static HarRequest deserialize(String json) throws IOException {
+        JsonParser parser = FACTORY.createJsonParser(json);
+        try {
+            // Skip the enclosing object and the "request" field name.
+            parser.nextToken();
+            parser.nextToken();
+            return new HarRequest(parser, new ArrayList<HarWarning>());
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Returns a deep copy of the request, so it can be changed without touching the original.
+     */
+    static HarRequest copy(HarRequest request) throws IOException {
+        return deserialize(serialize(request));
+    }
+
+    /**
+     * Escapes the text for use inside a JSON string literal.
+     */
+    static String escape(String text) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                if (escaped == null) {
+                    escaped = new StringBuilder(text.length() + 16).append(text, 0, i);
+                }
+                if (c < 0x20) {
+                    escaped.append(String.format("\\u%04x", (int) c));
+                } else {
+                    escaped.append('\\').append(c);
+                }
+            } else if (escaped != null) {
+                escaped.append(c);
+            }
+        }
+        return escaped == null ? text : escaped.toString();
+    }
+
+    private static final class ReusableWriter extends CharArrayWriter {
+        ReusableWriter() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        @Override
+        public void close() {
+            // Kept open for reuse, closing the generator must not end the buffer's life.
+        }
+    }
+}
@@ -1,24 +1,48 @@
 package net.continuumsecurity.proxy;
 
-import edu.umass.cs.benchlab.har.HarHeader;
+import edu.umass.cs.benchlab.har.HarEntry;
+import edu.umass.cs.benchlab.har.HarLog;
 import edu.umass.cs.benchlab.har.HarRequest;
+import edu.umass.cs.benchlab.har.tools.HarFileReader;
+import net.continuumsecurity.proxy.jfr.JfrEvents;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class HarUtils {
     public static HarRequest changeCookieValue(HarRequest request,String name,String value) {
-        String patternMulti = "([; ]" + name + ")=[^;]*(.*)";
-        String patternStart = "^(" + name + ")=[^;]*(.*)";
+        return new HarRequestRewriter().cookie(name, value).mutate(request);
+    }
 
-        for (HarHeader header : request.getHeaders().getHeaders()) {
-            if (header.getName().equalsIgnoreCase("COOKIE")) {
-                if (header.getValue() != null) {
-                    String updated = header.getValue().replaceAll(patternMulti, "$1=" + value + "$2");
-                    if (updated.equals(header.getValue())) {
-                        updated = header.getValue().replaceAll(patternStart, "$1=" + value + "$2");
-                    }
-                    header.setValue(updated);
+    /**
+     * Decodes a HAR log as returned by ZAP's history and search endpoints.
+     */
+    public static HarLog readHarLog(byte[] harLog) throws IOException {
+        Object event = JfrEvents.beginHarDecode();
+        HarLog log = new HarFileReader().readHarFile(new ByteArrayInputStream(harLog), null);
+        JfrEvents.endHarDecode(event, "parse", harLog.length, log.getEntries().getEntries().size());
+        return log;
+    }
+
+    /**
+     * Returns the entries whose response body contains the text, decoding base64 encoded bodies first.
+     */
+    public static List<HarEntry> responsesContaining(String text, List<HarEntry> entries) {
+        List<HarEntry> found = new ArrayList<HarEntry>();
+        for (HarEntry entry : entries) {
+            if (entry.getResponse().getContent() != null) {
+                String content = entry.getResponse().getContent().getText();
+                if ("base64".equalsIgnoreCase(entry.getResponse().getContent().getEncoding())) {
+                    content = new String(Base64.decodeBase64(content));
+                }
+                if (content.contains(text)) {
+                    found.add(entry);
                 }
             }
         }
-        return request;
+        return found;
     }
 }
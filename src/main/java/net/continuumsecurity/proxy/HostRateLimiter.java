@@ -0,0 +1,48 @@
+package net.continuumsecurity.proxy;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spaces requests to the same host evenly: each caller reserves the next free slot of its host and sleeps until then.
+ */
+class HostRateLimiter {
+    private final long intervalNanos;
+    private final ConcurrentMap<String, AtomicLong> nextSlots = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * @param requestsPerSecond Maximum rate per host, 0 or less for no limit.
+     */
+    HostRateLimiter(double requestsPerSecond) {
+        this.intervalNanos = requestsPerSecond <= 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+    }
+
+    void acquire(String host) throws InterruptedException {
+        if (intervalNanos == 0) {
+            return;
+        }
+        AtomicLong nextSlot = nextSlots.get(host);
+        if (nextSlot == null) {
+            AtomicLong created = new AtomicLong(System.nanoTime());
+            nextSlot = nextSlots.putIfAbsent(host, created);
+            if (nextSlot == null) {
+                nextSlot = created;
+            }
+        }
+        long slot;
+        while (true) {
+            long now = System.nanoTime();
+            long next = nextSlot.get();
+            slot = next - now > 0 ? next : now;
+            if (nextSlot.compareAndSet(next, slot + intervalNanos)) {
+                break;
+            }
+        }
+        long wait = slot - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -15,6 +15,37 @@ public interface LoggingProxy {
     */
 	void clear() throws ProxyException;
 
+    /*
+        Save the current session under the given name (relative names are resolved against ZAP's session directory).
+        ZAP carries on recording into the saved session.
+     */
+    void saveSession(String name, boolean overwrite) throws ProxyException;
+
+    /*
+        Load a previously saved session, replacing the current one.
+     */
+    void loadSession(String name) throws ProxyException;
+
+    /*
+        Return the path of the file the current session is saved in.
+     */
+    String getSessionLocation() throws ProxyException;
+
+    /*
+        Save the fully configured current session (contexts, users, authentication, exclusions) as the baseline for
+        resetToSnapshot(String).  Recording continues in a separate working copy, so the baseline itself stays
+        unchanged.  Proxied traffic and passive scanning should be quiet while this runs, as the baseline is briefly
+        the open session.
+     */
+    void captureSnapshot(String name) throws ProxyException;
+
+    /*
+        Discard all history, alerts and active scans and return to the session saved by captureSnapshot(String) under
+        the given name, in a fixed number of API calls regardless of how much configuration the baseline holds.  The
+        same quiet period as for captureSnapshot(String) applies.
+     */
+    void resetToSnapshot(String name) throws ProxyException;
+
     /*
         Get the history of all requests and responses, populated into HarEntrys.  A HarEntry consists of a HarRequest and HarResponse, all of the fields
         of these classes, and the classes they contain should be correctly populated.
@@ -0,0 +1,60 @@
+package net.continuumsecurity.proxy;
+
+/**
+ * Open addressing set of 64 bit values, about 8 to 16 bytes per element instead of the ~100 bytes of a boxed
+ * HashSet entry. Not thread-safe.
+ */
+final class LongHashSet {
+    private static final long EMPTY = 0;
+
+    private long[] slots = new long[1024];
+    private boolean containsEmpty;
+    private int size;
+
+    /**
+     * @return true if the value was not yet present.
+     */
+    boolean add(long value) {
+        if (value == EMPTY) {
+            boolean added = !containsEmpty;
+            containsEmpty = true;
+            size += added ? 1 : 0;
+            return added;
+        }
+        if ((size + 1) * 2 > slots.length) {
+            grow();
+        }
+        if (insert(slots, value)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] grown = new long[slots.length * 2];
+        for (long value : slots) {
+            if (value != EMPTY) {
+                insert(grown, value);
+            }
+        }
+        slots = grown;
+    }
+
+    private static boolean insert(long[] table, long value) {
+        int mask = table.length - 1;
+        int index = (int) (ResponseSketches.mix(value) & mask);
+        while (table[index] != EMPTY) {
+            if (table[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = value;
+        return true;
+    }
+}
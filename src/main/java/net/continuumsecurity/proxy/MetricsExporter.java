@@ -0,0 +1,278 @@
+package net.continuumsecurity.proxy;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import net.continuumsecurity.proxy.api.ApiMetrics;
+import net.continuumsecurity.proxy.api.EndpointStats;
+import net.continuumsecurity.proxy.model.ScanInfo;
+import org.zaproxy.clientapi.core.Alert;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves metrics about ZAP and this client in the Prometheus text exposition format on /metrics: spider and active
+ * scans by state and their progress, alerts by risk, history size, passive scan backlog and per-endpoint API call
+ * counts, errors and latency.
+ * <p>
+ * A single background poller reads ZAP at a fixed interval and renders the page; scrapes are answered from the last
+ * rendering and never reach ZAP. Alerts are counted incrementally, fetching only those raised since the previous poll.
+ * <pre>
+ * MetricsExporter exporter = new MetricsExporter(scanner);
+ * exporter.start(9464);
+ * </pre>
+ */
+public class MetricsExporter {
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 15000;
+    static final int ALERT_BATCH_SIZE = 500;
+    private static final Logger log = Logger.getLogger(MetricsExporter.class.getName());
+
+    private final ScanningProxy scanner;
+    private final Spider spider;
+    private final ApiMetrics apiMetrics;
+    private long pollIntervalMillis = DEFAULT_POLL_INTERVAL_MILLIS;
+    private volatile String page = "";
+    private ScheduledExecutorService poller;
+    private HttpServer server;
+
+    // Only touched by the poller.
+    private final Map<String, Integer> alertsByRisk = new LinkedHashMap<String, Integer>();
+    private int alertsCounted;
+    private long pollErrors;
+    private String zapMetrics = "";
+
+    public MetricsExporter(ZAProxyScanner scanner) {
+        this(scanner, scanner, scanner.getApiMetrics());
+    }
+
+    /**
+     * @param apiMetrics Metrics of the API calls to export, null to leave them out.
+     */
+    public MetricsExporter(ScanningProxy scanner, Spider spider, ApiMetrics apiMetrics) {
+        this.scanner = scanner;
+        this.spider = spider;
+        this.apiMetrics = apiMetrics;
+    }
+
+    public synchronized void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    /**
+     * Serves the metrics on the given port of the loopback interface.
+     */
+    public void start(int port) throws IOException {
+        start(new InetSocketAddress(InetAddress.getByName(null), port));
+    }
+
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The exporter has already been started.");
+        }
+        poll();
+        server = HttpServer.create(address, 0);
+        server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = page.getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                try {
+                    out.write(body);
+                } finally {
+                    out.close();
+                }
+            }
+        });
+        server.start();
+        poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "zap-metrics-poller");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        poller.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                poll();
+            }
+        }, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    /**
+     * @return Address the endpoint listens on, null if it has not been started.
+     */
+    public synchronized InetSocketAddress getAddress() {
+        return server == null ? null : server.getAddress();
+    }
+
+    /**
+     * @return The page served on the last scrape, as rendered by the last poll.
+     */
+    public String getMetricsText() {
+        return page;
+    }
+
+    /**
+     * Reads ZAP and renders the page. If ZAP cannot be read, its metrics from the previous poll are served again.
+     */
+    synchronized void poll() {
+        StringBuilder text = new StringBuilder();
+        try {
+            List<ScanInfo> scans = scanner.getScans();
+            List<ScanInfo> spiderScans = spider.getSpiderScans();
+            int historyCount = scanner.getHistoryCount();
+            int backlog = scanner.getPassiveScanRecordsToScan();
+            countNewAlerts();
+
+            header(text, "zap_scans", "gauge", "Spider and active scans by state.");
+            scanStates(text, "spider", spiderScans);
+            scanStates(text, "ascan", scans);
+            header(text, "zap_scan_progress_percent", "gauge", "Progress of each scan.");
+            scanProgress(text, "spider", spiderScans);
+            scanProgress(text, "ascan", scans);
+            header(text, "zap_alerts", "gauge", "Alerts by risk.");
+            for (Map.Entry<String, Integer> risk : alertsByRisk.entrySet()) {
+                sample(text, "zap_alerts", labels("risk", risk.getKey()), risk.getValue());
+            }
+            header(text, "zap_history_messages", "gauge", "Messages in the history.");
+            sample(text, "zap_history_messages", "", historyCount);
+            header(text, "zap_passive_scan_records_to_scan", "gauge", "Passive scan backlog.");
+            sample(text, "zap_passive_scan_records_to_scan", "", backlog);
+            zapMetrics = text.toString();
+        } catch (RuntimeException e) {
+            pollErrors++;
+            log.log(Level.WARNING, "Unable to read metrics from ZAP", e);
+            text.setLength(0);
+            text.append(zapMetrics);
+        }
+        if (apiMetrics != null) {
+            apiStats(text, apiMetrics.snapshot());
+        }
+        header(text, "zap_metrics_poll_errors_total", "counter", "Failed polls of ZAP.");
+        sample(text, "zap_metrics_poll_errors_total", "", pollErrors);
+        page = text.toString();
+    }
+
+    private void countNewAlerts() {
+        int count = scanner.getAlertsCount();
+        if (count < alertsCounted) {
+            // Alerts were deleted or a new session started.
+            alertsByRisk.clear();
+            alertsCounted = 0;
+        }
+        for (Alert.Risk risk : Alert.Risk.values()) {
+            if (!alertsByRisk.containsKey(risk.name())) {
+                alertsByRisk.put(risk.name(), 0);
+            }
+        }
+        while (alertsCounted < count) {
+            List<Alert> alerts = scanner.getAlerts(alertsCounted, Math.min(ALERT_BATCH_SIZE, count - alertsCounted));
+            if (alerts.isEmpty()) {
+                break;
+            }
+            for (Alert alert : alerts) {
+                String risk = alert.getRisk() == null ? "Unknown" : alert.getRisk().name();
+                Integer current = alertsByRisk.get(risk);
+                alertsByRisk.put(risk, current == null ? 1 : current + 1);
+            }
+            alertsCounted += alerts.size();
+        }
+    }
+
+    private static void scanStates(StringBuilder text, String type, List<ScanInfo> scans) {
+        for (ScanInfo.State state : ScanInfo.State.values()) {
+            int count = 0;
+            for (ScanInfo scan : scans) {
+                if (scan.getState() == state) {
+                    count++;
+                }
+            }
+            sample(text, "zap_scans", labels("type", type) + "," + labels("state", state.name().toLowerCase()), count);
+        }
+    }
+
+    private static void scanProgress(StringBuilder text, String type, List<ScanInfo> scans) {
+        for (ScanInfo scan : scans) {
+            sample(text, "zap_scan_progress_percent",
+                    labels("type", type) + "," + labels("id", String.valueOf(scan.getId())), scan.getProgress());
+        }
+    }
+
+    private static void apiStats(StringBuilder text, List<EndpointStats> stats) {
+        header(text, "zap_api_calls_total", "counter", "ZAP API calls by endpoint.");
+        for (EndpointStats endpoint : stats) {
+            sample(text, "zap_api_calls_total", labels("endpoint", endpoint.getEndpoint()), endpoint.getCalls());
+        }
+        header(text, "zap_api_errors_total", "counter", "Failed ZAP API calls by endpoint.");
+        for (EndpointStats endpoint : stats) {
+            sample(text, "zap_api_errors_total", labels("endpoint", endpoint.getEndpoint()), endpoint.getErrors());
+        }
+        header(text, "zap_api_response_bytes_total", "counter", "Binary payload bytes returned by endpoint.");
+        for (EndpointStats endpoint : stats) {
+            sample(text, "zap_api_response_bytes_total", labels("endpoint", endpoint.getEndpoint()),
+                    endpoint.getBytes());
+        }
+        header(text, "zap_api_latency_seconds", "summary", "ZAP API call latency by endpoint.");
+        for (EndpointStats endpoint : stats) {
+            String label = labels("endpoint", endpoint.getEndpoint());
+            sample(text, "zap_api_latency_seconds", label + ",quantile=\"0.5\"", endpoint.getP50Millis() / 1000);
+            sample(text, "zap_api_latency_seconds", label + ",quantile=\"0.9\"", endpoint.getP90Millis() / 1000);
+            sample(text, "zap_api_latency_seconds", label + ",quantile=\"0.99\"", endpoint.getP99Millis() / 1000);
+            sample(text, "zap_api_latency_seconds_sum", label,
+                    endpoint.getMeanMillis() * endpoint.getCalls() / 1000);
+            sample(text, "zap_api_latency_seconds_count", label, endpoint.getCalls());
+        }
+    }
+
+    private static void header(StringBuilder text, String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, long value) {
+        text.append(name);
+        if (labels.length() > 0) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, double value) {
+        text.append(name);
+        if (labels.length() > 0) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ').append(value).append('\n');
+    }
+
+    static String labels(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+}
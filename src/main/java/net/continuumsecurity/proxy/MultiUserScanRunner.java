@@ -0,0 +1,193 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.model.RoleCoverage;
+import net.continuumsecurity.proxy.model.User;
+import org.zaproxy.clientapi.core.Alert;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Spiders and actively scans a site as several users of a context at the same time, so covering all roles of an
+ * application takes about as long as the slowest few users instead of all of them in turn.
+ * <p>
+ * Each user gets one job: spider as the user, wait for the spider, then recursively scan the site as the user and
+ * wait for the scan. At most a configurable number of jobs run at the same time. Scans are started with
+ * {@link Spider#startSpiderAsUser} and {@link ScanningProxy#startScanAsUser}, which return the ids of the scans they
+ * start, so the jobs do not mix up each other's scans. ZAP runs the concurrent scans with its own thread pools, so
+ * its spider and active scan thread counts may need lowering for large numbers of users.
+ * <p>
+ * A failing job does not stop the others; its error is recorded in the user's {@link RoleCoverage.RoleResult}. If
+ * the run is interrupted, the running jobs stop the spider or active scan they started in ZAP.
+ */
+public class MultiUserScanRunner {
+    public static final int DEFAULT_PARALLELISM = 3;
+    private static final Logger log = Logger.getLogger(MultiUserScanRunner.class.getName());
+
+    private final Spider spider;
+    private final ScanningProxy scanner;
+    private final Authentication authentication;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private long pollIntervalMillis = SpiderResultStream.DEFAULT_POLL_INTERVAL_MILLIS;
+    private Integer maxChildren;
+
+    public MultiUserScanRunner(ZAProxyScanner scanner) {
+        this(scanner, scanner, scanner);
+    }
+
+    public MultiUserScanRunner(Spider spider, ScanningProxy scanner, Authentication authentication) {
+        this.spider = spider;
+        this.scanner = scanner;
+        this.authentication = authentication;
+    }
+
+    /**
+     * @param parallelism Number of users spidered and scanned at the same time.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parameter parallelism must be at least 1.");
+        }
+        this.parallelism = parallelism;
+    }
+
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    /**
+     * @param maxChildren Maximum number of children the spider crawls per node, null for ZAP's setting.
+     */
+    public void setMaxChildren(Integer maxChildren) {
+        this.maxChildren = maxChildren;
+    }
+
+    /**
+     * Spiders and scans the site as every enabled user of the context.
+     *
+     * @param url       Url to spider and scan.
+     * @param contextId Id of the context.
+     * @return Results per user, merged by role.
+     * @throws ProxyException
+     */
+    public RoleCoverage run(String url, String contextId) throws ProxyException {
+        List<User> enabled = new ArrayList<User>();
+        for (User user : users(contextId)) {
+            if (user.isEnabled()) {
+                enabled.add(user);
+            }
+        }
+        return run(url, contextId, enabled);
+    }
+
+    /**
+     * Spiders and scans the site as the given users of the context.
+     *
+     * @param url       Url to spider and scan.
+     * @param contextId Id of the context.
+     * @param userIds   Ids of the users, as returned by {@link Authentication#getUsersList(String)}.
+     * @return Results per user, merged by role.
+     * @throws ProxyException
+     */
+    public RoleCoverage run(String url, String contextId, Collection<String> userIds) throws ProxyException {
+        List<User> selected = new ArrayList<User>();
+        List<String> missing = new ArrayList<String>(userIds);
+        for (User user : users(contextId)) {
+            if (missing.remove(user.getId())) {
+                selected.add(user);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new ProxyException("No users with ids " + missing + " in context " + contextId + ".");
+        }
+        return run(url, contextId, selected);
+    }
+
+    private RoleCoverage run(final String url, final String contextId, List<User> users) throws ProxyException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, users.size())));
+        List<Future<RoleCoverage.RoleResult>> futures = new ArrayList<Future<RoleCoverage.RoleResult>>();
+        try {
+            for (final User user : users) {
+                futures.add(executor.submit(new Callable<RoleCoverage.RoleResult>() {
+                    @Override
+                    public RoleCoverage.RoleResult call() {
+                        return runAs(url, contextId, user);
+                    }
+                }));
+            }
+            RoleCoverage coverage = new RoleCoverage();
+            for (Future<RoleCoverage.RoleResult> future : futures) {
+                coverage.add(future.get());
+            }
+            return coverage;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProxyException(e);
+        } catch (ExecutionException e) {
+            throw new ProxyException(e.getCause());
+        } finally {
+            // Interrupts the remaining jobs if waiting was interrupted.
+            executor.shutdownNow();
+        }
+    }
+
+    private RoleCoverage.RoleResult runAs(String url, String contextId, User user) {
+        int spiderScanId = -1;
+        int scanId = -1;
+        List<String> urls = Collections.emptyList();
+        List<Alert> alerts = Collections.emptyList();
+        try {
+            spiderScanId = spider.startSpiderAsUser(url, contextId, user.getId(), maxChildren, true);
+            while (spider.getSpiderProgress(spiderScanId) < 100) {
+                Thread.sleep(pollIntervalMillis);
+            }
+            urls = spider.getSpiderResults(spiderScanId);
+            scanId = scanner.startScanAsUser(url, contextId, user.getId(), true);
+            while (scanner.getScanProgress(scanId) < 100) {
+                Thread.sleep(pollIntervalMillis);
+            }
+            alerts = scanner.getScanAlerts(scanId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop(spiderScanId, scanId);
+            return new RoleCoverage.RoleResult(user.getId(), user.getName(), spiderScanId, scanId, urls, alerts, e);
+        } catch (RuntimeException e) {
+            return new RoleCoverage.RoleResult(user.getId(), user.getName(), spiderScanId, scanId, urls, alerts, e);
+        }
+        return new RoleCoverage.RoleResult(user.getId(), user.getName(), spiderScanId, scanId, urls, alerts, null);
+    }
+
+    /**
+     * Stops the user's scan, or the spider if the scan was not started yet, so ZAP does not carry on after the run
+     * was given up.
+     */
+    private void stop(int spiderScanId, int scanId) {
+        try {
+            if (scanId >= 0) {
+                scanner.stopScan(scanId);
+            } else if (spiderScanId >= 0) {
+                spider.stopSpider(spiderScanId);
+            }
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Could not stop the scans of an interrupted job", e);
+        }
+    }
+
+    private List<User> users(String contextId) {
+        try {
+            return authentication.getUsersList(contextId);
+        } catch (IOException e) {
+            throw new ProxyException(e);
+        }
+    }
+}
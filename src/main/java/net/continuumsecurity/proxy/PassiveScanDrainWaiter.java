@@ -0,0 +1,68 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.model.PassiveScanDrain;
+
+/**
+ * Waits for the passive scan backlog to reach zero, polling {@link ScanningProxy#getPassiveScanRecordsToScan()} at an
+ * interval that follows the backlog: while records are being scanned the next poll is timed for about half the
+ * estimated time left at the observed throughput, and while the backlog does not shrink the interval doubles. Small
+ * backlogs are noticed as drained within a poll or two, big ones are not polled needlessly often.
+ */
+class PassiveScanDrainWaiter {
+    static final long MIN_INTERVAL_MILLIS = 50;
+    static final long MAX_INTERVAL_MILLIS = 5000;
+
+    private final ScanningProxy scanner;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+
+    PassiveScanDrainWaiter(ScanningProxy scanner) {
+        this(scanner, MIN_INTERVAL_MILLIS, MAX_INTERVAL_MILLIS);
+    }
+
+    PassiveScanDrainWaiter(ScanningProxy scanner, long minIntervalMillis, long maxIntervalMillis) {
+        this.scanner = scanner;
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+    }
+
+    PassiveScanDrain await(long timeoutMillis) throws ProxyException {
+        long start = System.nanoTime();
+        long deadline = start + timeoutMillis * 1000000L;
+        int initial = scanner.getPassiveScanRecordsToScan();
+        int remaining = initial;
+        long scanned = 0;
+        int polls = 1;
+        long interval = minIntervalMillis;
+        while (remaining > 0) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                break;
+            }
+            left = (left + 999999L) / 1000000L;
+            try {
+                Thread.sleep(Math.min(interval, left));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProxyException(e);
+            }
+            int previous = remaining;
+            remaining = scanner.getPassiveScanRecordsToScan();
+            polls++;
+            if (remaining < previous) {
+                scanned += previous - remaining;
+                long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000L);
+                // Half the estimated time left, so a poll lands close after the backlog is gone.
+                interval = clamp(remaining * elapsed / scanned / 2);
+            } else {
+                interval = clamp(interval * 2);
+            }
+        }
+        return new PassiveScanDrain(remaining == 0, initial, remaining, scanned,
+                (System.nanoTime() - start) / 1000000L, polls);
+    }
+
+    private long clamp(long interval) {
+        return Math.max(minIntervalMillis, Math.min(maxIntervalMillis, interval));
+    }
+}
@@ -0,0 +1,58 @@
+package net.continuumsecurity.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A single change to ZAP's configuration, computed by diffing desired against current state.
+ * Steps are run in groups: the steps of a group run in order, different groups run concurrently.
+ */
+abstract class PlanStep {
+    final String description;
+
+    PlanStep(String description) {
+        this.description = description;
+    }
+
+    abstract void run() throws Exception;
+
+    /**
+     * Runs the groups on the executor and waits for all of them, recording the description of every applied step.
+     */
+    static void runGroups(ExecutorService executor, List<List<PlanStep>> groups, final List<String> applied)
+            throws ProxyException {
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (final List<PlanStep> group : groups) {
+            if (group.isEmpty()) {
+                continue;
+            }
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (PlanStep step : group) {
+                        step.run();
+                        applied.add(step.description);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProxyException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ProxyException) {
+                    throw (ProxyException) e.getCause();
+                }
+                throw new ProxyException(e.getCause());
+            }
+        }
+    }
+}
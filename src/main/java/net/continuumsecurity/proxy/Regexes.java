@@ -0,0 +1,82 @@
+package net.continuumsecurity.proxy;
+
+/**
+ * Helpers for analysing and building the URL regexes ZAP uses for scopes and exclusions.
+ */
+final class Regexes {
+    static final String ANY_SUFFIX = ".*";
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private Regexes() {
+    }
+
+    /**
+     * Returns the text matched by the regex if it matches exactly one string, otherwise null.
+     */
+    static String literal(String regex) {
+        if (regex.startsWith("\\Q") && regex.endsWith("\\E") && regex.length() >= 4
+                && regex.indexOf("\\E") == regex.length() - 2) {
+            return regex.substring(2, regex.length() - 2);
+        }
+        StringBuilder literal = new StringBuilder(regex.length());
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    return null;
+                }
+                literal.append(regex.charAt(++i));
+            } else if (METACHARACTERS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.toString();
+    }
+
+    /**
+     * Returns the literal prefix of a regex of the form {@code literal.*}, otherwise null.
+     */
+    static String literalPrefix(String regex) {
+        if (!regex.endsWith(ANY_SUFFIX)) {
+            return null;
+        }
+        return literal(regex.substring(0, regex.length() - ANY_SUFFIX.length()));
+    }
+
+    /**
+     * Escapes the metacharacters of the text, keeping the result readable (unlike {@link java.util.regex.Pattern#quote}).
+     */
+    static String escape(CharSequence text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (METACHARACTERS.indexOf(c) >= 0) {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Back references and named groups depend on the groups around them, so regexes using them cannot be embedded in
+     * a larger alternation.
+     */
+    static boolean isSelfContained(String regex) {
+        if (regex.contains("(?<") && !regex.contains("(?<=") && !regex.contains("(?<!")) {
+            return false;
+        }
+        for (int i = 0; i + 1 < regex.length(); i++) {
+            if (regex.charAt(i) == '\\') {
+                char next = regex.charAt(i + 1);
+                if ((next >= '1' && next <= '9') || next == 'k') {
+                    return false;
+                }
+                i++;
+            }
+        }
+        return true;
+    }
+}
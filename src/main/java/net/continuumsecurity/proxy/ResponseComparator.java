@@ -0,0 +1,242 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarEntry;
+import edu.umass.cs.benchlab.har.HarRequest;
+import net.continuumsecurity.proxy.model.AccessComparison;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Compares responses to the same requests made as different users, to find access control gaps: when another user
+ * gets a successful response that is nearly the same as the resource owner's, authorization was likely bypassed.
+ * <p>
+ * Bodies are normalized by masking volatile values (UUIDs, long hex or numeric tokens, timestamps and any masks
+ * added with {@link #addVolatileMask(String)}), then reduced to a MinHash signature of their word shingles. The
+ * similarity of two responses is estimated from their signatures, which is cheap and tolerant of small dynamic
+ * differences. Signatures are computed in parallel.
+ * <p>
+ * If responses to unauthenticated requests are given as well, resources whose content anonymous users also get are
+ * treated as public and not flagged.
+ */
+public class ResponseComparator {
+    public static final double DEFAULT_THRESHOLD = 0.9;
+    public static final int DEFAULT_SHINGLE_SIZE = 3;
+    public static final int DEFAULT_SIGNATURE_SIZE = 128;
+    private static final String MASK = " volatile ";
+    private static final String[] DEFAULT_VOLATILE_MASKS = {
+            "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}",
+            "\\d{4}-\\d{2}-\\d{2}[T ]\\d{2}:\\d{2}(:\\d{2}(\\.\\d+)?)?(Z|[+-]\\d{2}:?\\d{2})?",
+            "\\b[0-9a-fA-F]{16,}\\b",
+            "\\b[A-Za-z0-9+/_-]{24,}={0,2}",
+            "\\b\\d{6,}\\b"};
+
+    private final List<String> masks = new ArrayList<String>();
+    private Pattern volatilePattern;
+    private double threshold = DEFAULT_THRESHOLD;
+    private int shingleSize = DEFAULT_SHINGLE_SIZE;
+    private int signatureSize = DEFAULT_SIGNATURE_SIZE;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public ResponseComparator() {
+        for (String mask : DEFAULT_VOLATILE_MASKS) {
+            masks.add(mask);
+        }
+    }
+
+    /**
+     * Masks text matching the regex before comparing, e.g. a CSRF token field or a greeting with the user's name.
+     */
+    public synchronized ResponseComparator addVolatileMask(String regex) {
+        Pattern.compile(regex);
+        masks.add(regex);
+        volatilePattern = null;
+        return this;
+    }
+
+    /**
+     * Removes the default masks, leaving only those added afterwards.
+     */
+    public synchronized ResponseComparator clearVolatileMasks() {
+        masks.clear();
+        volatilePattern = null;
+        return this;
+    }
+
+    /**
+     * @param threshold Similarity (0 to 1) from which two successful responses are considered the same content.
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    public void setShingleSize(int shingleSize) {
+        this.shingleSize = shingleSize;
+    }
+
+    public void setSignatureSize(int signatureSize) {
+        this.signatureSize = signatureSize;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return Estimated similarity (0 to 1) of the normalized response bodies.
+     */
+    public double similarity(HarEntry a, HarEntry b) {
+        return ResponseSketches.similarity(signature(a), signature(b));
+    }
+
+    public long[] signature(HarEntry entry) {
+        String body = ResponseSketches.bodyText(entry);
+        Pattern pattern = volatilePattern();
+        if (pattern != null) {
+            body = pattern.matcher(body).replaceAll(MASK);
+        }
+        return ResponseSketches.minhash(body, shingleSize, signatureSize);
+    }
+
+    public List<AccessComparison> compare(List<HarEntry> owner, List<HarEntry> other) throws ProxyException {
+        return compare(owner, other, null);
+    }
+
+    /**
+     * Compares the owner's responses with another user's responses to the same requests. Entries are paired by
+     * position when both lists have the same requests in the same order (as when replaying the owner's history),
+     * otherwise by method and URL, the n-th repetition of a request with the n-th repetition in the other list.
+     *
+     * @param owner     Responses to the resource owner, e.g. from {@link ZAProxyScanner#getHistory()}.
+     * @param other     Responses to the same requests made as another user, e.g. from
+     *                  {@link ZAProxyScanner#makeRequest} or a {@link HarReplayEngine}.
+     * @param anonymous Responses to the same requests without a session, or null.
+     * @return One comparison per owner entry that has a counterpart.
+     * @throws ProxyException
+     */
+    public List<AccessComparison> compare(List<HarEntry> owner, List<HarEntry> other, List<HarEntry> anonymous)
+            throws ProxyException {
+        List<HarEntry> otherPaired = pair(owner, other);
+        List<HarEntry> anonymousPaired = anonymous == null ? null : pair(owner, anonymous);
+
+        List<HarEntry> all = new ArrayList<HarEntry>(owner);
+        all.addAll(otherPaired);
+        if (anonymousPaired != null) {
+            all.addAll(anonymousPaired);
+        }
+        List<long[]> signatures = signatures(all);
+
+        List<AccessComparison> comparisons = new ArrayList<AccessComparison>();
+        int n = owner.size();
+        for (int i = 0; i < n; i++) {
+            HarEntry ownerEntry = owner.get(i);
+            HarEntry otherEntry = otherPaired.get(i);
+            if (otherEntry == null) {
+                continue;
+            }
+            double similarity = ResponseSketches.similarity(signatures.get(i), signatures.get(n + i));
+            double anonymousSimilarity = -1;
+            if (anonymousPaired != null && anonymousPaired.get(i) != null) {
+                anonymousSimilarity = ResponseSketches.similarity(signatures.get(i), signatures.get(2 * n + i));
+            }
+            int ownerStatus = ownerEntry.getResponse().getStatus();
+            int otherStatus = otherEntry.getResponse().getStatus();
+            boolean isPublic = anonymousSimilarity >= threshold
+                    && isSuccess(anonymousPaired.get(i).getResponse().getStatus());
+            boolean bypass = isSuccess(ownerStatus) && isSuccess(otherStatus) && similarity >= threshold && !isPublic;
+            HarRequest request = ownerEntry.getRequest();
+            comparisons.add(new AccessComparison(request.getMethod(), request.getUrl(), ownerStatus, otherStatus,
+                    similarity, anonymousSimilarity, bypass));
+        }
+        return comparisons;
+    }
+
+    private List<long[]> signatures(List<HarEntry> entries) throws ProxyException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+            for (final HarEntry entry : entries) {
+                futures.add(executor.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call() {
+                        return entry == null ? null : signature(entry);
+                    }
+                }));
+            }
+            List<long[]> signatures = new ArrayList<long[]>();
+            for (Future<long[]> future : futures) {
+                signatures.add(future.get());
+            }
+            return signatures;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProxyException(e);
+        } catch (ExecutionException e) {
+            throw new ProxyException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Returns the entries of others in the order of owner, with null where there is no counterpart.
+     */
+    private static List<HarEntry> pair(List<HarEntry> owner, List<HarEntry> others) {
+        if (owner.size() == others.size()) {
+            boolean sameOrder = true;
+            for (int i = 0; i < owner.size() && sameOrder; i++) {
+                sameOrder = key(owner.get(i)).equals(key(others.get(i)));
+            }
+            if (sameOrder) {
+                return others;
+            }
+        }
+        // Repeated requests are paired in the order they were made, each counterpart used once.
+        Map<String, LinkedList<HarEntry>> byKey = new HashMap<String, LinkedList<HarEntry>>();
+        for (HarEntry entry : others) {
+            LinkedList<HarEntry> entries = byKey.get(key(entry));
+            if (entries == null) {
+                entries = new LinkedList<HarEntry>();
+                byKey.put(key(entry), entries);
+            }
+            entries.add(entry);
+        }
+        List<HarEntry> paired = new ArrayList<HarEntry>();
+        for (HarEntry entry : owner) {
+            LinkedList<HarEntry> entries = byKey.get(key(entry));
+            paired.add(entries == null ? null : entries.poll());
+        }
+        return paired;
+    }
+
+    private static String key(HarEntry entry) {
+        return entry.getRequest().getMethod() + " " + entry.getRequest().getUrl();
+    }
+
+    private static boolean isSuccess(int status) {
+        return status >= 200 && status < 300;
+    }
+
+    private synchronized Pattern volatilePattern() {
+        if (volatilePattern == null && !masks.isEmpty()) {
+            StringBuilder alternation = new StringBuilder();
+            for (String mask : masks) {
+                if (alternation.length() > 0) {
+                    alternation.append('|');
+                }
+                alternation.append("(?:").append(mask).append(')');
+            }
+            volatilePattern = Pattern.compile(alternation.toString());
+        }
+        return volatilePattern;
+    }
+}
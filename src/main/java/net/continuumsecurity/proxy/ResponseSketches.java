@@ -0,0 +1,172 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarContent;
+import edu.umass.cs.benchlab.har.HarEntry;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * Compact sketches of response bodies, so responses can be compared without keeping them.
+ */
+final class ResponseSketches {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ResponseSketches() {
+    }
+
+    /**
+     * Returns the decoded body text of the entry's response, or an empty string if there is none.
+     */
+    static String bodyText(HarEntry entry) {
+        if (entry.getResponse() == null || entry.getResponse().getContent() == null) {
+            return "";
+        }
+        HarContent content = entry.getResponse().getContent();
+        String text = content.getText();
+        if (text == null) {
+            return "";
+        }
+        if ("base64".equalsIgnoreCase(content.getEncoding())) {
+            try {
+                return new String(Base64.decodeBase64(text), "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new ProxyException(e);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * 64 bit simhash of the words (runs of letters and digits, case insensitive) of the text: similar texts get
+     * hashes that differ in few bits.
+     */
+    static long simhash(CharSequence text) {
+        int[] weights = new int[64];
+        long hash = FNV_OFFSET_BASIS;
+        boolean inWord = false;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inWord = true;
+            } else if (inWord) {
+                hash = mix(hash);
+                for (int bit = 0; bit < 64; bit++) {
+                    weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+                }
+                hash = FNV_OFFSET_BASIS;
+                inWord = false;
+            }
+        }
+        long simhash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                simhash |= 1L << bit;
+            }
+        }
+        return simhash;
+    }
+
+    /**
+     * MinHash signature of the set of word shingles (each run of shingleSize consecutive words) of the text: the
+     * fraction of equal positions in two signatures estimates the Jaccard similarity of their shingle sets.
+     */
+    static long[] minhash(CharSequence text, int shingleSize, int signatureSize) {
+        long[] signature = new long[signatureSize];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        long[] window = new long[shingleSize];
+        int words = 0;
+        long hash = FNV_OFFSET_BASIS;
+        boolean inWord = false;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inWord = true;
+            } else if (inWord) {
+                window[words++ % shingleSize] = hash;
+                if (words >= shingleSize) {
+                    addShingle(signature, shingle(window, words, shingleSize));
+                }
+                hash = FNV_OFFSET_BASIS;
+                inWord = false;
+            }
+        }
+        if (words > 0 && words < shingleSize) {
+            // Too short for a full shingle, use what there is.
+            addShingle(signature, shingle(window, words, words));
+        }
+        return signature;
+    }
+
+    static double similarity(long[] a, long[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / a.length;
+    }
+
+    private static long shingle(long[] window, int words, int size) {
+        long shingle = FNV_OFFSET_BASIS;
+        for (int i = words - size; i < words; i++) {
+            shingle = (shingle ^ window[i % window.length]) * FNV_PRIME;
+        }
+        return shingle;
+    }
+
+    private static void addShingle(long[] signature, long shingle) {
+        for (int i = 0; i < signature.length; i++) {
+            // One hash function per position, derived from the shingle hash and the position.
+            long hash = mix(shingle ^ (0x9e3779b97f4a7c15L * (i + 1)));
+            if (hash < signature[i]) {
+                signature[i] = hash;
+            }
+        }
+    }
+
+    /**
+     * 64 bit hash of the text, for sets of fingerprints where collisions are negligible.
+     */
+    static long fingerprint(CharSequence text) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    static int hammingDistance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * Groups lengths into buckets of roughly 40% width (two per power of two), so small differences such as a
+     * reflected payload do not change the bucket.
+     */
+    static int lengthBucket(long length) {
+        if (length <= 0) {
+            return 0;
+        }
+        int log = 63 - Long.numberOfLeadingZeros(length);
+        int half = log > 0 && ((length >>> (log - 1)) & 1) == 1 ? 1 : 0;
+        return 1 + 2 * log + half;
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreads FNV's weak low bits over the whole word.
+     */
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,268 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.model.ScanCheckpoint;
+import net.continuumsecurity.proxy.model.ScanCheckpoint.ScanJob;
+import net.continuumsecurity.proxy.model.ScanInfo;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Saves the progress of a long running scan so that it survives a crash or redeploy of the client, or a restart of
+ * ZAP. A checkpoint is ZAP's session, saved under a name on the first checkpoint (ZAP keeps writing to it from then
+ * on), plus a {@link ScanCheckpoint} written as JSON to a local file.
+ * <pre>
+ * ScanCheckpointer checkpointer = new ScanCheckpointer(scanner, new File("scan.json"), "nightly");
+ * checkpointer.startSpider(url, contextId, userId, true);
+ * checkpointer.start(60000);
+ * ...
+ * // After a crash:
+ * ScanCheckpointer checkpointer = ScanCheckpointer.resume(scanner, new File("scan.json"));
+ * int offset = checkpointer.getState().getCursor("alerts");
+ * </pre>
+ * On {@link #resume} the saved session is loaded unless ZAP still has it open. Finished jobs are left alone;
+ * unfinished jobs are reattached to their scans if ZAP reports them as running, marked finished if ZAP completed
+ * them meanwhile, and started again otherwise (scans that are gone, paused or were stopped). Every job is started
+ * through a call returning its scan id, so other scans may be started at the same time.
+ */
+public class ScanCheckpointer {
+    private static final Logger log = Logger.getLogger(ScanCheckpointer.class.getName());
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final ScanningProxy scanner;
+    private final Spider spider;
+    private final File file;
+    private final ScanCheckpoint state;
+    private volatile boolean sessionSaved;
+    private ScheduledExecutorService executor;
+
+    public ScanCheckpointer(ZAProxyScanner scanner, File file, String sessionName) {
+        this(scanner, scanner, file, new ScanCheckpoint(sessionName));
+    }
+
+    public ScanCheckpointer(ScanningProxy scanner, Spider spider, File file, ScanCheckpoint state) {
+        this.scanner = scanner;
+        this.spider = spider;
+        this.file = file;
+        this.state = state;
+    }
+
+    public static ScanCheckpointer resume(ZAProxyScanner scanner, File file) throws ProxyException {
+        return resume(scanner, scanner, file);
+    }
+
+    /**
+     * Reads the checkpoint from the file, makes sure ZAP has the saved session open and brings the unfinished jobs
+     * back to running.
+     *
+     * @return Checkpointer carrying on with the saved state.
+     * @throws ProxyException
+     */
+    public static ScanCheckpointer resume(ScanningProxy scanner, Spider spider, File file) throws ProxyException {
+        ScanCheckpoint state;
+        try {
+            state = mapper.readValue(file, ScanCheckpoint.class);
+        } catch (IOException e) {
+            throw new ProxyException("Unable to read checkpoint " + file, e);
+        }
+        ScanCheckpointer checkpointer = new ScanCheckpointer(scanner, spider, file, state);
+        checkpointer.sessionSaved = true;
+        if (!isSession(scanner.getSessionLocation(), state.getSessionName())) {
+            scanner.loadSession(state.getSessionName());
+        }
+        checkpointer.reattach();
+        checkpointer.checkpoint();
+        return checkpointer;
+    }
+
+    public ScanCheckpoint getState() {
+        return state;
+    }
+
+    /**
+     * Starts spidering and records the job.
+     *
+     * @param contextId Id of the user's context, null when spidering without a user.
+     * @param userId    Id of the user to spider as, null to spider without one.
+     * @return Id of the spider scan.
+     * @throws IllegalArgumentException If a context is given without a user.
+     */
+    public int startSpider(String url, String contextId, String userId, boolean recurse) throws ProxyException {
+        return add(new ScanJob(ScanJob.Type.SPIDER, url, contextId, userId, recurse));
+    }
+
+    /**
+     * Starts an active scan and records the job.
+     *
+     * @param contextId Id of the user's context, null when scanning without a user.
+     * @param userId    Id of the user to scan as, null to scan without one.
+     * @return Id of the active scan.
+     * @throws IllegalArgumentException If a context is given without a user.
+     */
+    public int startScan(String url, String contextId, String userId, boolean recurse) throws ProxyException {
+        return add(new ScanJob(ScanJob.Type.ACTIVE_SCAN, url, contextId, userId, recurse));
+    }
+
+    /**
+     * Marks jobs whose scans have completed as finished.
+     *
+     * @return Whether all jobs have finished.
+     */
+    public boolean update() throws ProxyException {
+        boolean done = true;
+        synchronized (state) {
+            for (ScanJob job : state.getJobs()) {
+                if (!job.isFinished()) {
+                    job.setFinished(progress(job) >= 100);
+                    done = done && job.isFinished();
+                }
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Saves ZAP's session if it has not been saved yet and writes the client state.
+     *
+     * @throws ProxyException
+     */
+    public void checkpoint() throws ProxyException {
+        if (!sessionSaved) {
+            scanner.saveSession(state.getSessionName(), true);
+            sessionSaved = true;
+        }
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try {
+            synchronized (state) {
+                state.setSavedAt(System.currentTimeMillis());
+                mapper.writeValue(temp, state);
+            }
+            // Replace in one step where the platform allows, so a crash never leaves a partly written checkpoint.
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+                throw new IOException("Unable to rename " + temp + " to " + file);
+            }
+        } catch (IOException e) {
+            throw new ProxyException("Unable to write checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * Updates the jobs and writes a checkpoint at the given interval, on a background thread, until {@link #stop()}.
+     */
+    public synchronized void start(long intervalMillis) {
+        if (executor != null) {
+            throw new IllegalStateException("Checkpointing has already been started.");
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "zap-scan-checkpointer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    update();
+                    checkpoint();
+                } catch (RuntimeException e) {
+                    // Try again at the next interval; the previous checkpoint is still intact.
+                    log.log(Level.WARNING, "Checkpoint failed", e);
+                }
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops periodic checkpointing and writes a final checkpoint.
+     */
+    public synchronized void stop() throws ProxyException {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        checkpoint();
+    }
+
+    private int add(ScanJob job) {
+        if (job.getUserId() == null && job.getContextId() != null) {
+            // ZAP only takes a context id together with a user; without one it would silently be ignored.
+            throw new IllegalArgumentException("A context id requires a user id.");
+        }
+        job.setScanId(launch(job));
+        state.addJob(job);
+        return job.getScanId();
+    }
+
+    private void reattach() {
+        Map<Integer, ScanInfo> spiderScans = byId(spider.getSpiderScans());
+        Map<Integer, ScanInfo> activeScans = byId(scanner.getScans());
+        synchronized (state) {
+            for (ScanJob job : state.getJobs()) {
+                if (job.isFinished()) {
+                    continue;
+                }
+                ScanInfo scan = (job.getType() == ScanJob.Type.SPIDER ? spiderScans : activeScans)
+                        .get(job.getScanId());
+                if (scan != null && scan.getState() == ScanInfo.State.FINISHED && scan.getProgress() >= 100) {
+                    job.setFinished(true);
+                } else if (scan == null || scan.getState() != ScanInfo.State.RUNNING) {
+                    // Gone, paused, not started or stopped part way (finished below 100%).
+                    job.setScanId(launch(job));
+                }
+            }
+        }
+    }
+
+    private static Map<Integer, ScanInfo> byId(List<ScanInfo> scans) {
+        Map<Integer, ScanInfo> byId = new HashMap<Integer, ScanInfo>();
+        for (ScanInfo scan : scans) {
+            byId.put(scan.getId(), scan);
+        }
+        return byId;
+    }
+
+    private int launch(ScanJob job) {
+        if (job.getType() == ScanJob.Type.SPIDER) {
+            if (job.getUserId() != null) {
+                return spider.startSpiderAsUser(job.getUrl(), job.getContextId(), job.getUserId(), null,
+                        job.isRecurse());
+            }
+            return spider.startSpider(job.getUrl(), null, job.isRecurse(), null);
+        }
+        if (job.getUserId() != null) {
+            return scanner.startScanAsUser(job.getUrl(), job.getContextId(), job.getUserId(), job.isRecurse());
+        }
+        return scanner.startScan(job.getUrl(), job.isRecurse());
+    }
+
+    private int progress(ScanJob job) {
+        return job.getType() == ScanJob.Type.SPIDER
+                ? spider.getSpiderProgress(job.getScanId())
+                : scanner.getScanProgress(job.getScanId());
+    }
+
+    /**
+     * Returns whether the session file ZAP has open is the one saved under the given name.
+     */
+    static boolean isSession(String location, String sessionName) {
+        if (location == null || location.length() == 0) {
+            return false;
+        }
+        String name = new File(sessionName).getName();
+        String open = new File(location).getName();
+        return open.equals(name) || open.equals(name + ".session");
+    }
+}
@@ -0,0 +1,252 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.model.AuthenticationMethod;
+import net.continuumsecurity.proxy.model.Context;
+import net.continuumsecurity.proxy.model.ScanPlan;
+import net.continuumsecurity.proxy.model.ScanPlanResult;
+import net.continuumsecurity.proxy.model.User;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Applies a {@link ScanPlan} by reading the current ZAP state once, diffing it against the plan and issuing only the
+ * calls that change something. Independent groups of calls (context regexes, authentication, scanner settings,
+ * each user) run in parallel; users are only touched once the authentication method is in place, as their
+ * credentials depend on it.
+ */
+class ScanPlanApplier {
+    private final ScanningProxy scanner;
+    private final Authentication authentication;
+    private final ContextModifier contextModifier;
+    private final int parallelism;
+
+    ScanPlanApplier(ScanningProxy scanner, Authentication authentication, ContextModifier contextModifier,
+                    int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parameter parallelism must be at least 1.");
+        }
+        this.scanner = scanner;
+        this.authentication = authentication;
+        this.contextModifier = contextModifier;
+        this.parallelism = parallelism;
+    }
+
+    ScanPlanResult apply(ScanPlan plan) throws ProxyException {
+        ScanPlanResult result = new ScanPlanResult();
+        String contextName = plan.getContextName();
+        if (!scanner.getContexts().contains(contextName)) {
+            scanner.createContext(contextName, plan.isInScope());
+            result.addChange("create context " + contextName);
+        }
+        Context context;
+        try {
+            context = scanner.getContextInfo(contextName);
+        } catch (IOException e) {
+            throw new ProxyException(e);
+        }
+        String contextId = context.getId();
+        result.setContextId(contextId);
+
+        List<List<PlanStep>> configuration = new ArrayList<List<PlanStep>>();
+        configuration.add(contextSteps(plan, context));
+        configuration.add(authenticationSteps(plan, contextId));
+        if (!plan.getPolicy().isEmpty()) {
+            configuration.addAll(new ScanPolicyApplier(scanner).steps(plan.getPolicy(), scanner.getActiveScanners()));
+        }
+        List<List<PlanStep>> users = userSteps(plan, contextId, result);
+
+        List<String> applied = Collections.synchronizedList(new ArrayList<String>());
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            PlanStep.runGroups(executor, configuration, applied);
+            PlanStep.runGroups(executor, users, applied);
+        } finally {
+            executor.shutdown();
+            for (String change : applied) {
+                result.addChange(change);
+            }
+        }
+        return result;
+    }
+
+    private List<PlanStep> contextSteps(ScanPlan plan, Context context) {
+        final String contextName = plan.getContextName();
+        final String contextId = context.getId();
+        List<PlanStep> steps = new ArrayList<PlanStep>();
+        if (context.isInScope() != plan.isInScope()) {
+            final boolean inScope = plan.isInScope();
+            steps.add(new PlanStep("set context in scope " + inScope) {
+                void run() {
+                    scanner.setContextInScope(contextName, inScope);
+                }
+            });
+        }
+        final List<String> includes = plan.getIncludeRegexs();
+        final List<String> excludes = plan.getExcludeRegexs();
+        if (!missing(context.getIncludedRegexs(), includes).isEmpty()
+                || !missing(context.getExcludedRegexs(), excludes).isEmpty()) {
+            // ZAP cannot remove a single regex, so both lists are replaced in one call.
+            steps.add(new PlanStep("set context regexes") {
+                void run() {
+                    contextModifier.setContextRegexs(contextName, includes, excludes);
+                }
+            });
+        } else {
+            for (final String regex : missing(includes, context.getIncludedRegexs())) {
+                steps.add(new PlanStep("include " + regex) {
+                    void run() {
+                        contextModifier.setIncludeInContext(contextName, regex);
+                    }
+                });
+            }
+            for (final String regex : missing(excludes, context.getExcludedRegexs())) {
+                steps.add(new PlanStep("exclude " + regex) {
+                    void run() {
+                        contextModifier.setExcludeFromContext(contextName, regex);
+                    }
+                });
+            }
+        }
+        final String loggedIn = plan.getLoggedInIndicator();
+        if (loggedIn != null && !Pattern.quote(loggedIn).equals(context.getLoggedInPattern())) {
+            steps.add(new PlanStep("set logged in indicator") {
+                void run() {
+                    authentication.setLoggedInIndicator(contextId, loggedIn);
+                }
+            });
+        }
+        final String loggedOut = plan.getLoggedOutIndicator();
+        if (loggedOut != null && !Pattern.quote(loggedOut).equals(context.getLoggedOutPattern())) {
+            steps.add(new PlanStep("set logged out indicator") {
+                void run() {
+                    authentication.setLoggedOutIndicator(contextId, loggedOut);
+                }
+            });
+        }
+        return steps;
+    }
+
+    private List<PlanStep> authenticationSteps(ScanPlan plan, final String contextId) {
+        final String method = plan.getAuthenticationMethod();
+        if (method == null) {
+            return Collections.emptyList();
+        }
+        Map<String, String> current = authentication.getAuthenticationMethodInfo(contextId);
+        boolean upToDate = method.equals(current.get("methodName"));
+        for (Map.Entry<String, String> param : plan.getAuthenticationParams().entrySet()) {
+            String key = param.getKey();
+            // The http authentication method is configured with "hostname" but reported with "host".
+            if (AuthenticationMethod.HTTP_AUTHENTICATION.getValue().equals(method) && "hostname".equals(key)) {
+                key = "host";
+            }
+            upToDate = upToDate && StringUtils.equals(param.getValue(), current.get(key));
+        }
+        if (upToDate) {
+            return Collections.emptyList();
+        }
+        final String params = encode(plan.getAuthenticationParams());
+        List<PlanStep> steps = new ArrayList<PlanStep>();
+        steps.add(new PlanStep("set authentication method " + method) {
+            void run() {
+                authentication.setAuthenticationMethod(contextId, method, params.length() == 0 ? null : params);
+            }
+        });
+        return steps;
+    }
+
+    private List<List<PlanStep>> userSteps(ScanPlan plan, final String contextId, final ScanPlanResult result) {
+        List<List<PlanStep>> groups = new ArrayList<List<PlanStep>>();
+        if (plan.getUsers().isEmpty()) {
+            return groups;
+        }
+        Map<String, User> existing = new HashMap<String, User>();
+        try {
+            for (User user : authentication.getUsersList(contextId)) {
+                existing.put(user.getName(), user);
+            }
+        } catch (IOException e) {
+            throw new ProxyException(e);
+        }
+        for (final ScanPlan.UserPlan planned : plan.getUsers()) {
+            final String credentials = encode(planned.getCredentials());
+            final User user = existing.get(planned.getName());
+            List<PlanStep> steps = new ArrayList<PlanStep>();
+            if (user == null) {
+                steps.add(new PlanStep("create user " + planned.getName()) {
+                    void run() {
+                        String userId = authentication.newUser(contextId, planned.getName());
+                        result.putUserId(planned.getName(), userId);
+                        authentication.setAuthenticationCredentials(contextId, userId, credentials);
+                        authentication.setUserEnabled(contextId, userId, planned.isEnabled());
+                    }
+                });
+            } else {
+                result.putUserId(user.getName(), user.getId());
+                if (!containsAll(user.getCredentials(), planned.getCredentials())) {
+                    steps.add(new PlanStep("set credentials of user " + planned.getName()) {
+                        void run() {
+                            authentication.setAuthenticationCredentials(contextId, user.getId(), credentials);
+                        }
+                    });
+                }
+                if (user.isEnabled() != planned.isEnabled()) {
+                    steps.add(new PlanStep("set user " + planned.getName() + " enabled " + planned.isEnabled()) {
+                        void run() {
+                            authentication.setUserEnabled(contextId, user.getId(), planned.isEnabled());
+                        }
+                    });
+                }
+            }
+            groups.add(steps);
+        }
+        return groups;
+    }
+
+    private static List<String> missing(List<String> wanted, List<String> current) {
+        List<String> missing = new ArrayList<String>();
+        if (wanted == null) {
+            return missing;
+        }
+        for (String regex : wanted) {
+            if (current == null || !current.contains(regex)) {
+                missing.add(regex);
+            }
+        }
+        return missing;
+    }
+
+    private static boolean containsAll(Map<String, String> current, Map<String, String> wanted) {
+        for (Map.Entry<String, String> entry : wanted.entrySet()) {
+            if (current == null || !StringUtils.equals(entry.getValue(), current.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String encode(Map<String, String> params) {
+        StringBuilder encoded = new StringBuilder();
+        try {
+            for (Map.Entry<String, String> param : params.entrySet()) {
+                if (encoded.length() > 0) {
+                    encoded.append('&');
+                }
+                encoded.append(param.getKey()).append('=').append(URLEncoder.encode(param.getValue(), "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new ProxyException(e);
+        }
+        return encoded.toString();
+    }
+}
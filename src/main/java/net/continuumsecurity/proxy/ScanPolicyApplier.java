@@ -0,0 +1,176 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.model.ScanPolicyTemplate;
+import net.continuumsecurity.proxy.model.ScannerInfo;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies a {@link ScanPolicyTemplate} to the active scanners with as few calls as possible: the scanner list is read
+ * once, only settings that differ are sent, a whole category is set with one policy call when the template gives all
+ * its scanners the same value, and enabling/disabling is done with one bulk call each.
+ * <p>
+ * ZAP handles every one of these calls by reading, changing and saving the whole scan policy, so calls against the
+ * same policy are sent one after another; concurrent calls would lose each other's updates. All calls here target
+ * ZAP's default scan policy and form a single group, which {@link ScanPlanApplier} runs alongside independent groups
+ * such as context and user configuration. Applied on its own, that group is simply sent on the calling thread.
+ */
+class ScanPolicyApplier {
+    private static final String ATTACK_STRENGTH = "attack strength";
+    private static final String ALERT_THRESHOLD = "alert threshold";
+
+    private final ScanningProxy scanner;
+
+    ScanPolicyApplier(ScanningProxy scanner) {
+        this.scanner = scanner;
+    }
+
+    /**
+     * Sends the calls computed by {@link #steps} on the calling thread, one after another.
+     */
+    List<String> apply(ScanPolicyTemplate template) throws ProxyException {
+        List<String> applied = new ArrayList<String>();
+        if (template.isEmpty()) {
+            return applied;
+        }
+        for (List<PlanStep> group : steps(template, scanner.getActiveScanners())) {
+            for (PlanStep step : group) {
+                try {
+                    step.run();
+                } catch (ProxyException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new ProxyException(e);
+                }
+                applied.add(step.description);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Computes the calls needed to bring the given scanners in line with the template: one group per scan policy,
+     * holding that policy's calls in order, or no group if nothing needs changing.
+     */
+    List<List<PlanStep>> steps(ScanPolicyTemplate template, List<ScannerInfo> scanners) {
+        Map<String, ScannerInfo> current = new LinkedHashMap<String, ScannerInfo>();
+        Map<String, List<ScannerInfo>> categories = new LinkedHashMap<String, List<ScannerInfo>>();
+        for (ScannerInfo info : scanners) {
+            current.put(info.getId(), info);
+            List<ScannerInfo> category = categories.get(info.getPolicyId());
+            if (category == null) {
+                category = new ArrayList<ScannerInfo>();
+                categories.put(info.getPolicyId(), category);
+            }
+            category.add(info);
+        }
+        List<PlanStep> defaultPolicy = new ArrayList<PlanStep>();
+        addLevelSteps(defaultPolicy, ATTACK_STRENGTH, template.getAttackStrengths(), current, categories);
+        addLevelSteps(defaultPolicy, ALERT_THRESHOLD, template.getAlertThresholds(), current, categories);
+        addEnablementStep(defaultPolicy, template.getEnabledScanners(), current, true);
+        addEnablementStep(defaultPolicy, template.getDisabledScanners(), current, false);
+        List<List<PlanStep>> groups = new ArrayList<List<PlanStep>>();
+        if (!defaultPolicy.isEmpty()) {
+            groups.add(defaultPolicy);
+        }
+        return groups;
+    }
+
+    private void addLevelSteps(List<PlanStep> steps, String setting, Map<String, String> wanted,
+                               Map<String, ScannerInfo> current, Map<String, List<ScannerInfo>> categories) {
+        Map<String, String> remaining = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, String> entry : wanted.entrySet()) {
+            ScannerInfo info = current.get(entry.getKey());
+            if (info == null || !entry.getValue().equalsIgnoreCase(level(setting, info))) {
+                remaining.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<String, List<ScannerInfo>> category : categories.entrySet()) {
+            String level = commonLevel(category.getValue(), wanted);
+            int changed = 0;
+            for (ScannerInfo info : category.getValue()) {
+                if (remaining.containsKey(info.getId())) {
+                    changed++;
+                }
+            }
+            if (category.getKey() != null && level != null && changed > 1) {
+                for (ScannerInfo info : category.getValue()) {
+                    remaining.remove(info.getId());
+                }
+                steps.add(policyStep(setting, category.getKey(), level));
+            }
+        }
+        for (Map.Entry<String, String> entry : remaining.entrySet()) {
+            steps.add(scannerStep(setting, entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * Returns the level the template gives every scanner of the category, or null if it does not cover them all with
+     * the same value.
+     */
+    private static String commonLevel(List<ScannerInfo> category, Map<String, String> wanted) {
+        String common = null;
+        for (ScannerInfo info : category) {
+            String level = wanted.get(info.getId());
+            if (level == null || (common != null && !common.equalsIgnoreCase(level))) {
+                return null;
+            }
+            common = level;
+        }
+        return common;
+    }
+
+    private static String level(String setting, ScannerInfo info) {
+        return ATTACK_STRENGTH.equals(setting) ? info.getAttackStrength() : info.getAlertThreshold();
+    }
+
+    private PlanStep policyStep(final String setting, final String policyId, final String level) {
+        return new PlanStep("set " + setting + " of category " + policyId + "=" + level) {
+            void run() {
+                if (ATTACK_STRENGTH.equals(setting)) {
+                    scanner.setPolicyAttackStrength(policyId, level);
+                } else {
+                    scanner.setPolicyAlertThreshold(policyId, level);
+                }
+            }
+        };
+    }
+
+    private PlanStep scannerStep(final String setting, final String scannerId, final String level) {
+        return new PlanStep("set " + setting + " " + scannerId + "=" + level) {
+            void run() {
+                if (ATTACK_STRENGTH.equals(setting)) {
+                    scanner.setScannerAttackStrength(scannerId, level);
+                } else {
+                    scanner.setScannerAlertThreshold(scannerId, level);
+                }
+            }
+        };
+    }
+
+    private void addEnablementStep(List<PlanStep> steps, Collection<String> ids,
+                                   Map<String, ScannerInfo> current, final boolean enabled) {
+        List<String> changed = new ArrayList<String>();
+        for (String id : ids) {
+            ScannerInfo info = current.get(id);
+            if (info == null || info.isEnabled() != enabled) {
+                changed.add(id);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        final String joined = StringUtils.join(changed, ",");
+        steps.add(new PlanStep((enabled ? "enable" : "disable") + " scanners " + joined) {
+            void run() {
+                scanner.setEnableScanners(joined, enabled);
+            }
+        });
+    }
+}
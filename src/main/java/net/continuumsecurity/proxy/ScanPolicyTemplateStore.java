@@ -0,0 +1,77 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.model.ScanPolicyTemplate;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Saves named {@link ScanPolicyTemplate}s as JSON files in a local directory, one file per template.
+ */
+public class ScanPolicyTemplateStore {
+    private static final String EXTENSION = ".json";
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9 ._-]+");
+
+    private final File directory;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public ScanPolicyTemplateStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Stores templates in ~/.zap-java-api/policies.
+     */
+    public ScanPolicyTemplateStore() {
+        this(new File(new File(System.getProperty("user.home"), ".zap-java-api"), "policies"));
+    }
+
+    public void save(ScanPolicyTemplate template) throws IOException {
+        File file = file(template.getName());
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        mapper.writeValue(file, template);
+    }
+
+    /**
+     * @return The template with the given name, or null if none has been saved.
+     */
+    public ScanPolicyTemplate load(String name) throws IOException {
+        File file = file(name);
+        if (!file.isFile()) {
+            return null;
+        }
+        return mapper.readValue(file, ScanPolicyTemplate.class);
+    }
+
+    public boolean delete(String name) {
+        return file(name).delete();
+    }
+
+    public List<String> names() {
+        List<String> names = new ArrayList<String>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && file.getName().endsWith(EXTENSION)) {
+                    names.add(file.getName().substring(0, file.getName().length() - EXTENSION.length()));
+                }
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private File file(String name) {
+        if (name == null || !VALID_NAME.matcher(name).matches() || name.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid template name: " + name);
+        }
+        return new File(directory, name + EXTENSION);
+    }
+}
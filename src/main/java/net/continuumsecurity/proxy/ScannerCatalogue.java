@@ -0,0 +1,253 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.model.ScannerInfo;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory catalogue of the active and passive scanners, indexed by id, CWE, WASC, quality, category and enabled
+ * state. The scanner lists are read from ZAP on first use and kept until {@link #refresh()} or {@link #invalidate()},
+ * so lookups such as "all scanners for CWE-89" cost no API calls, and changing the enabled state of any selection of
+ * scanners costs at most one bulk call per scanner type and state.
+ * <p>
+ * Enabling or disabling scanners through the owning {@link ZAProxyScanner} keeps the catalogue up to date; other
+ * changes to the scan policy made through the scanner drop the cached lists. {@link ScannerInfo}s are never changed:
+ * a change of enabled state replaces the scanner in the catalogue, so instances already handed out keep the state
+ * they were read with.
+ */
+public class ScannerCatalogue {
+    private final ScanningProxy scanner;
+    private Map<String, ScannerInfo> active;
+    private Map<String, ScannerInfo> passive;
+    private Map<Integer, List<ScannerInfo>> byCwe;
+    private Map<Integer, List<ScannerInfo>> byWasc;
+    private Map<String, List<ScannerInfo>> byQuality;
+    private Map<String, List<ScannerInfo>> byPolicyId;
+
+    public ScannerCatalogue(ScanningProxy scanner) {
+        this.scanner = scanner;
+    }
+
+    /**
+     * Reads the scanner lists from ZAP again.
+     *
+     * @throws ProxyException
+     */
+    public synchronized void refresh() throws ProxyException {
+        Map<String, ScannerInfo> activeScanners = index(scanner.getActiveScanners());
+        Map<String, ScannerInfo> passiveScanners = index(scanner.getPassiveScanners());
+        Map<Integer, List<ScannerInfo>> cwe = new LinkedHashMap<Integer, List<ScannerInfo>>();
+        Map<Integer, List<ScannerInfo>> wasc = new LinkedHashMap<Integer, List<ScannerInfo>>();
+        Map<String, List<ScannerInfo>> quality = new LinkedHashMap<String, List<ScannerInfo>>();
+        Map<String, List<ScannerInfo>> policy = new LinkedHashMap<String, List<ScannerInfo>>();
+        List<ScannerInfo> all = new ArrayList<ScannerInfo>(activeScanners.values());
+        all.addAll(passiveScanners.values());
+        for (ScannerInfo info : all) {
+            add(cwe, info.getCweId(), info);
+            add(wasc, info.getWascId(), info);
+            add(quality, info.getQuality(), info);
+            add(policy, info.getPolicyId(), info);
+        }
+        active = activeScanners;
+        passive = passiveScanners;
+        byCwe = cwe;
+        byWasc = wasc;
+        byQuality = quality;
+        byPolicyId = policy;
+    }
+
+    /**
+     * Drops the cached scanner lists, the next lookup reads them from ZAP again.
+     */
+    public synchronized void invalidate() {
+        active = null;
+        passive = null;
+    }
+
+    public synchronized List<ScannerInfo> getActiveScanners() throws ProxyException {
+        load();
+        return new ArrayList<ScannerInfo>(active.values());
+    }
+
+    public synchronized List<ScannerInfo> getPassiveScanners() throws ProxyException {
+        load();
+        return new ArrayList<ScannerInfo>(passive.values());
+    }
+
+    /**
+     * @return The active or passive scanner with the given id, null if there is none.
+     */
+    public synchronized ScannerInfo getScanner(String id) throws ProxyException {
+        load();
+        ScannerInfo info = active.get(id);
+        return info != null ? info : passive.get(id);
+    }
+
+    public synchronized List<ScannerInfo> getByCwe(int cweId) throws ProxyException {
+        load();
+        return current(byCwe.get(cweId));
+    }
+
+    public synchronized List<ScannerInfo> getByWasc(int wascId) throws ProxyException {
+        load();
+        return current(byWasc.get(wascId));
+    }
+
+    /**
+     * @param quality Scanner quality: release, beta or alpha.
+     */
+    public synchronized List<ScannerInfo> getByQuality(String quality) throws ProxyException {
+        load();
+        return current(byQuality.get(quality));
+    }
+
+    /**
+     * @param policyId Id of an active scanner category, e.g. "4" for injection.
+     */
+    public synchronized List<ScannerInfo> getByPolicyId(String policyId) throws ProxyException {
+        load();
+        return current(byPolicyId.get(policyId));
+    }
+
+    public synchronized List<ScannerInfo> getByEnabled(boolean enabled) throws ProxyException {
+        load();
+        List<ScannerInfo> result = new ArrayList<ScannerInfo>();
+        for (ScannerInfo info : active.values()) {
+            if (info.isEnabled() == enabled) {
+                result.add(info);
+            }
+        }
+        for (ScannerInfo info : passive.values()) {
+            if (info.isEnabled() == enabled) {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Enables or disables the given scanners, skipping those already in that state.
+     *
+     * @param scanners Active and/or passive scanners taken from this catalogue.
+     * @param enabled  true to enable the scanners.
+     * @throws ProxyException
+     */
+    public void setEnabled(Collection<ScannerInfo> scanners, boolean enabled) throws ProxyException {
+        Set<String> activeIds = new LinkedHashSet<String>();
+        Set<String> passiveIds = new LinkedHashSet<String>();
+        synchronized (this) {
+            load();
+            for (ScannerInfo info : scanners) {
+                ScannerInfo current = info.isPassive() ? passive.get(info.getId()) : active.get(info.getId());
+                if (current == null || current.isEnabled() != enabled) {
+                    (info.isPassive() ? passiveIds : activeIds).add(info.getId());
+                }
+            }
+        }
+        setEnabled(activeIds, passiveIds, enabled);
+    }
+
+    /**
+     * Enables exactly the given active scanners and disables all other active scanners, e.g.
+     * {@code enableOnly(catalogue.getByPolicyId("4"))} to run only injection scanners. Passive scanners in the
+     * selection are enabled, other passive scanners are left untouched.
+     *
+     * @param scanners Scanners to enable.
+     * @throws ProxyException
+     */
+    public void enableOnly(Collection<ScannerInfo> scanners) throws ProxyException {
+        Set<String> selected = new LinkedHashSet<String>();
+        for (ScannerInfo info : scanners) {
+            if (!info.isPassive()) {
+                selected.add(info.getId());
+            }
+        }
+        Set<String> disable = new LinkedHashSet<String>();
+        synchronized (this) {
+            load();
+            for (ScannerInfo info : active.values()) {
+                if (info.isEnabled() && !selected.contains(info.getId())) {
+                    disable.add(info.getId());
+                }
+            }
+        }
+        setEnabled(disable, Collections.<String>emptySet(), false);
+        setEnabled(scanners, true);
+    }
+
+    /**
+     * Records a change of enabled state made through the scanner.
+     */
+    synchronized void markEnabled(String ids, boolean passiveScanners, boolean enabled) {
+        Map<String, ScannerInfo> scanners = passiveScanners ? passive : active;
+        if (scanners == null) {
+            return;
+        }
+        for (String id : StringUtils.split(ids, ',')) {
+            ScannerInfo info = scanners.get(id.trim());
+            if (info != null && info.isEnabled() != enabled) {
+                scanners.put(info.getId(), info.withEnabled(enabled));
+            }
+        }
+    }
+
+    private void setEnabled(Set<String> activeIds, Set<String> passiveIds, boolean enabled) throws ProxyException {
+        if (!activeIds.isEmpty()) {
+            String ids = StringUtils.join(activeIds, ",");
+            scanner.setEnableScanners(ids, enabled);
+            markEnabled(ids, false, enabled);
+        }
+        if (!passiveIds.isEmpty()) {
+            String ids = StringUtils.join(passiveIds, ",");
+            scanner.setEnablePassiveScanners(ids, enabled);
+            markEnabled(ids, true, enabled);
+        }
+    }
+
+    private void load() throws ProxyException {
+        if (active == null || passive == null) {
+            refresh();
+        }
+    }
+
+    private static Map<String, ScannerInfo> index(List<ScannerInfo> scanners) {
+        Map<String, ScannerInfo> index = new LinkedHashMap<String, ScannerInfo>();
+        for (ScannerInfo info : scanners) {
+            index.put(info.getId(), info);
+        }
+        return index;
+    }
+
+    private static <K> void add(Map<K, List<ScannerInfo>> index, K key, ScannerInfo info) {
+        if (key == null) {
+            return;
+        }
+        List<ScannerInfo> scanners = index.get(key);
+        if (scanners == null) {
+            scanners = new ArrayList<ScannerInfo>();
+            index.put(key, scanners);
+        }
+        scanners.add(info);
+    }
+
+    /**
+     * Looks up the indexed scanners in the id maps, which hold their current enabled state.
+     */
+    private List<ScannerInfo> current(List<ScannerInfo> indexed) {
+        List<ScannerInfo> scanners = new ArrayList<ScannerInfo>();
+        if (indexed != null) {
+            for (ScannerInfo info : indexed) {
+                scanners.add((info.isPassive() ? passive : active).get(info.getId()));
+            }
+        }
+        return scanners;
+    }
+}
@@ -1,6 +1,9 @@
 package net.continuumsecurity.proxy;
 
 import net.continuumsecurity.proxy.model.Context;
+import net.continuumsecurity.proxy.model.PassiveScanDrain;
+import net.continuumsecurity.proxy.model.ScanInfo;
+import net.continuumsecurity.proxy.model.ScannerInfo;
 import net.continuumsecurity.proxy.model.Script;
 import org.zaproxy.clientapi.core.Alert;
 
@@ -31,6 +34,16 @@ public interface ScanningProxy extends LoggingProxy {
      */
     public void scan(String url) throws ProxyException;
 
+    /**
+     * Starts an Active Scan and returns its id. Unlike {@link #getLastScannerScanId()} the id is reliable when other
+     * scans are started at the same time.
+     * @param url Url to active scan.
+     * @param recurse Flag to perform the active scan recursively.
+     * @return Id of the started scan.
+     * @throws ProxyException
+     */
+    int startScan(String url, boolean recurse) throws ProxyException;
+
     /*
         Return the percentage completion of the current scan
      */
@@ -38,24 +51,94 @@ public interface ScanningProxy extends LoggingProxy {
 
     public int getLastScannerScanId() throws ProxyException;
 
+    /**
+     * Returns the Active Scans ZAP knows about, finished or not, with their progress and state.
+     * @return Active scans ordered by id.
+     * @throws ProxyException
+     */
+    List<ScanInfo> getScans() throws ProxyException;
+
+    /**
+     * Returns the ids of the Active Scans ZAP knows about, finished or not.
+     * @return Active scan ids.
+     * @throws ProxyException
+     */
+    List<Integer> getScanIds() throws ProxyException;
+
     public byte[] getXmlReport() throws ProxyException;
 
     public byte[] getHtmlReport() throws ProxyException;
 
+    /**
+     * Returns the active scanners of the default scan policy, with their strength, threshold and enabled state.
+     * @return List of active scanners.
+     * @throws ProxyException
+     */
+    List<ScannerInfo> getActiveScanners() throws ProxyException;
+
     void setScannerAttackStrength(String scannerId, String strength) throws ProxyException;
 
     void setScannerAlertThreshold(String scannerId, String threshold) throws ProxyException;
 
+    /**
+     * Sets the attack strength of every scanner in the given category.
+     * @param policyId Id of the scanner category, as returned by {@link ScannerInfo#getPolicyId()}.
+     * @param strength Attack strength such as LOW, MEDIUM, HIGH, INSANE or DEFAULT.
+     * @throws ProxyException
+     */
+    void setPolicyAttackStrength(String policyId, String strength) throws ProxyException;
+
+    /**
+     * Sets the alert threshold of every scanner in the given category.
+     * @param policyId Id of the scanner category, as returned by {@link ScannerInfo#getPolicyId()}.
+     * @param threshold Alert threshold such as OFF, LOW, MEDIUM, HIGH or DEFAULT.
+     * @throws ProxyException
+     */
+    void setPolicyAlertThreshold(String policyId, String threshold) throws ProxyException;
+
+    /**
+     * Returns the passive scan rules with their threshold and enabled state.
+     * @return List of passive scanners.
+     * @throws ProxyException
+     */
+    List<ScannerInfo> getPassiveScanners() throws ProxyException;
+
     public void setEnableScanners(String ids, boolean enabled) throws ProxyException;
 
+    /**
+     * Enables or disables the given passive scan rules.
+     * @param ids Comma separated list of passive scanner ids.
+     * @param enabled
+     * @throws ProxyException
+     */
+    void setEnablePassiveScanners(String ids, boolean enabled) throws ProxyException;
+
     public void disableAllScanners() throws ProxyException;
 
     public void enableAllScanners() throws ProxyException;
 
     public void setEnablePassiveScan(boolean enabled) throws ProxyException;
 
+    /**
+     * Returns the number of records the passive scanner has still to scan.
+     * @return Passive scan backlog.
+     * @throws ProxyException
+     */
+    int getPassiveScanRecordsToScan() throws ProxyException;
+
+    /**
+     * Waits until the passive scanner has scanned all recorded messages, e.g. before reading alerts once browser
+     * traffic has stopped. The backlog is polled with an interval adapted to how fast it shrinks.
+     * @param timeoutMillis Maximum time to wait.
+     * @return Whether the backlog drained and the throughput observed while waiting.
+     * @throws ProxyException
+     */
+    PassiveScanDrain awaitPassiveScanDrain(long timeoutMillis) throws ProxyException;
+
     public void excludeFromScanner(String regex) throws ProxyException;
 
+    public void clearExcludedFromScanner() throws ProxyException;
+
     /**
      * Shuts down ZAP.
      * @throws ProxyException
@@ -243,4 +326,31 @@ public interface ScanningProxy extends LoggingProxy {
     * @throws ProxyException
     */
     void scanAsUser(String url, String contextId, String userId, boolean recurse) throws ProxyException;
+
+   /**
+    * Starts an Active Scan as the given user and returns its id. Unlike {@link #getLastScannerScanId()} the id is
+    * reliable when other scans are started at the same time.
+    * @param url Url to active scan.
+    * @param contextId Id of the context.
+    * @param userId Id of the user.
+    * @param recurse Flag to perform the active scan recursively.
+    * @return Id of the started scan.
+    * @throws ProxyException
+    */
+    int startScanAsUser(String url, String contextId, String userId, boolean recurse) throws ProxyException;
+
+   /**
+    * Stops the Active Scan with the given id.
+    * @param scanId Id of the scan, as returned when it was started.
+    * @throws ProxyException
+    */
+    void stopScan(int scanId) throws ProxyException;
+
+   /**
+    * Returns the alerts raised by the given Active Scan.
+    * @param scanId Id of the scan.
+    * @return Alerts of the scan.
+    * @throws ProxyException
+    */
+    List<Alert> getScanAlerts(int scanId) throws ProxyException;
 }
@@ -0,0 +1,166 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarEntry;
+import net.continuumsecurity.proxy.model.Context;
+import org.zaproxy.clientapi.core.Alert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Decides locally whether URLs are in a context, the same way ZAP does: a URL is in scope when it fully matches one
+ * of the include regexes and none of the exclude regexes, ignoring case.
+ * <p>
+ * All patterns are compiled once. Regexes that are plain literals (optionally quoted or followed by {@code .*}) are
+ * answered with hash lookups, the remaining ones are combined into a single alternation, so a URL is usually checked
+ * with at most one regex match per list. Instances are immutable and can be shared between threads.
+ */
+public class ScopeMatcher {
+    private final RegexSet includes;
+    private final RegexSet excludes;
+
+    public ScopeMatcher(Context context) {
+        this(context.getIncludedRegexs(), context.getExcludedRegexs());
+    }
+
+    /**
+     * @param includeRegexs Regexes of URLs in scope, null or empty for none.
+     * @param excludeRegexs Regexes of URLs excluded from scope, may be null.
+     */
+    public ScopeMatcher(Collection<String> includeRegexs, Collection<String> excludeRegexs) {
+        includes = new RegexSet(includeRegexs);
+        excludes = new RegexSet(excludeRegexs);
+    }
+
+    public boolean matches(String url) {
+        return url != null && includes.matches(url) && !excludes.matches(url);
+    }
+
+    public List<String> filter(Collection<String> urls) {
+        List<String> inScope = new ArrayList<String>();
+        for (String url : urls) {
+            if (matches(url)) {
+                inScope.add(url);
+            }
+        }
+        return inScope;
+    }
+
+    /**
+     * @param entries Messages, e.g. as returned by {@link ZAProxyScanner#getHistory()}.
+     * @return The messages whose request URL is in scope.
+     */
+    public List<HarEntry> filterHistory(Collection<HarEntry> entries) {
+        List<HarEntry> inScope = new ArrayList<HarEntry>();
+        for (HarEntry entry : entries) {
+            if (matches(entry.getRequest().getUrl())) {
+                inScope.add(entry);
+            }
+        }
+        return inScope;
+    }
+
+    public List<Alert> filterAlerts(Collection<Alert> alerts) {
+        List<Alert> inScope = new ArrayList<Alert>();
+        for (Alert alert : alerts) {
+            if (matches(alert.getUrl())) {
+                inScope.add(alert);
+            }
+        }
+        return inScope;
+    }
+
+    /**
+     * Regexes split into exact literals, literal prefixes (literal followed by .*) and one combined pattern for the
+     * rest. Literals and prefixes are kept in lower case and looked up with the lower-cased URL, as ZAP compiles
+     * context regexes case-insensitively.
+     */
+    private static final class RegexSet {
+        private final Set<String> literals = new HashSet<String>();
+        private final Set<String> prefixes = new HashSet<String>();
+        private final int[] prefixLengths;
+        private final Pattern combined;
+        private final List<Pattern> separate = new ArrayList<Pattern>();
+
+        RegexSet(Collection<String> regexs) {
+            Set<Integer> lengths = new TreeSet<Integer>();
+            List<String> remaining = new ArrayList<String>();
+            for (String regex : regexs == null ? Collections.<String>emptyList() : regexs) {
+                String literal;
+                if ((literal = Regexes.literalPrefix(regex)) != null) {
+                    prefixes.add(literal.toLowerCase(Locale.ENGLISH));
+                    lengths.add(literal.length());
+                } else if ((literal = Regexes.literal(regex)) != null) {
+                    literals.add(literal.toLowerCase(Locale.ENGLISH));
+                } else {
+                    remaining.add(regex);
+                }
+            }
+            prefixLengths = new int[lengths.size()];
+            int i = 0;
+            for (Integer length : lengths) {
+                prefixLengths[i++] = length;
+            }
+            List<String> combinable = new ArrayList<String>();
+            for (String regex : remaining) {
+                // Compiled on its own first so a syntax error points at the offending regex.
+                Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+                if (Regexes.isSelfContained(regex)) {
+                    combinable.add(regex);
+                } else {
+                    separate.add(pattern);
+                }
+            }
+            combined = combine(combinable);
+        }
+
+        boolean matches(String url) {
+            String key = url.toLowerCase(Locale.ENGLISH);
+            if (literals.contains(key)) {
+                return true;
+            }
+            for (int length : prefixLengths) {
+                if (length > url.length()) {
+                    break;
+                }
+                if (prefixes.contains(key.substring(0, length))) {
+                    return true;
+                }
+            }
+            if (combined != null && combined.matcher(url).matches()) {
+                return true;
+            }
+            for (Pattern pattern : separate) {
+                if (pattern.matcher(url).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Joins the regexes into one alternation. Each regex is wrapped in a non-capturing group so inline flags stay
+         * local to it.
+         */
+        private static Pattern combine(List<String> regexs) {
+            if (regexs.isEmpty()) {
+                return null;
+            }
+            StringBuilder alternation = new StringBuilder();
+            for (String regex : regexs) {
+                if (alternation.length() > 0) {
+                    alternation.append('|');
+                }
+                alternation.append("(?:").append(regex).append(')');
+            }
+            return Pattern.compile(alternation.toString(), Pattern.CASE_INSENSITIVE);
+        }
+    }
+}
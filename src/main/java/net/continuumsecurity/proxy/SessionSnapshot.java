@@ -0,0 +1,41 @@
+package net.continuumsecurity.proxy;
+
+/**
+ * Keeps a baseline session that ZAP never records into: the baseline is saved under its own name and recording
+ * continues in a working copy next to it, which is replaced by a fresh copy of the baseline on reset.
+ * <p>
+ * ZAP's API can only copy a session by making it the open session and saving it again, so during capture and reset
+ * the baseline is briefly the session ZAP records into. Anything the proxy or passive scanner writes in that window
+ * ends up in the baseline, so proxied traffic should be stopped and the passive scan queue drained (see
+ * {@link ScanningProxy#awaitPassiveScanDrain(long)}) before either is called.
+ */
+class SessionSnapshot {
+    private final LoggingProxy proxy;
+
+    SessionSnapshot(LoggingProxy proxy) {
+        this.proxy = proxy;
+    }
+
+    void capture(String name) throws ProxyException {
+        validateName(name);
+        proxy.saveSession(name, true);
+        // Switch to the working copy straight away, so the baseline stops being the open session.
+        proxy.saveSession(workingCopy(name), true);
+    }
+
+    void reset(String name) throws ProxyException {
+        validateName(name);
+        proxy.loadSession(name);
+        proxy.saveSession(workingCopy(name), true);
+    }
+
+    static String workingCopy(String name) {
+        return name + "-work";
+    }
+
+    private static void validateName(String name) {
+        if (name == null || name.length() == 0) {
+            throw new IllegalArgumentException("Parameter name must not be null or empty.");
+        }
+    }
+}
@@ -1,18 +1,36 @@
 package net.continuumsecurity.proxy;
 
+import net.continuumsecurity.proxy.model.ScanInfo;
+
 import java.util.List;
 
 public interface Spider {
     public void spider(String url);
     public void spider(String url, boolean recurse, String contextName);
     public void spider(String url, Integer maxChildren, boolean recurse, String contextName);
+    /**
+     * Starts spidering and returns the id of the spider scan, which unlike {@link #getLastSpiderScanId()} is reliable
+     * when other spider scans are started at the same time.
+     *
+     * @param contextName Context to spider in, null for ZAP's default context.
+     */
+    public int startSpider(String url, Integer maxChildren, boolean recurse, String contextName);
     public void spiderAsUser(String url, String contextId, String userId);
     public void spiderAsUser(String url, String contextId, String userId, boolean recurse);
     public void spiderAsUser(String url, String contextId, String userId, Integer maxChildren, boolean recurse);
+    /**
+     * Starts spidering as the given user and returns the id of the spider scan, which unlike
+     * {@link #getLastSpiderScanId()} is reliable when other spider scans are started at the same time.
+     */
+    public int startSpiderAsUser(String url, String contextId, String userId, Integer maxChildren, boolean recurse);
+    public void stopSpider(int scanId);
     public int getSpiderProgress(int scanId);
     public int getLastSpiderScanId();
+    public List<Integer> getSpiderScanIds();
+    public List<ScanInfo> getSpiderScans();
     public List<String> getSpiderResults(int scanId);
     public void excludeFromSpider(String regex);
+    public void clearExcludedFromSpider();
     public void setMaxDepth(int depth);
     public void setPostForms(boolean post);
     public void setThreadCount(int threads);
@@ -0,0 +1,123 @@
+package net.continuumsecurity.proxy;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams the URLs found by a running spider scan, each unique URL once and as soon as it is seen:
+ * <pre>
+ * SpiderResultStream results = new SpiderResultStream(scanner, scanner.getLastSpiderScanId());
+ * while (results.hasNext()) {
+ *     String url = results.next();
+ *     ...
+ * }
+ * </pre>
+ * URLs are normalized (lower case scheme and host, no default port or fragment, sorted query parameters) and
+ * deduplicated through a set of 64 bit fingerprints, so URLs that only differ in those respects are returned once.
+ * <p>
+ * ZAP's spider API has no paging, so each poll fetches the result list, but only the entries added since the last
+ * poll are normalized and handed on. {@link #hasNext()} polls until new URLs arrive or the scan has finished.
+ * Not thread-safe.
+ */
+public class SpiderResultStream implements Iterator<String> {
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 1000;
+
+    private final Spider spider;
+    private final int scanId;
+    private final LongHashSet seen = new LongHashSet();
+    private final LinkedList<String> pending = new LinkedList<String>();
+    private long pollIntervalMillis = DEFAULT_POLL_INTERVAL_MILLIS;
+    private int fetched;
+    private boolean finished;
+
+    public SpiderResultStream(Spider spider, int scanId) {
+        this.spider = spider;
+        this.scanId = scanId;
+    }
+
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    /**
+     * Fetches the results once without waiting.
+     *
+     * @return The unique URLs found since the last call, possibly none.
+     */
+    public List<String> poll() {
+        fetch();
+        List<String> urls = new ArrayList<String>(pending);
+        pending.clear();
+        return urls;
+    }
+
+    /**
+     * @return Whether the spider scan has finished and all its URLs were fetched.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return Number of unique URLs seen so far.
+     */
+    public int getUniqueCount() {
+        return seen.size();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (pending.isEmpty() && !finished) {
+            if (fetch() == 0 && !finished) {
+                try {
+                    Thread.sleep(pollIntervalMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ProxyException(e);
+                }
+            }
+        }
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return pending.removeFirst();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Fetches the result list, queueing the new unique URLs.
+     *
+     * @return Number of URLs queued.
+     */
+    private int fetch() {
+        if (finished) {
+            return 0;
+        }
+        // Read the progress first: once it is 100 the following result list is complete.
+        boolean done = spider.getSpiderProgress(scanId) >= 100;
+        List<String> results = spider.getSpiderResults(scanId);
+        int queued = 0;
+        for (int i = fetched; i < results.size(); i++) {
+            String url = UrlNormalizer.normalize(results.get(i));
+            if (seen.add(ResponseSketches.fingerprint(url))) {
+                pending.add(url);
+                queued++;
+            }
+        }
+        fetched = Math.max(fetched, results.size());
+        finished = done;
+        return queued;
+    }
+}
@@ -0,0 +1,230 @@
+package net.continuumsecurity.proxy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Starts active scans on the parts of a site the spider has found while the spider is still running, instead of
+ * waiting for the crawl to finish, so the total time approaches the longer of the two rather than their sum.
+ * <p>
+ * URLs from a {@link SpiderResultStream} are grouped by directory. Once no new URLs have turned up anywhere below a
+ * directory for a few polls (or the spider has finished), the directory is queued for a recursive scan, which covers
+ * everything found below it so far. A directory is never scanned recursively when a recursive scan is already queued
+ * above or below it: URLs found below a queued scan before it starts are left to that scan, and the remaining URLs
+ * (found after the scan above them started, or directly in a directory with scans below it) are each scanned without
+ * recursing. At most a configurable number of scans run at the same time.
+ * <p>
+ * Scans are started with {@link ScanningProxy#startScan(String, boolean)}, or
+ * {@link ScanningProxy#startScanAsUser} when a user is set, so other scans may run on the same ZAP instance.
+ */
+public class SpiderScanPipeline {
+    public static final int DEFAULT_MAX_CONCURRENT_SCANS = 2;
+    public static final int DEFAULT_SETTLE_POLLS = 3;
+
+    private final SpiderResultStream results;
+    private final ScanningProxy scanner;
+    // Directories queued for a recursive scan, and those of them whose scan has been started.
+    private final Set<String> scanned = new HashSet<String>();
+    private final Set<String> started = new HashSet<String>();
+    // Directory to the last poll in which a new URL was found in or below it.
+    private final Map<String, Integer> lastFound = new HashMap<String, Integer>();
+    // Directory to the URLs found directly in it that no queued scan covers yet.
+    private final Map<String, List<String>> pendingDirectories = new LinkedHashMap<String, List<String>>();
+    private final LinkedList<String[]> queue = new LinkedList<String[]>();
+    private final List<Integer> running = new ArrayList<Integer>();
+    private final List<Integer> scanIds = new ArrayList<Integer>();
+    private int maxConcurrentScans = DEFAULT_MAX_CONCURRENT_SCANS;
+    private int settlePolls = DEFAULT_SETTLE_POLLS;
+    private long pollIntervalMillis = SpiderResultStream.DEFAULT_POLL_INTERVAL_MILLIS;
+    private String contextId;
+    private String userId;
+    private int poll;
+
+    public SpiderScanPipeline(ZAProxyScanner scanner, int spiderScanId) {
+        this(scanner, scanner, spiderScanId);
+    }
+
+    public SpiderScanPipeline(Spider spider, ScanningProxy scanner, int spiderScanId) {
+        this.results = new SpiderResultStream(spider, spiderScanId);
+        this.scanner = scanner;
+    }
+
+    public void setMaxConcurrentScans(int maxConcurrentScans) {
+        if (maxConcurrentScans < 1) {
+            throw new IllegalArgumentException("Parameter maxConcurrentScans must be at least 1.");
+        }
+        this.maxConcurrentScans = maxConcurrentScans;
+    }
+
+    /**
+     * @param settlePolls Number of polls without new URLs after which a directory is considered fully crawled.
+     */
+    public void setSettlePolls(int settlePolls) {
+        this.settlePolls = settlePolls;
+    }
+
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    /**
+     * Scans as the given user of the context, as the spider presumably did.
+     */
+    public void setUser(String contextId, String userId) {
+        this.contextId = contextId;
+        this.userId = userId;
+    }
+
+    /**
+     * Runs until the spider has finished and all scans started for its results have completed.
+     *
+     * @return Ids of the active scans that were started.
+     * @throws ProxyException
+     */
+    public List<Integer> run() throws ProxyException {
+        while (true) {
+            poll++;
+            for (String url : results.poll()) {
+                add(url);
+            }
+            queueSettledDirectories(results.isFinished());
+            updateRunning();
+            while (running.size() < maxConcurrentScans && !queue.isEmpty()) {
+                start(queue.removeFirst());
+            }
+            if (results.isFinished() && queue.isEmpty() && running.isEmpty() && pendingDirectories.isEmpty()) {
+                return Collections.unmodifiableList(scanIds);
+            }
+            try {
+                Thread.sleep(pollIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProxyException(e);
+            }
+        }
+    }
+
+    private void add(String url) {
+        String directory = directory(url);
+        for (String parent : parents(directory)) {
+            lastFound.put(parent, poll);
+        }
+        List<String> urls = pendingDirectories.get(directory);
+        if (urls == null) {
+            urls = new ArrayList<String>();
+            pendingDirectories.put(directory, urls);
+        }
+        urls.add(url);
+    }
+
+    private void queueSettledDirectories(boolean spiderFinished) {
+        List<String> settled = new ArrayList<String>();
+        for (String directory : pendingDirectories.keySet()) {
+            if (spiderFinished || poll - lastFound.get(directory) >= settlePolls) {
+                settled.add(directory);
+            }
+        }
+        // Shortest first, so a directory is queued before those below it.
+        Collections.sort(settled);
+        for (String directory : settled) {
+            List<String> urls = pendingDirectories.remove(directory);
+            if (urls == null) {
+                // Covered by a directory queued above it.
+                continue;
+            }
+            String covering = coveringScan(directory);
+            if (covering != null && !started.contains(covering)) {
+                // Found before the recursive scan above it starts, so that scan covers it.
+                continue;
+            }
+            if (covering == null && !isScannedBelow(directory)) {
+                scanned.add(directory);
+                queue.add(new String[]{directory, "true"});
+                for (Iterator<String> it = pendingDirectories.keySet().iterator(); it.hasNext(); ) {
+                    if (it.next().startsWith(directory)) {
+                        // Already found, so it is part of the recursive scan.
+                        it.remove();
+                    }
+                }
+            } else {
+                // Either new below a recursive scan that has already started, which ZAP does not extend to
+                // nodes added later, or next to directories that have their own scans.
+                for (String url : urls) {
+                    queue.add(new String[]{url, "false"});
+                }
+            }
+        }
+    }
+
+    private void updateRunning() {
+        for (Iterator<Integer> it = running.iterator(); it.hasNext(); ) {
+            if (scanner.getScanProgress(it.next()) >= 100) {
+                it.remove();
+            }
+        }
+    }
+
+    private void start(String[] target) {
+        String url = target[0];
+        boolean recurse = Boolean.parseBoolean(target[1]);
+        int scanId = userId != null
+                ? scanner.startScanAsUser(url, contextId, userId, recurse)
+                : scanner.startScan(url, recurse);
+        running.add(scanId);
+        scanIds.add(scanId);
+        if (recurse) {
+            started.add(url);
+        }
+    }
+
+    /**
+     * Returns the directory queued for a recursive scan that covers the given one (itself or one above it), or null.
+     */
+    private String coveringScan(String directory) {
+        for (String parent : parents(directory)) {
+            if (scanned.contains(parent)) {
+                return parent;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether a directory below the given one has been queued for a recursive scan.
+     */
+    private boolean isScannedBelow(String directory) {
+        for (String other : scanned) {
+            if (other.length() > directory.length() && other.startsWith(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the directory and those above it, up to the root of the site.
+     */
+    private static List<String> parents(String directory) {
+        List<String> parents = new ArrayList<String>();
+        parents.add(directory);
+        int slash = directory.length() - 1;
+        while ((slash = directory.lastIndexOf('/', slash - 1)) > directory.indexOf("://") + 2) {
+            parents.add(directory.substring(0, slash + 1));
+        }
+        return parents;
+    }
+
+    static String directory(String url) {
+        int query = url.indexOf('?');
+        String path = query < 0 ? url : url.substring(0, query);
+        return path.substring(0, path.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,94 @@
+package net.continuumsecurity.proxy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Brings URLs that address the same resource into one form: lower case scheme and host, no default port, no
+ * fragment, "/" for an empty path and query parameters sorted by name (keeping the order of repeated names).
+ */
+final class UrlNormalizer {
+    private static final Comparator<String> BY_NAME = new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+            return name(a).compareTo(name(b));
+        }
+    };
+
+    private UrlNormalizer() {
+    }
+
+    static String normalize(String url) {
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd < 0) {
+            return url;
+        }
+        String scheme = url.substring(0, schemeEnd).toLowerCase(Locale.ENGLISH);
+        int authorityStart = schemeEnd + 3;
+        int end = url.indexOf('#');
+        if (end < 0) {
+            end = url.length();
+        }
+        int pathStart = authorityStart;
+        while (pathStart < end && "/?".indexOf(url.charAt(pathStart)) < 0) {
+            pathStart++;
+        }
+        String authority = url.substring(authorityStart, pathStart);
+        int at = authority.lastIndexOf('@');
+        String userInfo = at >= 0 ? authority.substring(0, at + 1) : "";
+        String hostPort = authority.substring(at + 1).toLowerCase(Locale.ENGLISH);
+        if (("http".equals(scheme) && hostPort.endsWith(":80"))
+                || ("https".equals(scheme) && hostPort.endsWith(":443"))) {
+            hostPort = hostPort.substring(0, hostPort.lastIndexOf(':'));
+        }
+        int queryStart = url.indexOf('?', pathStart);
+        if (queryStart > end || queryStart < 0) {
+            queryStart = end;
+        }
+        String path = url.substring(pathStart, queryStart);
+
+        StringBuilder normalized = new StringBuilder(url.length());
+        normalized.append(scheme).append("://").append(userInfo).append(hostPort);
+        normalized.append(path.length() == 0 ? "/" : path);
+        if (queryStart + 1 < end) {
+            normalized.append('?').append(sortQuery(url.substring(queryStart + 1, end)));
+        }
+        return normalized.toString();
+    }
+
+    private static String sortQuery(String query) {
+        if (query.indexOf('&') < 0) {
+            return query;
+        }
+        List<String> params = new ArrayList<String>();
+        int start = 0;
+        while (start <= query.length()) {
+            int next = query.indexOf('&', start);
+            if (next < 0) {
+                next = query.length();
+            }
+            if (next > start) {
+                params.add(query.substring(start, next));
+            }
+            start = next + 1;
+        }
+        // Stable, so repeated names keep their order.
+        Collections.sort(params, BY_NAME);
+        StringBuilder sorted = new StringBuilder(query.length());
+        for (String param : params) {
+            if (sorted.length() > 0) {
+                sorted.append('&');
+            }
+            sorted.append(param);
+        }
+        return sorted.toString();
+    }
+
+    private static String name(String param) {
+        int equals = param.indexOf('=');
+        return equals < 0 ? param : param.substring(0, equals);
+    }
+}
@@ -3,33 +3,41 @@ package net.continuumsecurity.proxy;
 import edu.umass.cs.benchlab.har.HarEntry;
 import edu.umass.cs.benchlab.har.HarLog;
 import edu.umass.cs.benchlab.har.HarRequest;
-import edu.umass.cs.benchlab.har.tools.HarFileReader;
+import net.continuumsecurity.proxy.api.ApiCallListener;
+import net.continuumsecurity.proxy.api.ApiInterceptor;
+import net.continuumsecurity.proxy.api.ApiMetrics;
+import net.continuumsecurity.proxy.api.ReadCoalescer;
+import net.continuumsecurity.proxy.api.ResiliencePolicy;
+import net.continuumsecurity.proxy.api.ZapClientApi;
+import net.continuumsecurity.proxy.jfr.JfrEvents;
 import net.continuumsecurity.proxy.model.AuthenticationMethod;
 import net.continuumsecurity.proxy.model.Context;
+import net.continuumsecurity.proxy.model.PassiveScanDrain;
+import net.continuumsecurity.proxy.model.ScanPlan;
+import net.continuumsecurity.proxy.model.ScanPlanResult;
+import net.continuumsecurity.proxy.model.ScanPolicyTemplate;
+import net.continuumsecurity.proxy.model.ScanInfo;
 import net.continuumsecurity.proxy.model.ScanResponse;
+import net.continuumsecurity.proxy.model.ScannerInfo;
 import net.continuumsecurity.proxy.model.Script;
 import net.continuumsecurity.proxy.model.User;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.StringUtils;
-import org.codehaus.jackson.JsonFactory;
-import org.codehaus.jackson.JsonGenerator;
 import org.openqa.selenium.Proxy;
 import org.zaproxy.clientapi.core.Alert;
 import org.zaproxy.clientapi.core.ApiResponse;
 import org.zaproxy.clientapi.core.ApiResponseElement;
 import org.zaproxy.clientapi.core.ApiResponseList;
 import org.zaproxy.clientapi.core.ApiResponseSet;
-import org.zaproxy.clientapi.core.ClientApi;
 import org.zaproxy.clientapi.core.ClientApiException;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -39,18 +47,34 @@ import java.util.regex.Pattern;
 
 public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, ContextModifier {
     private static final String MINIMUM_ZAP_VERSION = "2.6"; // Weekly builds are also allowed.
-    private final ClientApi clientApi;
+    private static final int DEFAULT_PLAN_PARALLELISM = 4;
+    private final ZapClientApi clientApi;
     private final Proxy seleniumProxy;
     private final String apiKey;
+    private final ConfigurationCache configurationCache = new ConfigurationCache();
+    private final ScannerCatalogue scannerCatalogue = new ScannerCatalogue(this);
     Logger log = Logger.getLogger(ZAProxyScanner.class.getName());
 
     public ZAProxyScanner(String host, int port, String apiKey)
             throws IllegalArgumentException, ProxyException {
+        this(host, port, apiKey, new ResiliencePolicy());
+    }
+
+    /**
+     * Creates a scanner whose ZAP API calls are retried and circuit broken according to the given policy.
+     *
+     * @param host             ZAP host.
+     * @param port             ZAP API port.
+     * @param apiKey           ZAP API key.
+     * @param resiliencePolicy Retry and circuit breaker settings, {@link ResiliencePolicy#disabled()} to turn them off.
+     */
+    public ZAProxyScanner(String host, int port, String apiKey, ResiliencePolicy resiliencePolicy)
+            throws IllegalArgumentException, ProxyException {
         validateHost(host);
         validatePort(port);
         this.apiKey = apiKey;
 
-        clientApi = new ClientApi(host, port, this.apiKey);
+        clientApi = new ZapClientApi(host, port, this.apiKey, resiliencePolicy);
         validateMinimumRequiredZapVersion();
 
         seleniumProxy = new Proxy();
@@ -60,6 +84,86 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         seleniumProxy.setProxyAutoconfigUrl(strBuilder.toString());
     }
 
+    /**
+     * Enables or disables single-flight coalescing of read-only calls: concurrent identical reads made through this
+     * scanner share one request to ZAP. Enabled by default.
+     *
+     * @param enabled true to coalesce concurrent identical reads.
+     */
+    public void setReadCoalescing(boolean enabled) {
+        clientApi.getReadCoalescer().setEnabled(enabled);
+    }
+
+    /**
+     * Serves the hot counters (alerts count, history count, active scan and spider progress) from memory for up to
+     * the given time after they were last fetched. Any state-changing call through this scanner drops cached values.
+     *
+     * @param ttlMillis Time to live in milliseconds, 0 disables the counter cache.
+     */
+    public void setCounterCacheTtl(long ttlMillis) {
+        ReadCoalescer readCoalescer = clientApi.getReadCoalescer();
+        readCoalescer.setTtl("core", "numberOfAlerts", ttlMillis);
+        readCoalescer.setTtl("core", "numberOfMessages", ttlMillis);
+        readCoalescer.setTtl("ascan", "scans", ttlMillis);
+        readCoalescer.setTtl("spider", "scans", ttlMillis);
+    }
+
+    /**
+     * Returns latency, error and payload size statistics of every ZAP API endpoint called through this scanner, e.g.
+     * {@code getApiMetrics().export()} to see which calls are slow.
+     *
+     * @return Metrics recorded since the scanner was created or last reset.
+     */
+    public ApiMetrics getApiMetrics() {
+        return clientApi.getMetrics();
+    }
+
+    /**
+     * Adds an interceptor around every ZAP API call made by this scanner, e.g. for tracing, caching or rate limiting.
+     *
+     * @param interceptor Interceptor, run inside those added before it.
+     */
+    public void addApiInterceptor(ApiInterceptor interceptor) {
+        clientApi.addInterceptor(interceptor);
+    }
+
+    public void removeApiInterceptor(ApiInterceptor interceptor) {
+        clientApi.removeInterceptor(interceptor);
+    }
+
+    /**
+     * Adds a listener notified before and after every ZAP API call made by this scanner, with the call's redacted
+     * parameters, duration and payload size.
+     *
+     * @param listener Listener to add.
+     */
+    public void addApiListener(ApiCallListener listener) {
+        clientApi.addListener(listener);
+    }
+
+    public void removeApiListener(ApiCallListener listener) {
+        clientApi.removeListener(listener);
+    }
+
+    /**
+     * Enables or disables caching of context, user, authentication and script configuration read from ZAP.
+     * Enabled by default; the cache is kept consistent with changes made through this scanner.
+     *
+     * @param enabled true to cache configuration reads.
+     */
+    public void setConfigurationCacheEnabled(boolean enabled) {
+        configurationCache.setEnabled(enabled);
+    }
+
+    /**
+     * Expires cached configuration after the given time, so that changes made to ZAP by other clients are seen.
+     *
+     * @param ttlMillis Time to live in milliseconds, 0 keeps entries until this scanner changes them.
+     */
+    public void setConfigurationCacheTtl(long ttlMillis) {
+        configurationCache.setTtlMillis(ttlMillis);
+    }
+
     private static void validateHost(String host) {
         if (host == null) {
             throw new IllegalArgumentException("Parameter host must not be null.");
@@ -111,7 +215,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
                         + MINIMUM_ZAP_VERSION + "\" but got: " + zapVersion);
             }
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -120,8 +223,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     public void setScannerAttackStrength(String scannerId, String strength) throws ProxyException {
         try {
             clientApi.ascan.setScannerAttackStrength(scannerId, strength, null);
+            scannerCatalogue.invalidate();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException("Error occurred for setScannerAttackStrength for scannerId: "+scannerId+" and strength: "+strength, e);
         }
     }
@@ -130,10 +233,56 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     public void setScannerAlertThreshold(String scannerId, String threshold) throws ProxyException {
         try {
             clientApi.ascan.setScannerAlertThreshold(scannerId, threshold, null);
+            scannerCatalogue.invalidate();
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    @Override
+    public void setPolicyAttackStrength(String policyId, String strength) throws ProxyException {
+        try {
+            clientApi.ascan.setPolicyAttackStrength(policyId, strength, null);
+            scannerCatalogue.invalidate();
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    @Override
+    public void setPolicyAlertThreshold(String policyId, String threshold) throws ProxyException {
+        try {
+            clientApi.ascan.setPolicyAlertThreshold(policyId, threshold, null);
+            scannerCatalogue.invalidate();
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    /**
+     * Applies the scanner settings of the template, sending only the settings that differ from ZAP's current ones.
+     * All the calls change the default policy, so they are sent one after another.
+     *
+     * @param template Scanner settings, e.g. loaded from a {@link ScanPolicyTemplateStore}.
+     * @return Descriptions of the changes that were made.
+     * @throws ProxyException
+     */
+    public List<String> applyPolicy(ScanPolicyTemplate template) throws ProxyException {
+        return new ScanPolicyApplier(this).apply(template);
+    }
+
+    @Override
+    public List<ScannerInfo> getActiveScanners() throws ProxyException {
+        List<ScannerInfo> scanners = new ArrayList<ScannerInfo>();
+        try {
+            ApiResponseList responseList = (ApiResponseList) clientApi.ascan.scanners(null, null);
+            for (ApiResponse response : responseList.getItems()) {
+                scanners.add(new ScannerInfo((ApiResponseSet) response));
+            }
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
+        return scanners;
     }
 
     @Override
@@ -144,19 +293,56 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             } else {
                 clientApi.ascan.disableScanners(ids, null);
             }
+            scannerCatalogue.markEnabled(ids, false, enabled);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
 
+    @Override
+    public List<ScannerInfo> getPassiveScanners() throws ProxyException {
+        List<ScannerInfo> scanners = new ArrayList<ScannerInfo>();
+        try {
+            ApiResponseList responseList = (ApiResponseList) clientApi.pscan.scanners();
+            for (ApiResponse response : responseList.getItems()) {
+                scanners.add(new ScannerInfo((ApiResponseSet) response, true));
+            }
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+        return scanners;
+    }
+
+    @Override
+    public void setEnablePassiveScanners(String ids, boolean enabled) throws ProxyException {
+        try {
+            if (enabled) {
+                clientApi.pscan.enableScanners(ids);
+            } else {
+                clientApi.pscan.disableScanners(ids);
+            }
+            scannerCatalogue.markEnabled(ids, true, enabled);
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    /**
+     * Returns a catalogue of the active and passive scanners, read from ZAP on first use.
+     *
+     * @return Catalogue backed by this scanner.
+     */
+    public ScannerCatalogue getScannerCatalogue() {
+        return scannerCatalogue;
+    }
+
     @Override
     public void disableAllScanners() throws ProxyException {
         try {
             ApiResponse response = clientApi.pscan.setEnabled("false");
             response = clientApi.ascan.disableAllScanners(null);
+            scannerCatalogue.invalidate();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -166,8 +352,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.pscan.setEnabled("true");
             clientApi.ascan.enableAllScanners(null);
+            scannerCatalogue.invalidate();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -177,11 +363,24 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.pscan.setEnabled(Boolean.toString(enabled));
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
 
+    @Override
+    public int getPassiveScanRecordsToScan() throws ProxyException {
+        try {
+            return ClientApiUtils.getInteger(clientApi.pscan.recordsToScan());
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    @Override
+    public PassiveScanDrain awaitPassiveScanDrain(long timeoutMillis) throws ProxyException {
+        return new PassiveScanDrainWaiter(this).await(timeoutMillis);
+    }
+
     public List<Alert> getAlerts() throws ProxyException {
         return getAlerts(-1, -1);
     }
@@ -190,7 +389,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.core.deleteAllAlerts();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -199,7 +397,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             return clientApi.core.xmlreport();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -209,7 +406,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             return clientApi.core.htmlreport();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -218,7 +414,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             return clientApi.getAlerts("", start, count);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -227,16 +422,26 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             return ClientApiUtils.getInteger(clientApi.core.numberOfAlerts(""));
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
 
     public void scan(String url) throws ProxyException {
         try {
-            clientApi.ascan.scan(url, "true", "false", null, null, null);
+            reportScanStarted("ascan", clientApi.ascan.scan(url, "true", "false", null, null, null), url);
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    @Override
+    public int startScan(String url, boolean recurse) throws ProxyException {
+        try {
+            int scanId = ClientApiUtils.getInteger(clientApi.ascan.scan(url, String.valueOf(recurse), "false", null,
+                    null, null));
+            JfrEvents.scanStarted("ascan", scanId, url);
+            return scanId;
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -254,21 +459,58 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     public void scanAsUser(String url, String contextId, String userId, boolean recurse)
             throws ProxyException {
         try {
-            this.clientApi.ascan
+            reportScanStarted("ascan", this.clientApi.ascan
                     .scanAsUser(url, contextId, userId, String.valueOf(recurse),
-                            null, null, null);
+                            null, null, null), url);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
 
+    @Override
+    public int startScanAsUser(String url, String contextId, String userId, boolean recurse)
+            throws ProxyException {
+        try {
+            int scanId = ClientApiUtils.getInteger(this.clientApi.ascan
+                    .scanAsUser(url, contextId, userId, String.valueOf(recurse),
+                            null, null, null));
+            JfrEvents.scanStarted("ascan", scanId, url);
+            return scanId;
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    @Override
+    public void stopScan(int scanId) throws ProxyException {
+        try {
+            clientApi.ascan.stop(Integer.toString(scanId));
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    @Override
+    public List<Alert> getScanAlerts(int scanId) throws ProxyException {
+        List<Alert> alerts = new ArrayList<Alert>();
+        try {
+            ApiResponseList ids = (ApiResponseList) clientApi.ascan.alertsIds(Integer.toString(scanId));
+            for (ApiResponse id : ids.getItems()) {
+                alerts.add(new Alert((ApiResponseSet) clientApi.core.alert(((ApiResponseElement) id).getValue())));
+            }
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+        return alerts;
+    }
+
     public int getScanProgress(int id) throws ProxyException {
         try {
             ApiResponseList response = (ApiResponseList) clientApi.ascan.scans();
-            return new ScanResponse(response).getScanById(id).getProgress();
+            int progress = new ScanResponse(response).getScanById(id).getProgress();
+            JfrEvents.scanProgress("ascan", id, progress);
+            return progress;
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -277,12 +519,70 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.ascan.removeAllScans();
             clientApi.core.newSession("", "");
+            configurationCache.invalidateAll();
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    @Override
+    public void saveSession(String name, boolean overwrite) throws ProxyException {
+        try {
+            clientApi.core.saveSession(name, Boolean.toString(overwrite));
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    @Override
+    public void loadSession(String name) throws ProxyException {
+        try {
+            clientApi.ascan.removeAllScans();
+            clientApi.core.loadSession(name);
+            configurationCache.invalidateAll();
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    @Override
+    public String getSessionLocation() throws ProxyException {
+        try {
+            return ((ApiResponseElement) clientApi.core.sessionLocation()).getValue();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
 
+    /**
+     * Saves the current session as the baseline for {@link #resetToSnapshot(String)}. The session is saved twice:
+     * once under the given name, which is then left untouched, and once as a working copy that ZAP records into.
+     * Proxied traffic should be stopped and passive scanning drained first, see {@link SessionSnapshot}.
+     * <p>
+     * Scripts, anti-CSRF token names and scanner settings are ZAP options rather than session data, so they are not
+     * part of the snapshot and are kept as they are on reset.
+     *
+     * @param name Name of the baseline session.
+     * @throws ProxyException
+     */
+    @Override
+    public void captureSnapshot(String name) throws ProxyException {
+        new SessionSnapshot(this).capture(name);
+    }
+
+    /**
+     * Returns to the baseline saved by {@link #captureSnapshot(String)} with three API calls: removing the active
+     * scans, loading the baseline and saving it as a fresh working copy. Proxied traffic should be stopped and
+     * passive scanning drained first, see {@link SessionSnapshot}.
+     *
+     * @param name Name of the baseline session.
+     * @throws ProxyException
+     */
+    @Override
+    public void resetToSnapshot(String name) throws ProxyException {
+        new SessionSnapshot(this).reset(name);
+    }
+
     public List<HarEntry> getHistory() throws ProxyException {
         return getHistory(-1, -1);
     }
@@ -292,8 +592,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             return ClientApiUtils.getHarEntries(clientApi.core
                     .messagesHar("", Integer.toString(start), Integer.toString(count)));
         } catch (ClientApiException e) {
-            e.printStackTrace();
-
             throw new ProxyException(e);
         }
     }
@@ -303,25 +601,12 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             return ClientApiUtils.getInteger(clientApi.core.numberOfMessages(""));
         } catch (ClientApiException e) {
 
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
 
     public List<HarEntry> findInResponseHistory(String regex, List<HarEntry> entries) {
-        List<HarEntry> found = new ArrayList<HarEntry>();
-        for (HarEntry entry : entries) {
-            if (entry.getResponse().getContent() != null) {
-                String content = entry.getResponse().getContent().getText();
-                if ("base64".equalsIgnoreCase(entry.getResponse().getContent().getEncoding())) {
-                    content = new String(Base64.decodeBase64(content));
-                }
-                if (content.contains(regex)) {
-                    found.add(entry);
-                }
-            }
-        }
-        return found;
+        return HarUtils.responsesContaining(regex, entries);
     }
 
     public List<HarEntry> findInRequestHistory(String regex) throws ProxyException {
@@ -329,8 +614,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             return ClientApiUtils
                     .getHarEntries(clientApi.search.harByRequestRegex(regex, "", "-1", "-1"));
         } catch (ClientApiException e) {
-            e.printStackTrace();
-
             throw new ProxyException(e);
         }
     }
@@ -340,8 +623,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             return ClientApiUtils
                     .getHarEntries(clientApi.search.harByResponseRegex(regex, "", "-1", "-1"));
         } catch (ClientApiException e) {
-            e.printStackTrace();
-
             throw new ProxyException(e);
         }
     }
@@ -351,11 +632,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             String harRequestStr = ClientApiUtils.convertHarRequestToString(request);
             byte[] response = clientApi.core.sendHarRequest(harRequestStr, Boolean.toString(followRedirect));
-            String responseAsString = new String(response);
             return ClientApiUtils.getHarEntries(response);
         } catch (ClientApiException e) {
-            e.printStackTrace();
-
             throw new ProxyException(e);
         }
     }
@@ -371,20 +649,20 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         String maxChildrenString = maxChildren == null ? null : String.valueOf(maxChildren);
 
         try {
-            clientApi.spider
-                    .scan(url, maxChildrenString, String.valueOf(recurse), contextNameString, null);
+            reportScanStarted("spider", clientApi.spider
+                    .scan(url, maxChildrenString, String.valueOf(recurse), contextNameString, null), url);
         } catch (ClientApiException e) {
-            e.printStackTrace();
+            // Failure already reported by ZapClientApi, spidering stays best effort.
         }
     }
 
     @Override
     public void spider(String url) {
         try {
-            clientApi.spider
-                    .scan(url, null, null, null, null);
+            reportScanStarted("spider", clientApi.spider
+                    .scan(url, null, null, null, null), url);
         } catch (ClientApiException e) {
-            e.printStackTrace();
+            // Failure already reported by ZapClientApi, spidering stays best effort.
         }
     }
 
@@ -394,30 +672,43 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         String contextNameString = contextName == null ? "Default Context" : contextName;
 
         try {
-            clientApi.spider
-                    .scan(url, null, String.valueOf(recurse), contextNameString, null);
+            reportScanStarted("spider", clientApi.spider
+                    .scan(url, null, String.valueOf(recurse), contextNameString, null), url);
+        } catch (ClientApiException e) {
+            // Failure already reported by ZapClientApi, spidering stays best effort.
+        }
+    }
+
+    @Override
+    public int startSpider(String url, Integer maxChildren, boolean recurse, String contextName) {
+        try {
+            int scanId = ClientApiUtils.getInteger(clientApi.spider.scan(url,
+                    maxChildren == null ? null : String.valueOf(maxChildren), String.valueOf(recurse),
+                    contextName == null ? "Default Context" : contextName, null));
+            JfrEvents.scanStarted("spider", scanId, url);
+            return scanId;
         } catch (ClientApiException e) {
-            e.printStackTrace();
+            throw new ProxyException(e);
         }
     }
 
     @Override
     public void spiderAsUser(String url, String contextId, String userId) {
         try {
-            clientApi.spider
-                    .scanAsUser(url, contextId, userId, null, null, null);
+            reportScanStarted("spider", clientApi.spider
+                    .scanAsUser(url, contextId, userId, null, null, null), url);
         } catch (ClientApiException e) {
-            e.printStackTrace();
+            // Failure already reported by ZapClientApi, spidering stays best effort.
         }
     }
 
     @Override
     public void spiderAsUser(String url, String contextId, String userId, boolean recurse) {
         try {
-            clientApi.spider
-                    .scanAsUser(url, contextId, userId, null, String.valueOf(recurse), null);
+            reportScanStarted("spider", clientApi.spider
+                    .scanAsUser(url, contextId, userId, null, String.valueOf(recurse), null), url);
         } catch (ClientApiException e) {
-            e.printStackTrace();
+            // Failure already reported by ZapClientApi, spidering stays best effort.
         }
     }
 
@@ -425,10 +716,34 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     public void spiderAsUser(String url, String contextId, String userId,
                              Integer maxChildren, boolean recurse) {
         try {
-            clientApi.spider
-                    .scanAsUser(url, contextId, userId, String.valueOf(maxChildren), String.valueOf(recurse), null);
+            reportScanStarted("spider", clientApi.spider
+                    .scanAsUser(url, contextId, userId, String.valueOf(maxChildren), String.valueOf(recurse), null),
+                    url);
+        } catch (ClientApiException e) {
+            // Failure already reported by ZapClientApi, spidering stays best effort.
+        }
+    }
+
+    @Override
+    public int startSpiderAsUser(String url, String contextId, String userId,
+                                 Integer maxChildren, boolean recurse) {
+        try {
+            int scanId = ClientApiUtils.getInteger(clientApi.spider
+                    .scanAsUser(url, contextId, userId, maxChildren == null ? null : String.valueOf(maxChildren),
+                            String.valueOf(recurse), null));
+            JfrEvents.scanStarted("spider", scanId, url);
+            return scanId;
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    @Override
+    public void stopSpider(int scanId) {
+        try {
+            clientApi.spider.stop(Integer.toString(scanId));
         } catch (ClientApiException e) {
-            e.printStackTrace();
+            throw new ProxyException(e);
         }
     }
 
@@ -437,7 +752,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.spider.excludeFromScan(regex);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -447,7 +761,34 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.ascan.excludeFromScan(regex);
         } catch (ClientApiException e) {
-            e.printStackTrace();
+            throw new ProxyException(e);
+        }
+    }
+
+    /**
+     * Removes all spider exclusions.
+     *
+     * @throws ProxyException
+     */
+    @Override
+    public void clearExcludedFromSpider() throws ProxyException {
+        try {
+            clientApi.spider.clearExcludedFromScan();
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    /**
+     * Removes all active scanner exclusions.
+     *
+     * @throws ProxyException
+     */
+    @Override
+    public void clearExcludedFromScanner() throws ProxyException {
+        try {
+            clientApi.ascan.clearExcludedFromScan();
+        } catch (ClientApiException e) {
             throw new ProxyException(e);
         }
     }
@@ -457,7 +798,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.core.setMode("attack");
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -467,7 +807,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.spider.setOptionMaxDepth(depth);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -477,7 +816,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.spider.setOptionPostForm(post);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -487,7 +825,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.spider.setOptionThreadCount(threads);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -498,7 +835,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             ApiResponseList response = (ApiResponseList) clientApi.spider.scans();
             return new ScanResponse(response).getLastScan().getId();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -509,18 +845,54 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             ApiResponseList response = (ApiResponseList) clientApi.ascan.scans();
             return new ScanResponse(response).getLastScan().getId();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
 
+    @Override
+    public List<ScanInfo> getScans() throws ProxyException {
+        try {
+            return new ScanResponse((ApiResponseList) clientApi.ascan.scans()).getScans();
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    @Override
+    public List<ScanInfo> getSpiderScans() {
+        try {
+            return new ScanResponse((ApiResponseList) clientApi.spider.scans()).getScans();
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    @Override
+    public List<Integer> getScanIds() throws ProxyException {
+        return scanIds(getScans());
+    }
+
+    @Override
+    public List<Integer> getSpiderScanIds() {
+        return scanIds(getSpiderScans());
+    }
+
+    private static List<Integer> scanIds(List<ScanInfo> scans) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (ScanInfo scan : scans) {
+            ids.add(scan.getId());
+        }
+        return ids;
+    }
+
     @Override
     public int getSpiderProgress(int id) {
         try {
             ApiResponseList response = (ApiResponseList) clientApi.spider.scans();
-            return new ScanResponse(response).getScanById(id).getProgress();
+            int progress = new ScanResponse(response).getScanById(id).getProgress();
+            JfrEvents.scanProgress("spider", id, progress);
+            return progress;
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -535,7 +907,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
                 results.add(((ApiResponseElement) response).getValue());
             }
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
 
@@ -552,7 +923,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.core.shutdown();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -568,7 +938,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.ascan.setOptionHandleAntiCSRFTokens(enabled);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -584,9 +953,10 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     public void createContext(String contextName, boolean inScope) throws ProxyException {
         try {
             clientApi.context.newContext(contextName);
+            configurationCache.invalidate(ConfigurationCache.CONTEXTS);
             clientApi.context.setContextInScope(contextName, String.valueOf(inScope));
+            configurationCache.invalidateTree(ConfigurationCache.context(contextName));
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -602,8 +972,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     public void includeRegexInContext(String contextName, Pattern regex) throws ProxyException {
         try {
             clientApi.context.includeInContext(contextName, Pattern.quote(regex.pattern()));
+            invalidateIncludeRegexs(contextName);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -622,12 +992,24 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.context
                     .includeInContext(contextName, Pattern.quote(pattern.pattern()) + ".*");
+            invalidateIncludeRegexs(contextName);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
 
+    /**
+     * Returns a matcher that decides locally whether URLs are in the given context, e.g. to filter history, spider
+     * results or alerts without further calls to ZAP.
+     *
+     * @param contextName Name of the context.
+     * @return Matcher built from the context's current include and exclude regexes.
+     * @throws ProxyException
+     */
+    public ScopeMatcher getScopeMatcher(String contextName) throws ProxyException {
+        return new ScopeMatcher(getContextInfo(contextName));
+    }
+
     /**
      * Add exclude regex to the given context.
      *
@@ -639,8 +1021,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     public void excludeRegexFromContext(String contextName, Pattern regex) throws ProxyException {
         try {
             clientApi.context.excludeFromContext(contextName, Pattern.quote(regex.pattern()));
+            invalidateExcludeRegexs(contextName);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -659,8 +1041,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.context
                     .excludeFromContext(contextName, Pattern.quote(pattern.pattern()) + ".*");
+            invalidateExcludeRegexs(contextName);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -674,13 +1056,18 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
      */
     @Override
     public Context getContextInfo(String contextName) throws ProxyException {
+        ConfigurationCache.Entry<Context> cached = configurationCache.get(ConfigurationCache.context(contextName));
+        if (cached != null) {
+            return new Context(cached.getValue());
+        }
+        long readAt = configurationCache.generation();
         Context context;
         try {
             context = new Context((ApiResponseSet) clientApi.context.context(contextName));
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
+        configurationCache.putContext(contextName, new Context(context), context.getId(), readAt);
         return context;
     }
 
@@ -692,14 +1079,21 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
      */
     @Override
     public List<String> getContexts() throws ProxyException {
+        ConfigurationCache.Entry<List<String>> cached = configurationCache.get(ConfigurationCache.CONTEXTS);
+        if (cached != null) {
+            return cached.getValue();
+        }
+        long readAt = configurationCache.generation();
         String contexts = null;
         try {
             contexts = ((ApiResponseElement) clientApi.context.contextList()).getValue();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
-        return Arrays.asList(contexts.substring(1, contexts.length() - 1).split(", "));
+        List<String> contextNames = Collections.unmodifiableList(
+                Arrays.asList(contexts.substring(1, contexts.length() - 1).split(", ")));
+        configurationCache.put(ConfigurationCache.CONTEXTS, contextNames, readAt);
+        return contextNames;
     }
 
     /**
@@ -713,8 +1107,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     public void setContextInScope(String contextName, boolean inScope) throws ProxyException {
         try {
             clientApi.context.setContextInScope(contextName, String.valueOf(inScope));
+            configurationCache.invalidate(ConfigurationCache.context(contextName));
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -728,19 +1122,26 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
      */
     @Override
     public List<String> getIncludedRegexs(String contextName) throws ProxyException {
+        String key = ConfigurationCache.includeRegexs(contextName);
+        ConfigurationCache.Entry<List<String>> cached = configurationCache.get(key);
+        if (cached != null) {
+            return cached.getValue();
+        }
+        long readAt = configurationCache.generation();
         String includedRegexs;
+        List<String> regexs = null;
         try {
             includedRegexs = ((ApiResponseElement) clientApi.context.includeRegexs(contextName))
                     .getValue();
             if (includedRegexs.length() > 2) {
-                return Arrays
-                        .asList(includedRegexs.substring(1, includedRegexs.length() - 1).split(", "));
+                regexs = Collections.unmodifiableList(Arrays
+                        .asList(includedRegexs.substring(1, includedRegexs.length() - 1).split(", ")));
             }
         } catch (ClientApiException e) {
             throw new ProxyException(e);
         }
-
-        return null;
+        configurationCache.put(key, regexs, readAt);
+        return regexs;
     }
 
     /**
@@ -752,19 +1153,26 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
      */
     @Override
     public List<String> getExcludedRegexs(String contextName) throws ProxyException {
+        String key = ConfigurationCache.excludeRegexs(contextName);
+        ConfigurationCache.Entry<List<String>> cached = configurationCache.get(key);
+        if (cached != null) {
+            return cached.getValue();
+        }
+        long readAt = configurationCache.generation();
         String excludedRegexs = null;
         try {
             excludedRegexs = ((ApiResponseElement) clientApi.context.excludeRegexs(contextName))
                     .getValue();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
+        List<String> regexs = null;
         if (excludedRegexs.length() > 2) {
-            return Arrays
-                    .asList(excludedRegexs.substring(1, excludedRegexs.length() - 1).split(", "));
+            regexs = Collections.unmodifiableList(Arrays
+                    .asList(excludedRegexs.substring(1, excludedRegexs.length() - 1).split(", ")));
         }
-        return null;
+        configurationCache.put(key, regexs, readAt);
+        return regexs;
     }
 
     /**
@@ -780,7 +1188,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             apiResponseList = (ApiResponseList) clientApi.authentication
                     .getSupportedAuthenticationMethods();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
         List<String> supportedAuthenticationMethods = new ArrayList<String>();
@@ -803,7 +1210,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             return ((ApiResponseElement) clientApi.authentication.getLoggedInIndicator(contextId))
                     .getValue();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -821,7 +1227,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             return ((ApiResponseElement) clientApi.authentication.getLoggedOutIndicator(contextId))
                     .getValue();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -839,8 +1244,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.authentication
                     .setLoggedInIndicator(contextId, Pattern.quote(loggedInIndicatorRegex));
+            configurationCache.invalidateContextById(contextId);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -858,8 +1263,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.authentication
                     .setLoggedOutIndicator(contextId, Pattern.quote(loggedOutIndicatorRegex));
+            configurationCache.invalidateContextById(contextId);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -873,12 +1278,17 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
      */
     @Override
     public Map<String, String> getAuthenticationMethodInfo(String contextId) throws ProxyException {
+        ConfigurationCache.Entry<Map<String, String>> cached = configurationCache
+                .get(ConfigurationCache.authMethod(contextId));
+        if (cached != null) {
+            return new HashMap<String, String>(cached.getValue());
+        }
+        long readAt = configurationCache.generation();
         Map<String, String> authenticationMethodDetails = new HashMap<String, String>();
         ApiResponse apiResponse = null;
         try {
             apiResponse = clientApi.authentication.getAuthenticationMethod(contextId);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
         if (apiResponse instanceof ApiResponseElement) {
@@ -913,6 +1323,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
                 authenticationMethodDetails.put("Path", apiResponseSet.getStringValue("Path"));
             }
         }
+        configurationCache.put(ConfigurationCache.authMethod(contextId),
+                new HashMap<String, String>(authenticationMethodDetails), readAt);
         return authenticationMethodDetails;
     }
 
@@ -927,7 +1339,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             return clientApi.authentication.getAuthenticationMethod(contextId).toString(0);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -943,15 +1354,30 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     @Override
     public List<Map<String, String>> getAuthMethodConfigParameters(String authMethod)
             throws ProxyException {
+        String key = ConfigurationCache.authMethodConfigParams(authMethod);
+        ConfigurationCache.Entry<List<Map<String, String>>> cached = configurationCache.get(key);
+        if (cached != null) {
+            return copyConfigParams(cached.getValue());
+        }
+        long readAt = configurationCache.generation();
         ApiResponseList apiResponseList = null;
         try {
             apiResponseList = (ApiResponseList) clientApi.authentication
                     .getAuthenticationMethodConfigParams(authMethod);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
-        return getConfigParams(apiResponseList);
+        List<Map<String, String>> configParams = getConfigParams(apiResponseList);
+        configurationCache.put(key, copyConfigParams(configParams), readAt);
+        return configParams;
+    }
+
+    private static List<Map<String, String>> copyConfigParams(List<Map<String, String>> configParams) {
+        List<Map<String, String>> copy = new ArrayList<Map<String, String>>(configParams.size());
+        for (Map<String, String> configParam : configParams) {
+            copy.add(new HashMap<String, String>(configParam));
+        }
+        return copy;
     }
 
     private List<Map<String, String>> getConfigParams(ApiResponseList apiResponseList) {
@@ -988,8 +1414,9 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.authentication
                     .setAuthenticationMethod(contextId, authMethodName, authMethodConfigParams);
+            configurationCache.invalidate(ConfigurationCache.authMethod(contextId));
+            configurationCache.invalidateContextById(contextId);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1087,11 +1514,15 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
      */
     @Override
     public List<User> getUsersList(String contextId) throws ProxyException, IOException {
+        ConfigurationCache.Entry<List<User>> cached = configurationCache.get(ConfigurationCache.users(contextId));
+        if (cached != null) {
+            return copyUsers(cached.getValue());
+        }
+        long readAt = configurationCache.generation();
         ApiResponseList apiResponseList;
         try {
             apiResponseList = (ApiResponseList) clientApi.users.usersList(contextId);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
         List<User> users = new ArrayList<User>();
@@ -1100,9 +1531,18 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
                 users.add(new User((ApiResponseSet) apiResponse));
             }
         }
+        configurationCache.put(ConfigurationCache.users(contextId), copyUsers(users), readAt);
         return users;
     }
 
+    private static List<User> copyUsers(List<User> users) {
+        List<User> copy = new ArrayList<User>(users.size());
+        for (User user : users) {
+            copy.add(new User(user));
+        }
+        return copy;
+    }
+
     /**
      * Returns the {@link User} info for a given context id and user id.
      *
@@ -1114,12 +1554,20 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
      */
     @Override
     public User getUserById(String contextId, String userId) throws ProxyException, IOException {
+        String key = ConfigurationCache.user(contextId, userId);
+        ConfigurationCache.Entry<User> cached = configurationCache.get(key);
+        if (cached != null) {
+            return new User(cached.getValue());
+        }
+        long readAt = configurationCache.generation();
+        User user;
         try {
-            return new User((ApiResponseSet) clientApi.users.getUserById(contextId, userId));
+            user = new User((ApiResponseSet) clientApi.users.getUserById(contextId, userId));
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
+        configurationCache.put(key, new User(user), readAt);
+        return user;
     }
 
     /**
@@ -1138,7 +1586,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             apiResponseList = (ApiResponseList) clientApi.users
                     .getAuthenticationCredentialsConfigParams(contextId);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
         return getConfigParams(apiResponseList);
@@ -1161,7 +1608,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             apiResponseSet = (ApiResponseSet) clientApi.users
                     .getAuthenticationCredentials(contextId, userId);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
 
@@ -1194,7 +1640,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             return clientApi.users.getAuthenticationCredentials(contextId, userId).toString(0);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1210,9 +1655,10 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     @Override
     public String newUser(String contextId, String name) throws ProxyException {
         try {
-            return ((ApiResponseElement) clientApi.users.newUser(contextId, name)).getValue();
+            String userId = ((ApiResponseElement) clientApi.users.newUser(contextId, name)).getValue();
+            configurationCache.invalidate(ConfigurationCache.users(contextId));
+            return userId;
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1228,8 +1674,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     public void removeUser(String contextId, String userId) throws ProxyException {
         try {
             clientApi.users.removeUser(contextId, userId);
+            configurationCache.invalidateUser(contextId, userId);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1250,8 +1696,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.users.setAuthenticationCredentials(contextId, userId,
                     authCredentialsConfigParams);
+            configurationCache.invalidateUser(contextId, userId);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1269,8 +1715,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             throws ProxyException {
         try {
             clientApi.users.setUserEnabled(contextId, userId, Boolean.toString(enabled));
+            configurationCache.invalidateUser(contextId, userId);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1287,8 +1733,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     public void setUserName(String contextId, String userId, String name) throws ProxyException {
         try {
             clientApi.users.setUserName(contextId, userId, name);
+            configurationCache.invalidateUser(contextId, userId);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1305,7 +1751,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             return ((ApiResponseElement) clientApi.forcedUser.getForcedUser(contextId)).getValue();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1322,7 +1767,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             return Boolean.parseBoolean(
                     ((ApiResponseElement) clientApi.forcedUser.isForcedUserModeEnabled()).getValue());
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1338,7 +1782,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.forcedUser.setForcedUserModeEnabled(forcedUserModeEnabled);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1355,7 +1798,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.forcedUser.setForcedUser(contextId, userId);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1373,7 +1815,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             apiResponseList = (ApiResponseList) clientApi.sessionManagement
                     .getSupportedSessionManagementMethods();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
         List<String> supportedSessionManagementMethods = new ArrayList<String>();
@@ -1396,7 +1837,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
             return ((ApiResponseElement) clientApi.sessionManagement
                     .getSessionManagementMethod(contextId)).getValue();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1417,7 +1857,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
                     .setSessionManagementMethod(contextId, sessionManagementMethodName,
                             methodConfigParams);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1434,7 +1873,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             rawResponse = ((ApiResponseElement) clientApi.acsrf.optionTokensNames()).getValue();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
         return Arrays.asList(rawResponse.substring(1, rawResponse.length() - 1).split(", "));
@@ -1451,7 +1889,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.acsrf.addOptionToken(tokenName);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1467,7 +1904,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.acsrf.removeOptionToken(tokenName);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1487,7 +1923,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
                 engines.add(((ApiResponseElement) apiResponse).getValue());
             }
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
         return engines;
@@ -1501,11 +1936,15 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
      */
     @Override
     public List<Script> listScripts() throws ProxyException {
+        ConfigurationCache.Entry<List<Script>> cached = configurationCache.get(ConfigurationCache.SCRIPTS);
+        if (cached != null) {
+            return copyScripts(cached.getValue());
+        }
+        long readAt = configurationCache.generation();
         ApiResponseList apiResponseList;
         try {
             apiResponseList = (ApiResponseList) clientApi.script.listScripts();
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
         List<Script> scripts = new ArrayList<Script>();
@@ -1514,9 +1953,18 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
                 scripts.add(new Script((ApiResponseSet) apiResponse));
             }
         }
+        configurationCache.put(ConfigurationCache.SCRIPTS, copyScripts(scripts), readAt);
         return scripts;
     }
 
+    private static List<Script> copyScripts(List<Script> scripts) {
+        List<Script> copy = new ArrayList<Script>(scripts.size());
+        for (Script script : scripts) {
+            copy.add(new Script(script));
+        }
+        return copy;
+    }
+
     /**
      * Disables the script, if the script name is a valid one.
      *
@@ -1527,8 +1975,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     public void disableScript(String scriptName) throws ProxyException {
         try {
             clientApi.script.disable(scriptName);
+            configurationCache.invalidate(ConfigurationCache.SCRIPTS);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1543,8 +1991,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     public void enableScript(String scriptName) throws ProxyException {
         try {
             clientApi.script.enable(scriptName);
+            configurationCache.invalidate(ConfigurationCache.SCRIPTS);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1580,8 +2028,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.script
                     .load(scriptName, scriptType, scriptEngine, fileName, scriptDescription);
+            configurationCache.invalidate(ConfigurationCache.SCRIPTS);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1596,8 +2044,8 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     public void removeScript(String scriptName) throws ProxyException {
         try {
             clientApi.script.remove(scriptName);
+            configurationCache.invalidate(ConfigurationCache.SCRIPTS);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1613,7 +2061,6 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         try {
             clientApi.script.runStandAloneScript(scriptName);
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
@@ -1622,26 +2069,114 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
     public void setIncludeInContext(String contextName, String regex) {
         try {
             clientApi.context.includeInContext(contextName, regex);
+            invalidateIncludeRegexs(contextName);
         } catch (ClientApiException e) {
             if ("does_not_exist".equalsIgnoreCase(e.getCode())) {
                 createContext(contextName);
                 setIncludeInContext(contextName, regex);
             } else {
-                e.printStackTrace();
                 throw new ProxyException(e);
             }
         }
     }
 
+    @Override
+    public void setExcludeFromContext(String contextName, String regex) {
+        try {
+            clientApi.context.excludeFromContext(contextName, regex);
+            invalidateExcludeRegexs(contextName);
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        }
+    }
+
+    @Override
+    public void setContextRegexs(String contextName, List<String> includeRegexs, List<String> excludeRegexs) {
+        // Not generated in this version of the client, the action exists from ZAP 2.9 on.
+        Map<String, String> params = new HashMap<String, String>();
+        params.put("contextName", contextName);
+        params.put("incRegexs", jsonArray(includeRegexs));
+        params.put("excRegexs", jsonArray(excludeRegexs));
+        try {
+            clientApi.callApi("context", "action", "setContextRegexs", params);
+        } catch (ClientApiException e) {
+            throw new ProxyException(e);
+        } finally {
+            invalidateIncludeRegexs(contextName);
+            invalidateExcludeRegexs(contextName);
+        }
+    }
+
+    private static String jsonArray(List<String> values) {
+        StringBuilder json = new StringBuilder("[");
+        for (String value : values) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(HarRequestSerializer.escape(value)).append('"');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Brings ZAP in line with the given plan, issuing only the calls that change something.
+     *
+     * @param plan Desired context, authentication, user and scanner configuration.
+     * @return The context and user ids, and the changes that were made.
+     * @throws ProxyException
+     */
+    public ScanPlanResult apply(ScanPlan plan) throws ProxyException {
+        return apply(plan, DEFAULT_PLAN_PARALLELISM);
+    }
+
+    /**
+     * Brings ZAP in line with the given plan, issuing only the calls that change something.
+     *
+     * @param plan        Desired context, authentication, user and scanner configuration.
+     * @param parallelism Maximum number of independent calls made concurrently.
+     * @return The context and user ids, and the changes that were made.
+     * @throws ProxyException
+     */
+    public ScanPlanResult apply(ScanPlan plan, int parallelism) throws ProxyException {
+        return new ScanPlanApplier(this, this, this, parallelism).apply(plan);
+    }
+
     private void createContext(String contextName) {
         try {
             clientApi.context.newContext(contextName);
+            configurationCache.invalidate(ConfigurationCache.CONTEXTS);
+            configurationCache.invalidateTree(ConfigurationCache.context(contextName));
         } catch (ClientApiException e) {
-            e.printStackTrace();
             throw new ProxyException(e);
         }
     }
 
+    /**
+     * Emits the scan started event with the id ZAP returned for the scan, if it can be read.
+     */
+    private static void reportScanStarted(String scanType, ApiResponse response, String url) {
+        if (!JfrEvents.isAvailable()) {
+            return;
+        }
+        int scanId;
+        try {
+            scanId = ClientApiUtils.getInteger(response);
+        } catch (ClientApiException e) {
+            scanId = -1;
+        }
+        JfrEvents.scanStarted(scanType, scanId, url);
+    }
+
+    private void invalidateIncludeRegexs(String contextName) {
+        configurationCache.invalidate(ConfigurationCache.context(contextName));
+        configurationCache.invalidate(ConfigurationCache.includeRegexs(contextName));
+    }
+
+    private void invalidateExcludeRegexs(String contextName) {
+        configurationCache.invalidate(ConfigurationCache.context(contextName));
+        configurationCache.invalidate(ConfigurationCache.excludeRegexs(contextName));
+    }
+
     private static class ClientApiUtils {
 
         private ClientApiUtils() {
@@ -1658,12 +2193,7 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
         public static String convertHarRequestToString(HarRequest request)
                 throws ClientApiException {
             try {
-                ByteArrayOutputStream os = new ByteArrayOutputStream();
-                JsonGenerator g = new JsonFactory().createJsonGenerator(os);
-                g.writeStartObject();
-                request.writeHar(g);
-                g.close();
-                return os.toString("UTF-8");
+                return HarRequestSerializer.serialize(request);
             } catch (IOException e) {
                 throw new ClientApiException(e);
             }
@@ -1674,8 +2204,7 @@ public class ZAProxyScanner implements ScanningProxy, Spider, Authentication, Co
                 if (bytesHarLog.length == 0) {
                     throw new ClientApiException("Unexpected ZAP response.");
                 }
-                HarFileReader reader = new HarFileReader();
-                return reader.readHarFile(new ByteArrayInputStream(bytesHarLog), null);
+                return HarUtils.readHarLog(bytesHarLog);
             } catch (IOException e) {
                 throw new ClientApiException(e);
             }
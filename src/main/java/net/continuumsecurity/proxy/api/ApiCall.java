@@ -0,0 +1,10 @@
+package net.continuumsecurity.proxy.api;
+
+import org.zaproxy.clientapi.core.ClientApiException;
+
+/**
+ * A single invocation of the ZAP API.
+ */
+public interface ApiCall<T> {
+    T call() throws ClientApiException;
+}
@@ -0,0 +1,171 @@
+package net.continuumsecurity.proxy.api;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A ZAP API call as seen by {@link ApiCallListener}s. Parameters are redacted: values of parameters whose name
+ * suggests a secret (API keys, passwords, tokens, credential and authentication configuration) are replaced. The HTTP
+ * requests sent through core/other/sendHarRequest and core/other/sendRequest keep their request line and headers, but
+ * the values of cookies and of the Cookie and Authorization headers and the request body are replaced.
+ */
+public class ApiCallEvent {
+    static final String REDACTED = "***";
+    private static final Pattern SECRET = Pattern.compile(
+            "(?i).*(apikey|passw|secret|token|credential|configparams).*");
+    private static final Pattern SECRET_HEADER = Pattern.compile(
+            "(?i)(cookie|set-cookie|authorization|proxy-authorization)");
+    private static final Pattern RAW_SECRET_HEADER = Pattern.compile(
+            "(?im)^((?:cookie|set-cookie|authorization|proxy-authorization)[ \\t]*:).*$");
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final String component;
+    private final String type;
+    private final String method;
+    private final Map<String, String> params;
+    private final long startNanos;
+    private long durationNanos = -1;
+    private long bytes = -1;
+
+    ApiCallEvent(String component, String type, String method, Map<String, String> params) {
+        this.component = component;
+        this.type = type;
+        this.method = method;
+        this.params = redact(component, method, params);
+        this.startNanos = System.nanoTime();
+    }
+
+    void finish(Object result) {
+        durationNanos = System.nanoTime() - startNanos;
+        if (result instanceof byte[]) {
+            bytes = ((byte[]) result).length;
+        }
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return component/type/method, e.g. ascan/action/scan.
+     */
+    public String getOperation() {
+        return component + "/" + type + "/" + method;
+    }
+
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    /**
+     * @return System.nanoTime() when the call started.
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return How long the call took, -1 before it has finished.
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return Size of the returned binary payload (HAR, reports), -1 before the call has finished or for parsed
+     * responses.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    static Map<String, String> redact(String component, String method, Map<String, String> params) {
+        if (params == null || params.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        boolean sendsRequest = "core".equals(component)
+                && ("sendHarRequest".equals(method) || "sendRequest".equals(method));
+        Map<String, String> redacted = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            String value = param.getValue();
+            if (value != null && SECRET.matcher(param.getKey()).matches()) {
+                value = REDACTED;
+            } else if (value != null && sendsRequest && "request".equals(param.getKey())) {
+                value = "sendHarRequest".equals(method) ? redactHarRequest(value) : redactHttpRequest(value);
+            }
+            redacted.put(param.getKey(), value);
+        }
+        return Collections.unmodifiableMap(redacted);
+    }
+
+    static String redactHarRequest(String harRequest) {
+        JsonNode request;
+        try {
+            request = mapper.readTree(harRequest);
+        } catch (IOException e) {
+            return REDACTED;
+        }
+        if (!(request instanceof ObjectNode)) {
+            return REDACTED;
+        }
+        for (JsonNode cookie : request.path("cookies")) {
+            redactValue(cookie);
+        }
+        for (JsonNode header : request.path("headers")) {
+            if (SECRET_HEADER.matcher(header.path("name").asText()).matches()) {
+                redactValue(header);
+            }
+        }
+        JsonNode postData = request.path("postData");
+        if (postData instanceof ObjectNode) {
+            if (postData.has("text")) {
+                ((ObjectNode) postData).put("text", REDACTED);
+            }
+            for (JsonNode param : postData.path("params")) {
+                redactValue(param);
+            }
+        }
+        try {
+            return mapper.writeValueAsString(request);
+        } catch (IOException e) {
+            return REDACTED;
+        }
+    }
+
+    private static void redactValue(JsonNode node) {
+        if (node instanceof ObjectNode && node.has("value")) {
+            ((ObjectNode) node).put("value", REDACTED);
+        }
+    }
+
+    static String redactHttpRequest(String httpRequest) {
+        int bodyStart = httpRequest.indexOf("\r\n\r\n");
+        int separator = 4;
+        if (bodyStart < 0) {
+            bodyStart = httpRequest.indexOf("\n\n");
+            separator = 2;
+        }
+        String head = bodyStart < 0 ? httpRequest : httpRequest.substring(0, bodyStart);
+        String redacted = RAW_SECRET_HEADER.matcher(head).replaceAll("$1 " + REDACTED);
+        if (bodyStart < 0) {
+            return redacted;
+        }
+        boolean hasBody = bodyStart + separator < httpRequest.length();
+        return redacted + httpRequest.substring(bodyStart, bodyStart + separator) + (hasBody ? REDACTED : "");
+    }
+}
@@ -0,0 +1,15 @@
+package net.continuumsecurity.proxy.api;
+
+import org.zaproxy.clientapi.core.ClientApiException;
+
+/**
+ * Notified before and after every ZAP API call made through {@link ZapClientApi}. Listeners observe calls without
+ * being able to change them; exceptions they throw are logged and otherwise ignored.
+ */
+public interface ApiCallListener {
+    void before(ApiCallEvent event);
+
+    void after(ApiCallEvent event);
+
+    void error(ApiCallEvent event, ClientApiException e);
+}
@@ -0,0 +1,12 @@
+package net.continuumsecurity.proxy.api;
+
+import org.zaproxy.clientapi.core.ClientApiException;
+
+/**
+ * Wraps every ZAP API call made through {@link ZapClientApi}, e.g. to trace, audit, cache or rate limit calls.
+ * Interceptors run in the order they were added, each deciding whether and when to call
+ * {@link ApiInvocation#proceed()}; the last one proceeds to read coalescing, retries and the HTTP request itself.
+ */
+public interface ApiInterceptor {
+    <T> T intercept(ApiInvocation<T> invocation) throws ClientApiException;
+}
@@ -0,0 +1,75 @@
+package net.continuumsecurity.proxy.api;
+
+import org.zaproxy.clientapi.core.ClientApiException;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A ZAP API call on its way through the {@link ApiInterceptor}s.
+ */
+public class ApiInvocation<T> {
+    private final String component;
+    private final String type;
+    private final String method;
+    private final Map<String, String> params;
+    private final ApiInterceptor[] interceptors;
+    private final ApiCall<T> call;
+    private int next;
+
+    ApiInvocation(String component, String type, String method, Map<String, String> params,
+                  ApiInterceptor[] interceptors, ApiCall<T> call) {
+        this.component = component;
+        this.type = type;
+        this.method = method;
+        this.params = params == null ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(params);
+        this.interceptors = interceptors;
+        this.call = call;
+    }
+
+    /**
+     * Passes the call on to the next interceptor, or makes it if this is the last one.
+     */
+    public T proceed() throws ClientApiException {
+        if (next < interceptors.length) {
+            return interceptors[next++].intercept(this);
+        }
+        return call.call();
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    /**
+     * @return view, action or other.
+     */
+    public String getType() {
+        return type;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return The call's parameters as sent to ZAP, secrets included.
+     */
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    /**
+     * @return The call's parameters with secrets replaced, for logging.
+     */
+    public Map<String, String> getRedactedParams() {
+        return ApiCallEvent.redact(component, method, params);
+    }
+
+    /**
+     * @return component/type/method, e.g. ascan/action/scan.
+     */
+    public String getOperation() {
+        return component + "/" + type + "/" + method;
+    }
+}
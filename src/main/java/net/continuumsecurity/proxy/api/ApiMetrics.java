@@ -0,0 +1,101 @@
+package net.continuumsecurity.proxy.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency, error and payload size statistics per ZAP API endpoint (component/method), recorded for every call made
+ * through {@link ZapClientApi}. Latency is what the caller saw, including retries and waiting on a coalesced read.
+ * Recording is lock-free; endpoints are registered on their first call.
+ */
+public class ApiMetrics {
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<String, Endpoint>();
+    private volatile boolean enabled = true;
+
+    private static class Endpoint {
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    /**
+     * Records a call.
+     *
+     * @param bytes Size of the returned payload, 0 if unknown.
+     */
+    public void record(String component, String method, long nanos, long bytes, boolean error) {
+        if (!enabled) {
+            return;
+        }
+        Endpoint endpoint = endpoint(component + "/" + method);
+        endpoint.calls.incrementAndGet();
+        if (error) {
+            endpoint.errors.incrementAndGet();
+        }
+        if (bytes > 0) {
+            endpoint.bytes.addAndGet(bytes);
+        }
+        endpoint.latency.recordNanos(nanos);
+    }
+
+    /**
+     * @return Statistics of every endpoint called so far, slowest (by p99) first.
+     */
+    public List<EndpointStats> snapshot() {
+        List<EndpointStats> stats = new ArrayList<EndpointStats>();
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            Endpoint endpoint = entry.getValue();
+            stats.add(new EndpointStats(entry.getKey(), endpoint.calls.get(), endpoint.errors.get(),
+                    endpoint.bytes.get(), endpoint.latency));
+        }
+        Collections.sort(stats, new Comparator<EndpointStats>() {
+            @Override
+            public int compare(EndpointStats a, EndpointStats b) {
+                return Double.compare(b.getP99Millis(), a.getP99Millis());
+            }
+        });
+        return stats;
+    }
+
+    /**
+     * @return The snapshot as text, one endpoint per line.
+     */
+    public String export() {
+        StringBuilder text = new StringBuilder();
+        for (EndpointStats stats : snapshot()) {
+            text.append(stats).append('\n');
+        }
+        return text.toString();
+    }
+
+    public void reset() {
+        endpoints.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    private Endpoint endpoint(String name) {
+        Endpoint endpoint = endpoints.get(name);
+        if (endpoint == null) {
+            Endpoint created = new Endpoint();
+            endpoint = endpoints.putIfAbsent(name, created);
+            if (endpoint == null) {
+                endpoint = created;
+            }
+        }
+        return endpoint;
+    }
+}
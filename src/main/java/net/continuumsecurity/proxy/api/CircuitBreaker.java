@@ -0,0 +1,101 @@
+package net.continuumsecurity.proxy.api;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Circuit breaker shared by every client talking to the same ZAP node (host:port) with the same breaker settings.
+ * After a number of consecutive transport failures the circuit opens and calls fail fast, so a dead node is not
+ * hammered by every caller. Once the open period has elapsed a single trial call is let through; its outcome closes
+ * or re-opens the circuit.
+ */
+public class CircuitBreaker {
+    private static final ConcurrentMap<String, CircuitBreaker> NODES = new ConcurrentHashMap<String, CircuitBreaker>();
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String node;
+    private final int failureThreshold;
+    private final long openDurationMillis;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    CircuitBreaker(String node, int failureThreshold, long openDurationMillis) {
+        this.node = node;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDurationMillis;
+    }
+
+    /**
+     * Returns the breaker for the given node and the policy's breaker settings, creating it the first time they are
+     * seen together. Clients for the same node with the same settings share one breaker; a client with different
+     * settings gets its own.
+     */
+    public static CircuitBreaker forNode(String node, ResiliencePolicy policy) {
+        int failureThreshold = policy.getFailureThreshold();
+        long openDurationMillis = policy.getOpenDurationMillis();
+        String key = node + "/" + failureThreshold + "/" + openDurationMillis;
+        CircuitBreaker breaker = NODES.get(key);
+        if (breaker == null) {
+            CircuitBreaker created = new CircuitBreaker(node, failureThreshold, openDurationMillis);
+            breaker = NODES.putIfAbsent(key, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    /**
+     * Checks whether a call may proceed.
+     *
+     * @throws CircuitOpenException if the circuit is open, or half open with a trial call already in flight.
+     */
+    public synchronized void acquire() throws CircuitOpenException {
+        if (failureThreshold <= 0 || state == State.CLOSED) {
+            return;
+        }
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMillis) {
+            state = State.HALF_OPEN;
+            return;
+        }
+        throw new CircuitOpenException(node, state);
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (failureThreshold > 0 && (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Records that a call ended without telling whether the node is healthy, e.g. because it threw an Error. If it
+     * was the trial call the circuit goes back to open without restarting the open period, so the next call becomes
+     * the new trial.
+     */
+    public synchronized void onAbandoned() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getNode() {
+        return node;
+    }
+}
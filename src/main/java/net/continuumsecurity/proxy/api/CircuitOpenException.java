@@ -0,0 +1,15 @@
+package net.continuumsecurity.proxy.api;
+
+import org.zaproxy.clientapi.core.ClientApiException;
+
+/**
+ * Thrown instead of calling ZAP when the circuit for the node is open.
+ */
+public class CircuitOpenException extends ClientApiException {
+
+    private static final long serialVersionUID = 2380539761853311244L;
+
+    public CircuitOpenException(String node, CircuitBreaker.State state) {
+        super("Circuit " + state + " for ZAP node " + node + ", call rejected without contacting ZAP.");
+    }
+}
@@ -0,0 +1,80 @@
+package net.continuumsecurity.proxy.api;
+
+/**
+ * Point in time statistics of one ZAP API endpoint, as taken by {@link ApiMetrics#snapshot()}.
+ */
+public class EndpointStats {
+    private final String endpoint;
+    private final long calls;
+    private final long errors;
+    private final long bytes;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p90Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+
+    EndpointStats(String endpoint, long calls, long errors, long bytes, LatencyHistogram latency) {
+        this.endpoint = endpoint;
+        this.calls = calls;
+        this.errors = errors;
+        this.bytes = bytes;
+        this.meanMillis = latency.getMeanMicros() / 1000;
+        this.p50Millis = latency.getPercentileMicros(50) / 1000.0;
+        this.p90Millis = latency.getPercentileMicros(90) / 1000.0;
+        this.p99Millis = latency.getPercentileMicros(99) / 1000.0;
+        this.maxMillis = latency.getMaxMicros() / 1000.0;
+    }
+
+    /**
+     * @return Component and method of the endpoint, e.g. core/messagesHar.
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return Calls that failed after all retries, including those rejected by an open circuit.
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return Total size of the binary payloads (HAR, reports) returned by the endpoint; 0 for endpoints returning
+     * parsed responses.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP90Millis() {
+        return p90Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-40s calls=%d errors=%d bytes=%d mean=%.1fms p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+                endpoint, calls, errors, bytes, meanMillis, p50Millis, p90Millis, p99Millis, maxMillis);
+    }
+}
@@ -0,0 +1,151 @@
+package net.continuumsecurity.proxy.api;
+
+import org.zaproxy.clientapi.core.ClientApiException;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight execution of read-only ZAP API calls: concurrent identical calls (same component, method and
+ * parameters) share one in-flight request and its result. Operations can additionally be given a short time to live,
+ * during which the last result is served without contacting ZAP at all, which suits hot counters such as
+ * core/numberOfAlerts or ascan/scans.
+ * <p>
+ * Every {@link #invalidate()} starts a new generation: calls only join requests started in their own generation, and
+ * results of requests that were still running when the generation changed are not cached, so a view issued after an
+ * action never sees state from before it.
+ */
+public class ReadCoalescer {
+    private final ConcurrentMap<String, FutureTask<?>> inFlight = new ConcurrentHashMap<String, FutureTask<?>>();
+    private final ConcurrentMap<String, CachedResult> results = new ConcurrentHashMap<String, CachedResult>();
+    private final ConcurrentMap<String, Long> ttls = new ConcurrentHashMap<String, Long>();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean enabled = true;
+
+    private static class CachedResult {
+        final Object value;
+        final long expiresAt;
+
+        CachedResult(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String component, String method, Map<String, String> params, final ApiCall<T> call)
+            throws ClientApiException {
+        if (!enabled) {
+            return call.call();
+        }
+        long started = generation.get();
+        String key = key(component, method, params);
+        Long ttl = ttls.get(component + "/" + method);
+        if (ttl != null) {
+            CachedResult cached = results.get(key);
+            if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+                return (T) cached.value;
+            }
+        }
+
+        FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return call.call();
+            }
+        });
+        String flightKey = started + ":" + key;
+        FutureTask<T> shared = (FutureTask<T>) inFlight.putIfAbsent(flightKey, task);
+        if (shared == null) {
+            shared = task;
+            try {
+                task.run();
+                if (ttl != null && !task.isCancelled() && generation.get() == started) {
+                    CachedResult result = new CachedResult(task.get(), System.currentTimeMillis() + ttl);
+                    results.put(key, result);
+                    if (generation.get() != started) {
+                        // Invalidated while storing, the result may predate the change.
+                        results.remove(key, result);
+                    }
+                }
+            } catch (ExecutionException ignored) {
+                // Rethrown below, failures are never cached.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.remove(flightKey, task);
+            }
+        }
+        return await(shared);
+    }
+
+    private static <T> T await(FutureTask<T> task) throws ClientApiException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientApiException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ClientApiException) {
+                throw (ClientApiException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ClientApiException((Exception) cause);
+        }
+    }
+
+    static String key(String component, String method, Map<String, String> params) {
+        StringBuilder key = new StringBuilder(component).append('/').append(method);
+        if (params != null && !params.isEmpty()) {
+            for (Map.Entry<String, String> param : new TreeMap<String, String>(params).entrySet()) {
+                key.append('&').append(param.getKey()).append('=').append(param.getValue());
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Serves results of the given view from memory for up to ttlMillis after they were fetched.
+     *
+     * @param component ZAP API component, e.g. "core".
+     * @param method    ZAP API view, e.g. "numberOfAlerts".
+     * @param ttlMillis Time to live in milliseconds, 0 or less removes the cache for the view.
+     */
+    public void setTtl(String component, String method, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            ttls.remove(component + "/" + method);
+        } else {
+            ttls.put(component + "/" + method, ttlMillis);
+        }
+        invalidate();
+    }
+
+    /**
+     * Drops every cached result and stops new calls from joining requests already in flight, called whenever the client
+     * changes state in ZAP.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        results.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
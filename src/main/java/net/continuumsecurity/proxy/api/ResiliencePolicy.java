@@ -0,0 +1,105 @@
+package net.continuumsecurity.proxy.api;
+
+import java.util.Random;
+
+/**
+ * Retry and circuit breaking settings for calls made to the ZAP API.
+ * Only idempotent calls are retried, and only when the failure was caused by the transport (connection refused,
+ * reset, timed out) rather than by an error reported by ZAP itself.
+ */
+public class ResiliencePolicy {
+    private static final Random JITTER = new Random();
+
+    private int maxAttempts = 3;
+    private long initialBackoffMillis = 200;
+    private long maxBackoffMillis = 5000;
+    private double backoffMultiplier = 2.0;
+    private int failureThreshold = 5;
+    private long openDurationMillis = 30000;
+
+    /**
+     * Returns a policy that neither retries nor opens the circuit, which is the behaviour of a plain ClientApi.
+     */
+    public static ResiliencePolicy disabled() {
+        ResiliencePolicy policy = new ResiliencePolicy();
+        policy.setMaxAttempts(1);
+        policy.setFailureThreshold(0);
+        return policy;
+    }
+
+    /**
+     * Returns the delay to wait before the given retry, using exponential backoff with full jitter.
+     *
+     * @param attempt Number of the attempt that just failed, starting at 1.
+     * @return Delay in milliseconds.
+     */
+    public long backoffMillis(int attempt) {
+        double ceiling = initialBackoffMillis * Math.pow(backoffMultiplier, attempt - 1);
+        long bounded = (long) Math.min(ceiling, maxBackoffMillis);
+        if (bounded <= 0) {
+            return 0;
+        }
+        return (long) (JITTER.nextDouble() * bounded);
+    }
+
+    public boolean isCircuitBreakerEnabled() {
+        return failureThreshold > 0;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Parameter maxAttempts must be at least 1.");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public void setInitialBackoffMillis(long initialBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    public void setBackoffMultiplier(double backoffMultiplier) {
+        this.backoffMultiplier = backoffMultiplier;
+    }
+
+    /**
+     * @return Number of consecutive transport failures after which the circuit opens, 0 disables circuit breaking.
+     */
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * @return Time in milliseconds the circuit stays open before a single trial call is let through.
+     */
+    public long getOpenDurationMillis() {
+        return openDurationMillis;
+    }
+
+    public void setOpenDurationMillis(long openDurationMillis) {
+        this.openDurationMillis = openDurationMillis;
+    }
+}
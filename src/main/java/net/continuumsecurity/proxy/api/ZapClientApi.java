@@ -0,0 +1,294 @@
+package net.continuumsecurity.proxy.api;
+
+import net.continuumsecurity.proxy.jfr.JfrEvents;
+import org.zaproxy.clientapi.core.ApiResponse;
+import org.zaproxy.clientapi.core.ClientApi;
+import org.zaproxy.clientapi.core.ClientApiException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * ClientApi that routes every call through a single invocation path, so that all generated API components
+ * (core, ascan, spider, context, ...) share the same retry and circuit breaking behaviour. Read-only views are
+ * coalesced, so concurrent identical reads result in a single request to ZAP. Every call is timed per endpoint in
+ * {@link ApiMetrics}, reported to the registered {@link ApiCallListener}s and passed through the registered
+ * {@link ApiInterceptor}s.
+ */
+public class ZapClientApi extends ClientApi {
+    private static final Logger log = Logger.getLogger(ZapClientApi.class.getName());
+
+    private final String node;
+    private final ResiliencePolicy policy;
+    private final CircuitBreaker circuitBreaker;
+    private final ReadCoalescer readCoalescer = new ReadCoalescer();
+    private final ApiMetrics metrics = new ApiMetrics();
+    // Copied on write, so calls read them without locking.
+    private volatile ApiInterceptor[] interceptors = new ApiInterceptor[0];
+    private volatile ApiCallListener[] listeners = new ApiCallListener[0];
+
+    public ZapClientApi(String host, int port, String apiKey, ResiliencePolicy policy) {
+        super(host, port, apiKey);
+        this.node = host + ":" + port;
+        this.policy = policy;
+        this.circuitBreaker = CircuitBreaker.forNode(node, policy);
+    }
+
+    @Override
+    public ApiResponse callApi(final String component, final String type, final String method,
+                               final Map<String, String> params) throws ClientApiException {
+        return dispatch(component, type, method, params, new ApiCall<ApiResponse>() {
+            @Override
+            public ApiResponse call() throws ClientApiException {
+                return ZapClientApi.super.callApi(component, type, method, params);
+            }
+        });
+    }
+
+    @Override
+    public byte[] callApiOther(final String component, final String type, final String method,
+                               final Map<String, String> params) throws ClientApiException {
+        return dispatch(component, type, method, params, new ApiCall<byte[]>() {
+            @Override
+            public byte[] call() throws ClientApiException {
+                return ZapClientApi.super.callApiOther(component, type, method, params);
+            }
+        });
+    }
+
+    <T> T dispatch(final String component, final String type, final String method,
+                   final Map<String, String> params, final ApiCall<T> call) throws ClientApiException {
+        long start = System.nanoTime();
+        Object flightRecording = JfrEvents.beginApiCall();
+        T result = null;
+        boolean failed = true;
+        ApiInterceptor[] chain = interceptors;
+        ApiCallListener[] notified = listeners;
+        // Without listeners or interceptors no event or invocation is created.
+        ApiCallEvent event = notified.length == 0 ? null : new ApiCallEvent(component, type, method, params);
+        try {
+            if (event != null) {
+                notifyBefore(notified, event);
+            }
+            if (chain.length == 0) {
+                result = route(component, type, method, params, call);
+            } else {
+                result = new ApiInvocation<T>(component, type, method, params, chain, new ApiCall<T>() {
+                    @Override
+                    public T call() throws ClientApiException {
+                        return route(component, type, method, params, call);
+                    }
+                }).proceed();
+            }
+            failed = false;
+            if (event != null) {
+                event.finish(result);
+                notifyAfter(notified, event);
+            }
+            return result;
+        } catch (ClientApiException e) {
+            if (event != null) {
+                event.finish(null);
+                notifyError(notified, event, e);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            // Thrown by an interceptor or the call itself; listeners still learn that the call failed.
+            if (event != null) {
+                event.finish(null);
+                notifyError(notified, event, new ClientApiException(e));
+            }
+            throw e;
+        } finally {
+            long bytes = result instanceof byte[] ? ((byte[]) result).length : 0;
+            metrics.record(component, method, System.nanoTime() - start, bytes, failed);
+            JfrEvents.endApiCall(flightRecording, component, type, method, bytes, failed);
+        }
+    }
+
+    private <T> T route(final String component, final String type, final String method,
+                        Map<String, String> params, final ApiCall<T> call) throws ClientApiException {
+        if (!"view".equals(type)) {
+            if (!"action".equals(type) && isIdempotent(component, type, method)) {
+                return invoke(component, type, method, call);
+            }
+            // Before, so no view joins a request from before the change, and after, so nothing read while ZAP was
+            // still applying it stays cached.
+            readCoalescer.invalidate();
+            try {
+                return invoke(component, type, method, call);
+            } finally {
+                readCoalescer.invalidate();
+            }
+        }
+        return readCoalescer.execute(component, method, params, new ApiCall<T>() {
+            @Override
+            public T call() throws ClientApiException {
+                return invoke(component, type, method, call);
+            }
+        });
+    }
+
+    private static void notifyBefore(ApiCallListener[] listeners, ApiCallEvent event) {
+        for (ApiCallListener listener : listeners) {
+            try {
+                listener.before(event);
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "API call listener failed", e);
+            }
+        }
+    }
+
+    private static void notifyAfter(ApiCallListener[] listeners, ApiCallEvent event) {
+        for (ApiCallListener listener : listeners) {
+            try {
+                listener.after(event);
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "API call listener failed", e);
+            }
+        }
+    }
+
+    private static void notifyError(ApiCallListener[] listeners, ApiCallEvent event, ClientApiException error) {
+        for (ApiCallListener listener : listeners) {
+            try {
+                listener.error(event, error);
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, "API call listener failed", e);
+            }
+        }
+    }
+
+    <T> T invoke(String component, String type, String method, ApiCall<T> call) throws ClientApiException {
+        int maxAttempts = isIdempotent(component, type, method) ? policy.getMaxAttempts() : 1;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                circuitBreaker.acquire();
+            } catch (CircuitOpenException e) {
+                report(component, type, method, attempt, e);
+                throw e;
+            }
+            boolean recorded = false;
+            try {
+                T result = call.call();
+                circuitBreaker.onSuccess();
+                recorded = true;
+                return result;
+            } catch (ClientApiException e) {
+                recorded = true;
+                if (!isTransient(e)) {
+                    // ZAP answered, so the node is healthy even though the call failed.
+                    circuitBreaker.onSuccess();
+                    report(component, type, method, attempt, e);
+                    throw e;
+                }
+                circuitBreaker.onFailure();
+                if (attempt >= maxAttempts) {
+                    report(component, type, method, attempt, e);
+                    throw e;
+                }
+                sleep(policy.backoffMillis(attempt), e);
+            } finally {
+                if (!recorded) {
+                    // Neither an answer nor a transport failure, so do not leave a trial call hanging.
+                    circuitBreaker.onAbandoned();
+                }
+            }
+        }
+    }
+
+    /**
+     * Views and "other" downloads are read only, as are actions that set a value. Anything else (starting scans,
+     * creating contexts, sending requests to the target) must not be repeated behind the caller's back.
+     */
+    static boolean isIdempotent(String component, String type, String method) {
+        if ("view".equals(type)) {
+            return true;
+        }
+        if ("other".equals(type)) {
+            return !("core".equals(component) && "sendHarRequest".equals(method));
+        }
+        return method.startsWith("set") || method.startsWith("enable") || method.startsWith("disable");
+    }
+
+    static boolean isTransient(ClientApiException e) {
+        return !(e instanceof CircuitOpenException) && e.getCause() instanceof IOException;
+    }
+
+    private void sleep(long millis, ClientApiException cause) throws ClientApiException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    /**
+     * Reports a failed call as a single structured line. Errors returned by ZAP are often expected by the caller
+     * (e.g. does_not_exist), so only transport failures are logged as warnings; stack traces are logged at FINE.
+     */
+    private void report(String component, String type, String method, int attempts, ClientApiException e) {
+        Level level = isTransient(e) || e instanceof CircuitOpenException ? Level.WARNING : Level.INFO;
+        if (!log.isLoggable(level)) {
+            return;
+        }
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        String message = "ZAP API call failed node=" + node + " operation=" + component + "/" + type + "/" + method
+                + " attempts=" + attempts + " code=" + e.getCode() + " error=" + cause.getClass().getName()
+                + ": " + cause.getMessage();
+        if (log.isLoggable(Level.FINE)) {
+            log.log(level, message, e);
+        } else {
+            log.log(level, message);
+        }
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public ReadCoalescer getReadCoalescer() {
+        return readCoalescer;
+    }
+
+    public ApiMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Adds an interceptor that wraps all subsequent calls, inside those added before it.
+     */
+    public synchronized void addInterceptor(ApiInterceptor interceptor) {
+        List<ApiInterceptor> list = new ArrayList<ApiInterceptor>(Arrays.asList(interceptors));
+        list.add(interceptor);
+        interceptors = list.toArray(new ApiInterceptor[list.size()]);
+    }
+
+    public synchronized void removeInterceptor(ApiInterceptor interceptor) {
+        List<ApiInterceptor> list = new ArrayList<ApiInterceptor>(Arrays.asList(interceptors));
+        list.remove(interceptor);
+        interceptors = list.toArray(new ApiInterceptor[list.size()]);
+    }
+
+    public synchronized void addListener(ApiCallListener listener) {
+        List<ApiCallListener> list = new ArrayList<ApiCallListener>(Arrays.asList(listeners));
+        list.add(listener);
+        listeners = list.toArray(new ApiCallListener[list.size()]);
+    }
+
+    public synchronized void removeListener(ApiCallListener listener) {
+        List<ApiCallListener> list = new ArrayList<ApiCallListener>(Arrays.asList(listeners));
+        list.remove(listener);
+        listeners = list.toArray(new ApiCallListener[list.size()]);
+    }
+}
@@ -0,0 +1,33 @@
+package net.continuumsecurity.proxy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.continuumsecurity.zap.ApiCall")
+@Label("ZAP API Call")
+@Description("A call to the ZAP API, including retries and waiting on a coalesced read")
+@Category({"ZAP", "API"})
+@Enabled(false)
+@StackTrace(false)
+class ApiCallRecord extends jdk.jfr.Event {
+    @Label("Endpoint")
+    @Description("Component and method, e.g. core/messagesHar")
+    String endpoint;
+
+    @Label("Type")
+    @Description("view, action or other")
+    String type;
+
+    @Label("Bytes")
+    @Description("Size of the returned binary payload, 0 for parsed responses")
+    @DataAmount
+    long bytes;
+
+    @Label("Failed")
+    boolean failed;
+}
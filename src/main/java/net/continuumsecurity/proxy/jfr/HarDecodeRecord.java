@@ -0,0 +1,25 @@
+package net.continuumsecurity.proxy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.continuumsecurity.zap.HarDecode")
+@Label("HAR Decode")
+@Category({"ZAP", "HAR"})
+@Enabled(false)
+@StackTrace(false)
+class HarDecodeRecord extends jdk.jfr.Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Entries")
+    int entries;
+}
@@ -0,0 +1,107 @@
+package net.continuumsecurity.proxy.jfr;
+
+import jdk.jfr.EventType;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The only class besides the events that refers to jdk.jfr, loaded by {@link JfrEvents} once JFR is known to exist.
+ */
+final class JfrEmitter {
+    private static final EventType API_CALL = EventType.getEventType(ApiCallRecord.class);
+    private static final EventType HAR_DECODE = EventType.getEventType(HarDecodeRecord.class);
+    private static final EventType SCAN = EventType.getEventType(ScanRecord.class);
+    private static final int MILESTONE = 25;
+
+    // Last milestone reported per scanType/scanId.
+    private static final ConcurrentMap<String, Integer> milestones = new ConcurrentHashMap<String, Integer>();
+
+    private JfrEmitter() {
+    }
+
+    static Object beginApiCall() {
+        if (!API_CALL.isEnabled()) {
+            return null;
+        }
+        ApiCallRecord record = new ApiCallRecord();
+        record.begin();
+        return record;
+    }
+
+    static void endApiCall(Object handle, String component, String type, String method, long bytes, boolean failed) {
+        ApiCallRecord record = (ApiCallRecord) handle;
+        record.end();
+        if (record.shouldCommit()) {
+            record.endpoint = component + "/" + method;
+            record.type = type;
+            record.bytes = bytes;
+            record.failed = failed;
+            record.commit();
+        }
+    }
+
+    static Object beginHarDecode() {
+        if (!HAR_DECODE.isEnabled()) {
+            return null;
+        }
+        HarDecodeRecord record = new HarDecodeRecord();
+        record.begin();
+        return record;
+    }
+
+    static void endHarDecode(Object handle, String phase, long bytes, int entries) {
+        HarDecodeRecord record = (HarDecodeRecord) handle;
+        record.end();
+        if (record.shouldCommit()) {
+            record.phase = phase;
+            record.bytes = bytes;
+            record.entries = entries;
+            record.commit();
+        }
+    }
+
+    static void scanStarted(String scanType, int scanId, String url) {
+        if (!SCAN.isEnabled()) {
+            return;
+        }
+        if (scanId >= 0) {
+            milestones.put(scanType + "/" + scanId, 0);
+        }
+        commitScan(scanType, scanId, "started", 0, url);
+    }
+
+    static void scanProgress(String scanType, int scanId, int progress) {
+        if (!SCAN.isEnabled()) {
+            return;
+        }
+        String key = scanType + "/" + scanId;
+        int milestone = progress >= 100 ? 100 : progress / MILESTONE * MILESTONE;
+        Integer last = milestones.get(key);
+        if (last != null && last >= milestone) {
+            return;
+        }
+        boolean reported = last == null ? milestones.putIfAbsent(key, milestone) == null
+                : milestones.replace(key, last, milestone);
+        if (!reported || (last == null && milestone == 0)) {
+            // Another thread reported it, or a scan seen for the first time has made no progress worth reporting.
+            return;
+        }
+        if (milestone == 100) {
+            // Kept, so later polls of the finished scan do not report it again.
+            commitScan(scanType, scanId, "finished", 100, null);
+        } else {
+            commitScan(scanType, scanId, "progress", milestone, null);
+        }
+    }
+
+    private static void commitScan(String scanType, int scanId, String transition, int progress, String url) {
+        ScanRecord record = new ScanRecord();
+        record.scanType = scanType;
+        record.scanId = scanId;
+        record.transition = transition;
+        record.progress = progress / 100.0;
+        record.url = url;
+        record.commit();
+    }
+}
@@ -0,0 +1,84 @@
+package net.continuumsecurity.proxy.jfr;
+
+/**
+ * Emits Java Flight Recorder events for ZAP API calls, HAR decoding and scan lifecycle transitions, so that a
+ * recording of the client JVM shows which ZAP operation was running during a CPU or GC spike.
+ * <p>
+ * The events (net.continuumsecurity.zap.ApiCall, HarDecode and Scan) are disabled by default and have to be enabled in
+ * the recording settings, e.g. {@code jcmd <pid> JFR.start settings=zap.jfc}. On JVMs without the jdk.jfr API the
+ * methods do nothing, and while the events are disabled they only check a flag and allocate nothing.
+ * <p>
+ * Methods returning a handle start a timed event; the handle (null when the event is disabled) is passed to the
+ * matching end method.
+ */
+public final class JfrEvents {
+    private static final boolean AVAILABLE = isJfrPresent();
+
+    private JfrEvents() {
+    }
+
+    /**
+     * @return Whether the JVM supports JFR events.
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    public static Object beginApiCall() {
+        return AVAILABLE ? JfrEmitter.beginApiCall() : null;
+    }
+
+    public static void endApiCall(Object handle, String component, String type, String method, long bytes,
+                                  boolean failed) {
+        if (handle != null) {
+            JfrEmitter.endApiCall(handle, component, type, method, bytes, failed);
+        }
+    }
+
+    public static Object beginHarDecode() {
+        return AVAILABLE ? JfrEmitter.beginHarDecode() : null;
+    }
+
+    /**
+     * @param phase   Decode phase, e.g. parse.
+     * @param entries Number of entries decoded, -1 if not known in this phase.
+     */
+    public static void endHarDecode(Object handle, String phase, long bytes, int entries) {
+        if (handle != null) {
+            JfrEmitter.endHarDecode(handle, phase, bytes, entries);
+        }
+    }
+
+    /**
+     * @param scanType spider or ascan.
+     * @param scanId   Id of the scan, -1 if not known.
+     */
+    public static void scanStarted(String scanType, int scanId, String url) {
+        if (AVAILABLE) {
+            JfrEmitter.scanStarted(scanType, scanId, url);
+        }
+    }
+
+    /**
+     * Reports the progress of a scan as read from ZAP; an event is only emitted when it passes a 25% milestone or
+     * finishes.
+     */
+    public static void scanProgress(String scanType, int scanId, int progress) {
+        if (AVAILABLE) {
+            JfrEmitter.scanProgress(scanType, scanId, progress);
+        }
+    }
+
+    private static boolean isJfrPresent() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            // Registers the event types, failing on JVMs that ship the API but cannot register events.
+            Class.forName(JfrEmitter.class.getName());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+}
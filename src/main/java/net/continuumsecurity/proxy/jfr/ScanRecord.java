@@ -0,0 +1,36 @@
+package net.continuumsecurity.proxy.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+
+@Name("net.continuumsecurity.zap.Scan")
+@Label("ZAP Scan")
+@Description("A spider or active scan was started, passed a 25% progress milestone or finished")
+@Category({"ZAP", "Scan"})
+@Enabled(false)
+@StackTrace(false)
+class ScanRecord extends jdk.jfr.Event {
+    @Label("Scan Type")
+    @Description("spider or ascan")
+    String scanType;
+
+    @Label("Scan Id")
+    @Description("-1 if not known when the scan was started")
+    int scanId;
+
+    @Label("Transition")
+    @Description("started, progress or finished")
+    String transition;
+
+    @Label("Progress")
+    @Percentage
+    double progress;
+
+    @Label("URL")
+    String url;
+}
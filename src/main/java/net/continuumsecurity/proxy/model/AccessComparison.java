@@ -0,0 +1,68 @@
+package net.continuumsecurity.proxy.model;
+
+/**
+ * Result of comparing the response a resource owner got with the response another user got for the same request.
+ */
+public class AccessComparison {
+    private final String method;
+    private final String url;
+    private final int ownerStatus;
+    private final int otherStatus;
+    private final double similarity;
+    private final double anonymousSimilarity;
+    private final boolean bypassSuspected;
+
+    public AccessComparison(String method, String url, int ownerStatus, int otherStatus, double similarity,
+                            double anonymousSimilarity, boolean bypassSuspected) {
+        this.method = method;
+        this.url = url;
+        this.ownerStatus = ownerStatus;
+        this.otherStatus = otherStatus;
+        this.similarity = similarity;
+        this.anonymousSimilarity = anonymousSimilarity;
+        this.bypassSuspected = bypassSuspected;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getOwnerStatus() {
+        return ownerStatus;
+    }
+
+    public int getOtherStatus() {
+        return otherStatus;
+    }
+
+    /**
+     * @return Estimated similarity (0 to 1) of the two normalized response bodies.
+     */
+    public double getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * @return Estimated similarity of the owner's response and an unauthenticated response, -1 if none was given.
+     */
+    public double getAnonymousSimilarity() {
+        return anonymousSimilarity;
+    }
+
+    /**
+     * @return Whether the other user appears to have received the owner's content.
+     */
+    public boolean isBypassSuspected() {
+        return bypassSuspected;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + url + " owner=" + ownerStatus + " other=" + otherStatus
+                + String.format(" similarity=%.2f", similarity) + (bypassSuspected ? " BYPASS SUSPECTED" : "");
+    }
+}
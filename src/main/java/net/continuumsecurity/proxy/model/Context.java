@@ -2,6 +2,7 @@ package net.continuumsecurity.proxy.model;
 
 import org.zaproxy.clientapi.core.ApiResponseSet;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -9,6 +10,7 @@ public class Context {
     private String id;
     private String name;
     private String description;
+    private boolean inScope;
     private String loggedInPattern;
     private String loggedOutPattern;
     private List<String> includedRegexs;
@@ -20,6 +22,7 @@ public class Context {
         id = response.getStringValue("id");
         name = response.getStringValue("name");
         description = response.getStringValue("description");
+        inScope = Boolean.parseBoolean(response.getStringValue("inScope"));
         loggedInPattern = response.getStringValue("loggedInPattern");
         loggedOutPattern = response.getStringValue("loggedOutPattern");
         String includedRegexsNode = response.getStringValue("includeRegexs");
@@ -34,6 +37,22 @@ public class Context {
         authenticationDetectionMethodId = Integer.parseInt(response.getStringValue("authenticationDetectionMethodId"));
     }
 
+    /**
+     * Copies the context, including its regex lists.
+     */
+    public Context(Context other) {
+        id = other.id;
+        name = other.name;
+        description = other.description;
+        inScope = other.inScope;
+        loggedInPattern = other.loggedInPattern;
+        loggedOutPattern = other.loggedOutPattern;
+        includedRegexs = other.includedRegexs == null ? null : new ArrayList<String>(other.includedRegexs);
+        excludedRegexs = other.excludedRegexs == null ? null : new ArrayList<String>(other.excludedRegexs);
+        authType = other.authType;
+        authenticationDetectionMethodId = other.authenticationDetectionMethodId;
+    }
+
     public String getId() {
         return id;
     }
@@ -58,6 +77,14 @@ public class Context {
         this.description = description;
     }
 
+    public boolean isInScope() {
+        return inScope;
+    }
+
+    public void setInScope(boolean inScope) {
+        this.inScope = inScope;
+    }
+
     public String getLoggedInPattern() {
         return loggedInPattern;
     }
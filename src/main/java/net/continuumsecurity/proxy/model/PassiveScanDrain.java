@@ -0,0 +1,67 @@
+package net.continuumsecurity.proxy.model;
+
+/**
+ * Outcome of waiting for ZAP's passive scanner to work through its backlog of records.
+ */
+public class PassiveScanDrain {
+    private final boolean drained;
+    private final int initialRecords;
+    private final int remainingRecords;
+    private final long scannedRecords;
+    private final long elapsedMillis;
+    private final int polls;
+
+    public PassiveScanDrain(boolean drained, int initialRecords, int remainingRecords, long scannedRecords,
+                            long elapsedMillis, int polls) {
+        this.drained = drained;
+        this.initialRecords = initialRecords;
+        this.remainingRecords = remainingRecords;
+        this.scannedRecords = scannedRecords;
+        this.elapsedMillis = elapsedMillis;
+        this.polls = polls;
+    }
+
+    /**
+     * @return Whether no records were left to scan before the timeout.
+     */
+    public boolean isDrained() {
+        return drained;
+    }
+
+    public int getInitialRecords() {
+        return initialRecords;
+    }
+
+    public int getRemainingRecords() {
+        return remainingRecords;
+    }
+
+    /**
+     * @return Number of records the backlog went down by while waiting. Records added meanwhile are not counted.
+     */
+    public long getScannedRecords() {
+        return scannedRecords;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public int getPolls() {
+        return polls;
+    }
+
+    /**
+     * @return Observed drain throughput, 0 if nothing was scanned or no time passed.
+     */
+    public double getRecordsPerSecond() {
+        return elapsedMillis == 0 ? 0 : scannedRecords * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return (drained ? "drained " : "not drained ") + scannedRecords + " records in " + elapsedMillis + "ms ("
+                + String.format("%.1f", getRecordsPerSecond()) + "/s, " + polls + " polls, " + remainingRecords
+                + " remaining)";
+    }
+}
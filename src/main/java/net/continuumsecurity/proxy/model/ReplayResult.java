@@ -0,0 +1,44 @@
+package net.continuumsecurity.proxy.model;
+
+import edu.umass.cs.benchlab.har.HarEntry;
+import edu.umass.cs.benchlab.har.HarRequest;
+
+import java.util.List;
+
+/**
+ * Outcome of replaying one request: the messages ZAP recorded for it (more than one if redirects were followed), or
+ * the error that prevented sending it.
+ */
+public class ReplayResult {
+    private final HarRequest request;
+    private final List<HarEntry> entries;
+    private final RuntimeException error;
+
+    public ReplayResult(HarRequest request, List<HarEntry> entries, RuntimeException error) {
+        this.request = request;
+        this.entries = entries;
+        this.error = error;
+    }
+
+    /**
+     * @return The request as sent, after all mutators were applied.
+     */
+    public HarRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * @return The recorded messages, null if the request failed.
+     */
+    public List<HarEntry> getEntries() {
+        return entries;
+    }
+
+    public RuntimeException getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
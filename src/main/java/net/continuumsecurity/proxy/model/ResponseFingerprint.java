@@ -0,0 +1,97 @@
+package net.continuumsecurity.proxy.model;
+
+/**
+ * Compact summary of a fuzzed response: status, body length and length bucket, simhash of the body and response
+ * time, together with the injection point and payload that produced it.
+ */
+public class ResponseFingerprint {
+    private final String injectionPoint;
+    private final String payload;
+    private final int status;
+    private final long length;
+    private final int lengthBucket;
+    private final long simhash;
+    private final long timeMillis;
+    private final String error;
+    private boolean anomalous;
+    private int distance;
+
+    public ResponseFingerprint(String injectionPoint, String payload, int status, long length, int lengthBucket,
+                               long simhash, long timeMillis, String error) {
+        this.injectionPoint = injectionPoint;
+        this.payload = payload;
+        this.status = status;
+        this.length = length;
+        this.lengthBucket = lengthBucket;
+        this.simhash = simhash;
+        this.timeMillis = timeMillis;
+        this.error = error;
+    }
+
+    /**
+     * @return Name of the injection point the payload was placed in, null for the baseline.
+     */
+    public String getInjectionPoint() {
+        return injectionPoint;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public int getLengthBucket() {
+        return lengthBucket;
+    }
+
+    public long getSimhash() {
+        return simhash;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * @return Why the request failed, null if a response was received.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return Whether the response differs notably from the baseline response.
+     */
+    public boolean isAnomalous() {
+        return anomalous;
+    }
+
+    public void setAnomalous(boolean anomalous) {
+        this.anomalous = anomalous;
+    }
+
+    /**
+     * @return Number of differing simhash bits compared to the baseline response.
+     */
+    public int getDistance() {
+        return distance;
+    }
+
+    public void setDistance(int distance) {
+        this.distance = distance;
+    }
+
+    @Override
+    public String toString() {
+        return injectionPoint + "=" + payload + " status=" + status + " length=" + length + " distance=" + distance
+                + " time=" + timeMillis + "ms" + (error != null ? " error=" + error : "")
+                + (anomalous ? " ANOMALOUS" : "");
+    }
+}
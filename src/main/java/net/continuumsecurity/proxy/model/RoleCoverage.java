@@ -0,0 +1,153 @@
+package net.continuumsecurity.proxy.model;
+
+import org.zaproxy.clientapi.core.Alert;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * What spidering and scanning as each user of a context found, merged into matrices of URL to roles and finding to
+ * roles. Roles are identified by user id, as names need not be unique; {@link RoleResult#getUserName()} gives the name
+ * to display.
+ */
+public class RoleCoverage {
+    private final Map<String, RoleResult> results = new LinkedHashMap<String, RoleResult>();
+
+    /**
+     * Spider and active scan results of one user.
+     */
+    public static class RoleResult {
+        private final String userId;
+        private final String userName;
+        private final int spiderScanId;
+        private final int scanId;
+        private final List<String> urls;
+        private final List<Alert> alerts;
+        private final Exception error;
+
+        public RoleResult(String userId, String userName, int spiderScanId, int scanId, List<String> urls,
+                          List<Alert> alerts, Exception error) {
+            this.userId = userId;
+            this.userName = userName;
+            this.spiderScanId = spiderScanId;
+            this.scanId = scanId;
+            this.urls = urls;
+            this.alerts = alerts;
+            this.error = error;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        /**
+         * @return Id of the user's spider scan, -1 if it was not started.
+         */
+        public int getSpiderScanId() {
+            return spiderScanId;
+        }
+
+        /**
+         * @return Id of the user's active scan, -1 if it was not started.
+         */
+        public int getScanId() {
+            return scanId;
+        }
+
+        public List<String> getUrls() {
+            return urls;
+        }
+
+        public List<Alert> getAlerts() {
+            return alerts;
+        }
+
+        /**
+         * @return Why the user's spider or scan did not complete, null if it did.
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    public void add(RoleResult result) {
+        results.put(result.getUserId(), result);
+    }
+
+    /**
+     * @return Results by user id, in the order the users were given.
+     */
+    public Map<String, RoleResult> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * @return Every URL the spider found, with the ids of the users it was found as.
+     */
+    public SortedMap<String, Set<String>> getUrlMatrix() {
+        SortedMap<String, Set<String>> matrix = new TreeMap<String, Set<String>>();
+        for (RoleResult result : results.values()) {
+            for (String url : result.getUrls()) {
+                add(matrix, url, result.getUserId());
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * @return Every finding (see {@link #findingKey(Alert)}), with the ids of the users it was raised for.
+     */
+    public SortedMap<String, Set<String>> getFindingMatrix() {
+        SortedMap<String, Set<String>> matrix = new TreeMap<String, Set<String>>();
+        for (RoleResult result : results.values()) {
+            for (Alert alert : result.getAlerts()) {
+                add(matrix, findingKey(alert), result.getUserId());
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * @return URLs found only when spidering as the given user.
+     */
+    public Set<String> getUrlsOnlyFoundBy(String userId) {
+        Set<String> urls = new TreeSet<String>();
+        for (Map.Entry<String, Set<String>> entry : getUrlMatrix().entrySet()) {
+            if (entry.getValue().size() == 1 && entry.getValue().contains(userId)) {
+                urls.add(entry.getKey());
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Identifies the same issue across users: the alert name, URL and parameter.
+     */
+    public static String findingKey(Alert alert) {
+        String key = alert.getName() + " " + alert.getUrl();
+        return alert.getParam() == null || alert.getParam().length() == 0 ? key : key + " [" + alert.getParam() + "]";
+    }
+
+    private static void add(Map<String, Set<String>> matrix, String key, String userId) {
+        Set<String> users = matrix.get(key);
+        if (users == null) {
+            users = new TreeSet<String>();
+            matrix.put(key, users);
+        }
+        users.add(userId);
+    }
+}
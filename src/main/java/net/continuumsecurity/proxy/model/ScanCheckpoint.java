@@ -0,0 +1,170 @@
+package net.continuumsecurity.proxy.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client side state of a long running scan, saved next to ZAP's session by {@code ScanCheckpointer}: the spider and
+ * active scan jobs with their current scan ids, and named cursors such as the offset of the last processed alert.
+ * <p>
+ * Mutators are synchronized so the state can be changed while a checkpoint is being written.
+ */
+public class ScanCheckpoint {
+    private String sessionName;
+    private long savedAt;
+    private List<ScanJob> jobs = new ArrayList<ScanJob>();
+    private Map<String, Integer> cursors = new LinkedHashMap<String, Integer>();
+
+    /**
+     * A spider or active scan started through the checkpointer, with what is needed to start it again.
+     */
+    public static class ScanJob {
+        public enum Type {
+            SPIDER, ACTIVE_SCAN
+        }
+
+        private Type type;
+        private String url;
+        private String contextId;
+        private String userId;
+        private boolean recurse;
+        private int scanId;
+        private boolean finished;
+
+        public ScanJob() {
+        }
+
+        public ScanJob(Type type, String url, String contextId, String userId, boolean recurse) {
+            this.type = type;
+            this.url = url;
+            this.contextId = contextId;
+            this.userId = userId;
+            this.recurse = recurse;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public void setType(Type type) {
+            this.type = type;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getContextId() {
+            return contextId;
+        }
+
+        public void setContextId(String contextId) {
+            this.contextId = contextId;
+        }
+
+        /**
+         * @return Id of the user the job runs as, null if it runs without one.
+         */
+        public String getUserId() {
+            return userId;
+        }
+
+        public void setUserId(String userId) {
+            this.userId = userId;
+        }
+
+        public boolean isRecurse() {
+            return recurse;
+        }
+
+        public void setRecurse(boolean recurse) {
+            this.recurse = recurse;
+        }
+
+        /**
+         * @return Id of the scan in the current ZAP instance; changes when the job is restarted on resume.
+         */
+        public int getScanId() {
+            return scanId;
+        }
+
+        public void setScanId(int scanId) {
+            this.scanId = scanId;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        public void setFinished(boolean finished) {
+            this.finished = finished;
+        }
+    }
+
+    public ScanCheckpoint() {
+    }
+
+    public ScanCheckpoint(String sessionName) {
+        this.sessionName = sessionName;
+    }
+
+    public synchronized void addJob(ScanJob job) {
+        jobs.add(job);
+    }
+
+    /**
+     * @return The cursor's value, 0 if it has not been set.
+     */
+    public synchronized int getCursor(String name) {
+        Integer value = cursors.get(name);
+        return value == null ? 0 : value;
+    }
+
+    public synchronized void setCursor(String name, int value) {
+        cursors.put(name, value);
+    }
+
+    /**
+     * @return Name under which ZAP's session is saved.
+     */
+    public String getSessionName() {
+        return sessionName;
+    }
+
+    public void setSessionName(String sessionName) {
+        this.sessionName = sessionName;
+    }
+
+    /**
+     * @return Time the checkpoint was last written, in milliseconds since the epoch.
+     */
+    public synchronized long getSavedAt() {
+        return savedAt;
+    }
+
+    public synchronized void setSavedAt(long savedAt) {
+        this.savedAt = savedAt;
+    }
+
+    public synchronized List<ScanJob> getJobs() {
+        return jobs;
+    }
+
+    public synchronized void setJobs(List<ScanJob> jobs) {
+        this.jobs = jobs;
+    }
+
+    public synchronized Map<String, Integer> getCursors() {
+        return cursors;
+    }
+
+    public synchronized void setCursors(Map<String, Integer> cursors) {
+        this.cursors = cursors;
+    }
+}
@@ -0,0 +1,197 @@
+package net.continuumsecurity.proxy.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Desired end state of a scan target: its context, authentication, users and active scanner settings.
+ * Applying a plan through {@code ZAProxyScanner.apply(ScanPlan)} only issues the calls needed to get from the current
+ * ZAP configuration to this state, so re-applying an unchanged plan is cheap.
+ * <p>
+ * Regexes are given exactly as ZAP stores them, logged in/out indicators as literal text (as for
+ * {@code setLoggedInIndicator}). When ZAP holds regexes missing from the plan, both regex lists of the context are
+ * replaced with the plan's in one call, which needs ZAP 2.9 or later; otherwise only the missing regexes are added.
+ */
+public class ScanPlan {
+    private String contextName;
+    private boolean inScope = true;
+    private List<String> includeRegexs = new ArrayList<String>();
+    private List<String> excludeRegexs = new ArrayList<String>();
+    private String loggedInIndicator;
+    private String loggedOutIndicator;
+    private String authenticationMethod;
+    private Map<String, String> authenticationParams = new LinkedHashMap<String, String>();
+    private List<UserPlan> users = new ArrayList<UserPlan>();
+    private ScanPolicyTemplate policy = new ScanPolicyTemplate();
+
+    /**
+     * A user of the plan's context, identified by name.
+     */
+    public static class UserPlan {
+        private String name;
+        private boolean enabled = true;
+        private Map<String, String> credentials = new LinkedHashMap<String, String>();
+
+        public UserPlan(String name, Map<String, String> credentials) {
+            this.name = name;
+            this.credentials.putAll(credentials);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Map<String, String> getCredentials() {
+            return credentials;
+        }
+
+        public void setCredentials(Map<String, String> credentials) {
+            this.credentials = credentials;
+        }
+    }
+
+    public ScanPlan(String contextName) {
+        this.contextName = contextName;
+    }
+
+    public ScanPlan includeRegex(String regex) {
+        includeRegexs.add(regex);
+        return this;
+    }
+
+    public ScanPlan excludeRegex(String regex) {
+        excludeRegexs.add(regex);
+        return this;
+    }
+
+    public ScanPlan user(UserPlan user) {
+        users.add(user);
+        return this;
+    }
+
+    public ScanPlan scannerAttackStrength(String scannerId, String strength) {
+        policy.attackStrength(scannerId, strength);
+        return this;
+    }
+
+    public ScanPlan scannerAlertThreshold(String scannerId, String threshold) {
+        policy.alertThreshold(scannerId, threshold);
+        return this;
+    }
+
+    public ScanPlan enableScanner(String scannerId) {
+        policy.enable(scannerId);
+        return this;
+    }
+
+    public ScanPlan disableScanner(String scannerId) {
+        policy.disable(scannerId);
+        return this;
+    }
+
+    public String getContextName() {
+        return contextName;
+    }
+
+    public void setContextName(String contextName) {
+        this.contextName = contextName;
+    }
+
+    public boolean isInScope() {
+        return inScope;
+    }
+
+    public void setInScope(boolean inScope) {
+        this.inScope = inScope;
+    }
+
+    public List<String> getIncludeRegexs() {
+        return includeRegexs;
+    }
+
+    public void setIncludeRegexs(List<String> includeRegexs) {
+        this.includeRegexs = includeRegexs;
+    }
+
+    public List<String> getExcludeRegexs() {
+        return excludeRegexs;
+    }
+
+    public void setExcludeRegexs(List<String> excludeRegexs) {
+        this.excludeRegexs = excludeRegexs;
+    }
+
+    public String getLoggedInIndicator() {
+        return loggedInIndicator;
+    }
+
+    public void setLoggedInIndicator(String loggedInIndicator) {
+        this.loggedInIndicator = loggedInIndicator;
+    }
+
+    public String getLoggedOutIndicator() {
+        return loggedOutIndicator;
+    }
+
+    public void setLoggedOutIndicator(String loggedOutIndicator) {
+        this.loggedOutIndicator = loggedOutIndicator;
+    }
+
+    public String getAuthenticationMethod() {
+        return authenticationMethod;
+    }
+
+    /**
+     * Sets the authentication method and its configuration parameters, e.g. formBasedAuthentication with loginUrl and
+     * loginRequestData. Parameter values are given unencoded.
+     *
+     * @param authenticationMethod Name of an {@link AuthenticationMethod}.
+     * @param params               Configuration parameters of the method.
+     */
+    public void setAuthentication(String authenticationMethod, Map<String, String> params) {
+        this.authenticationMethod = authenticationMethod;
+        this.authenticationParams = new LinkedHashMap<String, String>(params);
+    }
+
+    public Map<String, String> getAuthenticationParams() {
+        return authenticationParams;
+    }
+
+    public List<UserPlan> getUsers() {
+        return users;
+    }
+
+    public void setUsers(List<UserPlan> users) {
+        this.users = users;
+    }
+
+    /**
+     * @return Active scanner settings of the plan.
+     */
+    public ScanPolicyTemplate getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Uses the settings of a (saved) policy template as the plan's active scanner settings.
+     *
+     * @param policy Scanner settings to apply with the plan.
+     */
+    public void setPolicy(ScanPolicyTemplate policy) {
+        this.policy = policy;
+    }
+}
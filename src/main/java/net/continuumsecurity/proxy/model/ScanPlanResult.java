@@ -0,0 +1,44 @@
+package net.continuumsecurity.proxy.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of applying a {@link ScanPlan}: the ids ZAP assigned to the context and its users, and the changes that had
+ * to be made. An empty list of changes means ZAP already matched the plan.
+ */
+public class ScanPlanResult {
+    private String contextId;
+    private final Map<String, String> userIds = new LinkedHashMap<String, String>();
+    private final List<String> changes = Collections.synchronizedList(new ArrayList<String>());
+
+    public String getContextId() {
+        return contextId;
+    }
+
+    public void setContextId(String contextId) {
+        this.contextId = contextId;
+    }
+
+    /**
+     * @return User ids keyed by user name.
+     */
+    public synchronized Map<String, String> getUserIds() {
+        return new LinkedHashMap<String, String>(userIds);
+    }
+
+    public synchronized void putUserId(String userName, String userId) {
+        userIds.put(userName, userId);
+    }
+
+    public List<String> getChanges() {
+        return new ArrayList<String>(changes);
+    }
+
+    public void addChange(String change) {
+        changes.add(change);
+    }
+}
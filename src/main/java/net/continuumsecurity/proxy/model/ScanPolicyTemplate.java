@@ -0,0 +1,96 @@
+package net.continuumsecurity.proxy.model;
+
+import org.codehaus.jackson.annotate.JsonIgnore;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Named set of active scanner settings: attack strength, alert threshold and enabled state per scanner id.
+ * Scanners not mentioned keep their current settings. Templates are plain beans so they can be saved as JSON by
+ * {@code ScanPolicyTemplateStore}.
+ */
+public class ScanPolicyTemplate {
+    private String name;
+    private Map<String, String> attackStrengths = new LinkedHashMap<String, String>();
+    private Map<String, String> alertThresholds = new LinkedHashMap<String, String>();
+    private Set<String> enabledScanners = new LinkedHashSet<String>();
+    private Set<String> disabledScanners = new LinkedHashSet<String>();
+
+    public ScanPolicyTemplate() {
+    }
+
+    public ScanPolicyTemplate(String name) {
+        this.name = name;
+    }
+
+    public ScanPolicyTemplate attackStrength(String scannerId, String strength) {
+        attackStrengths.put(scannerId, strength);
+        return this;
+    }
+
+    public ScanPolicyTemplate alertThreshold(String scannerId, String threshold) {
+        alertThresholds.put(scannerId, threshold);
+        return this;
+    }
+
+    public ScanPolicyTemplate enable(String scannerId) {
+        disabledScanners.remove(scannerId);
+        enabledScanners.add(scannerId);
+        return this;
+    }
+
+    public ScanPolicyTemplate disable(String scannerId) {
+        enabledScanners.remove(scannerId);
+        disabledScanners.add(scannerId);
+        return this;
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return attackStrengths.isEmpty() && alertThresholds.isEmpty() && enabledScanners.isEmpty()
+                && disabledScanners.isEmpty();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Map<String, String> getAttackStrengths() {
+        return attackStrengths;
+    }
+
+    public void setAttackStrengths(Map<String, String> attackStrengths) {
+        this.attackStrengths = attackStrengths;
+    }
+
+    public Map<String, String> getAlertThresholds() {
+        return alertThresholds;
+    }
+
+    public void setAlertThresholds(Map<String, String> alertThresholds) {
+        this.alertThresholds = alertThresholds;
+    }
+
+    public Set<String> getEnabledScanners() {
+        return enabledScanners;
+    }
+
+    public void setEnabledScanners(Set<String> enabledScanners) {
+        this.enabledScanners = enabledScanners;
+    }
+
+    public Set<String> getDisabledScanners() {
+        return disabledScanners;
+    }
+
+    public void setDisabledScanners(Set<String> disabledScanners) {
+        this.disabledScanners = disabledScanners;
+    }
+}
@@ -6,20 +6,77 @@ import org.zaproxy.clientapi.core.ApiResponseSet;
  * Created by stephen on 20/04/15.
  */
 public class ScannerInfo {
+    String id;
+    String name;
     boolean enabled;
     int wascId;
     int cweId;
+    String attackStrength;
+    String alertThreshold;
+    String quality;
+    String policyId;
+    boolean passive;
 
     public ScannerInfo(ApiResponseSet responseSet) {
+        this(responseSet, false);
+    }
+
+    /**
+     * @param responseSet Scanner as returned by ascan/scanners or pscan/scanners.
+     * @param passive     Whether the scanner is a passive scan rule.
+     */
+    public ScannerInfo(ApiResponseSet responseSet, boolean passive) {
+        this.passive = passive;
+        id = responseSet.getStringValue("id");
+        name = responseSet.getStringValue("name");
         enabled = Boolean.parseBoolean(responseSet.getStringValue("enabled"));
-        wascId = Integer.parseInt(responseSet.getStringValue("wascid"));
-        cweId = Integer.parseInt(responseSet.getStringValue("cweid"));
+        wascId = parseId(responseSet.getStringValue("wascid"));
+        cweId = parseId(responseSet.getStringValue("cweid"));
+        // Passive scanners have no attack strength.
+        attackStrength = responseSet.getStringValue("attackStrength");
+        alertThreshold = responseSet.getStringValue("alertThreshold");
+        quality = responseSet.getStringValue("quality");
+        policyId = responseSet.getStringValue("policyId");
+    }
+
+    private ScannerInfo(ScannerInfo other) {
+        id = other.id;
+        name = other.name;
+        enabled = other.enabled;
+        wascId = other.wascId;
+        cweId = other.cweId;
+        attackStrength = other.attackStrength;
+        alertThreshold = other.alertThreshold;
+        quality = other.quality;
+        policyId = other.policyId;
+        passive = other.passive;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
     }
 
     public boolean isEnabled() {
         return enabled;
     }
 
+    /**
+     * @return A copy of this scanner with the given enabled state.
+     */
+    public ScannerInfo withEnabled(boolean enabled) {
+        ScannerInfo copy = new ScannerInfo(this);
+        copy.enabled = enabled;
+        return copy;
+    }
+
+    public boolean isPassive() {
+        return passive;
+    }
+
     public int getWascId() {
         return wascId;
     }
@@ -27,4 +84,28 @@ public class ScannerInfo {
     public int getCweId() {
         return cweId;
     }
+
+    public String getAttackStrength() {
+        return attackStrength;
+    }
+
+    public String getAlertThreshold() {
+        return alertThreshold;
+    }
+
+    public String getQuality() {
+        return quality;
+    }
+
+    /**
+     * @return Id of the category (e.g. injection, server security) the scanner belongs to, null for passive scanners.
+     */
+    public String getPolicyId() {
+        return policyId;
+    }
+
+    // Passive scanners may not report a CWE or WASC id.
+    private static int parseId(String value) {
+        return value == null || value.length() == 0 ? 0 : Integer.parseInt(value);
+    }
 }
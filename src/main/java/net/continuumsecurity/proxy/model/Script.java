@@ -20,6 +20,14 @@ public class Script {
         description = apiResponseSet.getStringValue("description");
     }
 
+    public Script(Script other) {
+        name = other.name;
+        type = other.type;
+        engine = other.engine;
+        error = other.error;
+        description = other.description;
+    }
+
     public String getName() {
         return name;
     }
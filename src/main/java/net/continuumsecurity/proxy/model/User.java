@@ -24,6 +24,17 @@ public class User {
         credentials = mapper.readValue(apiResponseSet.getStringValue("credentials"), new TypeReference<HashMap<String,String>>(){});
     }
 
+    /**
+     * Copies the user, including its credentials.
+     */
+    public User(User other) {
+        id = other.id;
+        enabled = other.enabled;
+        contextId = other.contextId;
+        name = other.name;
+        credentials = other.credentials == null ? null : new HashMap<String, String>(other.credentials);
+    }
+
     public String getId() {
         return id;
     }
@@ -0,0 +1,85 @@
+package net.continuumsecurity.proxy;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import static net.continuumsecurity.proxy.Fakes.fake;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class BackpressureMonitorTest {
+    private final List<Integer> sampledBacklogs = new ArrayList<Integer>();
+
+    @Test
+    public void testPassesWithoutBacklog() {
+        BackpressureMonitor monitor = new BackpressureMonitor(scanner(0));
+
+        assertThat(monitor.awaitCapacity(1000), equalTo(true));
+        assertThat(monitor.awaitCapacity(1000), equalTo(true));
+        // The second call used the first sample.
+        assertThat(sampledBacklogs.size(), equalTo(1));
+    }
+
+    @Test
+    public void testBlocksUntilBacklogDropsToLowWatermark() {
+        BackpressureMonitor monitor = new BackpressureMonitor(scanner(1500, 800, 300, 150, 2000));
+        monitor.setSampleIntervalMillis(1);
+
+        assertThat(monitor.awaitCapacity(10000), equalTo(true));
+        // Still held back below the high watermark until the low watermark was reached.
+        assertThat(sampledBacklogs, equalTo(Arrays.asList(1500, 800, 300, 150)));
+        assertThat(monitor.getBacklog(), equalTo(150));
+    }
+
+    @Test
+    public void testGivesUpAtTimeout() {
+        BackpressureMonitor monitor = new BackpressureMonitor(scanner(1500));
+        monitor.setSampleIntervalMillis(1);
+
+        assertThat(monitor.awaitCapacity(20), equalTo(false));
+        assertThat(monitor.getThrottledMillis() >= 20, equalTo(true));
+    }
+
+    @Test
+    public void testProjectsBacklogFromArrivalRate() throws Exception {
+        BackpressureMonitor monitor = new BackpressureMonitor(scanner(0, 900));
+        monitor.setWatermarks(1000, 100);
+        monitor.setSampleIntervalMillis(20);
+
+        assertThat(monitor.isSaturated(), equalTo(false));
+        Thread.sleep(25);
+        // 900 records arrived and none were scanned since the first sample, so the backlog is heading over 1000.
+        assertThat(monitor.isSaturated(), equalTo(true));
+        assertThat(monitor.getArrivalRate() > 0, equalTo(true));
+        assertThat(monitor.getDrainRate(), equalTo(0.0));
+    }
+
+    /**
+     * Returns a scanner reporting the given backlogs in turn, the last one repeatedly, with every record of the
+     * backlog having been added to the history.
+     */
+    private ScanningProxy scanner(Integer... backlogs) {
+        final LinkedList<Integer> remaining = new LinkedList<Integer>(Arrays.asList(backlogs));
+        final int[] history = {0};
+        return fake(ScanningProxy.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getHistoryCount")) {
+                    return history[0];
+                }
+                int backlog = remaining.size() > 1 ? remaining.removeFirst() : remaining.getFirst();
+                if (backlog > history[0]) {
+                    history[0] = backlog;
+                }
+                sampledBacklogs.add(backlog);
+                return backlog;
+            }
+        });
+    }
+}
@@ -0,0 +1,73 @@
+package net.continuumsecurity.proxy;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class ConfigurationCacheTest {
+
+    @Test
+    public void testCachesValueUntilInvalidated() {
+        ConfigurationCache cache = new ConfigurationCache();
+        cache.put(ConfigurationCache.users("1"), "users", cache.generation());
+        assertThat(cache.<String>get(ConfigurationCache.users("1")).getValue(), equalTo("users"));
+
+        cache.invalidate(ConfigurationCache.users("1"));
+        assertThat(cache.get(ConfigurationCache.users("1")), nullValue());
+    }
+
+    @Test
+    public void testDropsValueReadBeforeAnInvalidation() {
+        ConfigurationCache cache = new ConfigurationCache();
+        long readAt = cache.generation();
+        // A mutator runs while the value is being fetched from ZAP.
+        cache.invalidate(ConfigurationCache.user("1", "2"));
+        cache.put(ConfigurationCache.user("1", "2"), "stale", readAt);
+
+        assertThat(cache.get(ConfigurationCache.user("1", "2")), nullValue());
+        cache.put(ConfigurationCache.user("1", "2"), "fresh", cache.generation());
+        assertThat(cache.<String>get(ConfigurationCache.user("1", "2")).getValue(), equalTo("fresh"));
+    }
+
+    @Test
+    public void testInvalidatingContextDropsItsRegexLists() {
+        ConfigurationCache cache = new ConfigurationCache();
+        cache.putContext("shop", "context", "1", cache.generation());
+        cache.put(ConfigurationCache.includeRegexs("shop"), "include", cache.generation());
+        cache.put(ConfigurationCache.includeRegexs("shop2"), "other", cache.generation());
+
+        cache.invalidateTree(ConfigurationCache.context("shop"));
+
+        assertThat(cache.get(ConfigurationCache.context("shop")), nullValue());
+        assertThat(cache.get(ConfigurationCache.includeRegexs("shop")), nullValue());
+        assertThat(cache.<String>get(ConfigurationCache.includeRegexs("shop2")).getValue(), equalTo("other"));
+    }
+
+    @Test
+    public void testInvalidatesContextById() {
+        ConfigurationCache cache = new ConfigurationCache();
+        cache.putContext("shop", "context", "1", cache.generation());
+        cache.invalidateContextById("1");
+        assertThat(cache.get(ConfigurationCache.context("shop")), nullValue());
+    }
+
+    @Test
+    public void testExpiresEntriesAfterTtl() throws InterruptedException {
+        ConfigurationCache cache = new ConfigurationCache();
+        cache.setTtlMillis(20);
+        cache.put(ConfigurationCache.SCRIPTS, "scripts", cache.generation());
+        assertThat(cache.<String>get(ConfigurationCache.SCRIPTS).getValue(), equalTo("scripts"));
+        Thread.sleep(30);
+        assertThat(cache.get(ConfigurationCache.SCRIPTS), nullValue());
+    }
+
+    @Test
+    public void testDisabledCacheStoresNothing() {
+        ConfigurationCache cache = new ConfigurationCache();
+        cache.setEnabled(false);
+        cache.put(ConfigurationCache.CONTEXTS, "contexts", cache.generation());
+        assertThat(cache.get(ConfigurationCache.CONTEXTS), nullValue());
+    }
+}
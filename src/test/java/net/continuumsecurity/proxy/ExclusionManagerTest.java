@@ -0,0 +1,99 @@
+package net.continuumsecurity.proxy;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static net.continuumsecurity.proxy.Fakes.fake;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class ExclusionManagerTest {
+
+    @Test
+    public void testCompactedRegexsMatchSameUrls() {
+        List<String> exclusions = Arrays.asList(
+                "http://app/logout", "http://app/logout", Pattern.quote("http://app/admin?x=1"),
+                "http://app/static/.*", "http://app/static/css/site\\.css", "http://app/a", "http://app/ab.*",
+                ".*\\.pdf", "(?i)http://APP/delete.*");
+        List<String> compacted = ExclusionManager.compact(exclusions, ExclusionManager.DEFAULT_MAX_REGEX_LENGTH);
+        assertThat(compacted.size(), equalTo(2));
+
+        List<String> urls = Arrays.asList("http://app/logout", "http://app/logout2", "http://app/admin?x=1",
+                "http://app/adminx", "http://app/static/", "http://app/static/js/a.js", "http://app/a",
+                "http://app/abc", "http://app/b", "http://app/doc.pdf", "http://app/delete/1", "http://app/");
+        for (String url : urls) {
+            assertThat(url, matchesAny(compacted, url), equalTo(matchesAny(exclusions, url)));
+        }
+    }
+
+    @Test
+    public void testCompactedRegexsRespectMaximumLength() {
+        List<String> exclusions = new ArrayList<String>();
+        for (int i = 0; i < 500; i++) {
+            exclusions.add("http://app/page/" + i + "/edit");
+        }
+        List<String> compacted = ExclusionManager.compact(exclusions, 300);
+        for (String regex : compacted) {
+            assertThat(regex, regex.length() <= 300, equalTo(true));
+        }
+        for (String url : Arrays.asList("http://app/page/0/edit", "http://app/page/499/edit", "http://app/page/5")) {
+            assertThat(url, matchesAny(compacted, url), equalTo(matchesAny(exclusions, url)));
+        }
+    }
+
+    @Test
+    public void testContextExclusionsCoveredByCompactedRegexAreRemoved() {
+        final List<String> excluded = new ArrayList<String>();
+        final List<String> calls = new ArrayList<String>();
+        ScanningProxy scanner = fake(ScanningProxy.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getExcludedRegexs")) {
+                    return excluded.isEmpty() ? null : new ArrayList<String>(excluded);
+                }
+                return Arrays.asList("http://app/.*");
+            }
+        });
+        ContextModifier contextModifier = fake(ContextModifier.class, new InvocationHandler() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                calls.add(method.getName() + " " + args[0] + " " + args[args.length - 1]);
+                if (method.getName().equals("setExcludeFromContext")) {
+                    excluded.add((String) args[1]);
+                } else {
+                    excluded.clear();
+                    excluded.addAll((List<String>) args[2]);
+                }
+                return null;
+            }
+        });
+        ExclusionManager manager = new ExclusionManager(scanner, null, contextModifier,
+                ExclusionManager.DEFAULT_MAX_REGEX_LENGTH);
+
+        manager.excludeFromContext("app", "http://app/admin/users");
+        manager.flush();
+        manager.excludeFromContext("app", "http://app/admin/.*");
+        manager.flush();
+        manager.flush();
+
+        assertThat(calls, equalTo(Arrays.asList(
+                "setExcludeFromContext app http://app/admin/users",
+                "setContextRegexs app [http://app/admin/.*]")));
+    }
+
+    private static boolean matchesAny(List<String> regexs, String url) {
+        for (String regex : regexs) {
+            if (url.matches(regex)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,19 @@
+package net.continuumsecurity.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+
+/**
+ * Fakes of the client's interfaces for unit tests that run without ZAP.
+ */
+final class Fakes {
+    private Fakes() {
+    }
+
+    /**
+     * @return An implementation of the interface that answers every call with the handler.
+     */
+    static <T> T fake(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(Fakes.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+}
@@ -0,0 +1,97 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarContent;
+import edu.umass.cs.benchlab.har.HarCookies;
+import edu.umass.cs.benchlab.har.HarEntry;
+import edu.umass.cs.benchlab.har.HarHeader;
+import edu.umass.cs.benchlab.har.HarHeaders;
+import edu.umass.cs.benchlab.har.HarPostData;
+import edu.umass.cs.benchlab.har.HarPostDataParams;
+import edu.umass.cs.benchlab.har.HarQueryString;
+import edu.umass.cs.benchlab.har.HarRequest;
+import edu.umass.cs.benchlab.har.HarResponse;
+import net.continuumsecurity.proxy.model.ResponseFingerprint;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static net.continuumsecurity.proxy.Fakes.fake;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class HarFuzzerTest {
+    private static final String PAGE = "Welcome to the product catalogue. Browse our range of items, filter by "
+            + "category or price and add them to your basket. Showing results for ";
+
+    @Test
+    public void testFlagsResponsesThatDifferFromBaseline() {
+        LoggingProxy proxy = fake(LoggingProxy.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                HarRequest request = (HarRequest) args[0];
+                String query = request.getUrl().substring(request.getUrl().indexOf("q=") + 2);
+                int status = 200;
+                String body = PAGE + query;
+                if (query.contains("'")) {
+                    status = 500;
+                    body = "java.sql.SQLException: syntax error near '" + query;
+                }
+                return Collections.singletonList(entry(request, status, body));
+            }
+        });
+
+        HarHeaders headers = new HarHeaders();
+        headers.addHeader(new HarHeader("X-Test", "{{q}}"));
+        HarRequest template = new HarRequest("GET", "http://localhost/search?q={{q}}", "HTTP/1.1",
+                new HarCookies(), headers, new HarQueryString(), -1, -1);
+        HarFuzzer fuzzer = new HarFuzzer(proxy, template)
+                .injectionPoint("q", "shoes", Arrays.asList("boots", "sandals", "x'", "\"quoted\""));
+
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("q", "a\"b");
+        HarRequest request = fuzzer.request(values);
+        assertThat(request.getUrl(), equalTo("http://localhost/search?q=a\"b"));
+        assertThat(request.getHeaders().getHeaders().get(0).getValue(), equalTo("a\"b"));
+
+        Map<String, Boolean> anomalous = new HashMap<String, Boolean>();
+        for (Iterator<ResponseFingerprint> it = fuzzer.run(); it.hasNext(); ) {
+            ResponseFingerprint fingerprint = it.next();
+            assertThat(fingerprint.getInjectionPoint(), equalTo("q"));
+            anomalous.put(fingerprint.getPayload(), fingerprint.isAnomalous());
+        }
+        assertThat(anomalous.size(), equalTo(4));
+        assertThat(anomalous.get("boots"), equalTo(false));
+        assertThat(anomalous.get("sandals"), equalTo(false));
+        assertThat(anomalous.get("x'"), equalTo(true));
+    }
+
+    @Test
+    public void testRecalculatesBodySizeAfterSubstitution() {
+        HarHeaders headers = new HarHeaders();
+        headers.addHeader(new HarHeader("Content-Length", "9"));
+        HarRequest template = new HarRequest("POST", "http://localhost/search", "HTTP/1.1", new HarCookies(),
+                headers, new HarQueryString(), new HarPostData("application/x-www-form-urlencoded",
+                new HarPostDataParams(), "q={{q}}", null), -1, 7, null);
+        HarFuzzer fuzzer = new HarFuzzer(null, template);
+
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("q", "caf\u00e9s");
+        HarRequest request = fuzzer.request(values);
+        assertThat(request.getPostData().getText(), equalTo("q=caf\u00e9s"));
+        assertThat(request.getBodySize(), equalTo(8L));
+        assertThat(request.getHeaders().getHeaders().get(0).getValue(), equalTo("8"));
+    }
+
+    private static HarEntry entry(HarRequest request, int status, String body) {
+        HarResponse response = new HarResponse(status, "", "HTTP/1.1", new HarCookies(), new HarHeaders(),
+                new HarContent(body.length(), 0, "text/html", body, null, null), "");
+        return new HarEntry(new Date(), 10, request, response, null, null);
+    }
+}
@@ -0,0 +1,142 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarCookies;
+import edu.umass.cs.benchlab.har.HarEntry;
+import edu.umass.cs.benchlab.har.HarHeaders;
+import edu.umass.cs.benchlab.har.HarQueryString;
+import edu.umass.cs.benchlab.har.HarRequest;
+import net.continuumsecurity.proxy.model.ReplayResult;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.continuumsecurity.proxy.Fakes.fake;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class HarReplayEngineTest {
+
+    @Test
+    public void testReplaysAllRequestsWithBoundedConcurrency() {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        LoggingProxy proxy = fake(LoggingProxy.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                int current = inFlight.incrementAndGet();
+                synchronized (maxInFlight) {
+                    maxInFlight.set(Math.max(maxInFlight.get(), current));
+                }
+                Thread.sleep(5);
+                inFlight.decrementAndGet();
+                if (((HarRequest) args[0]).getUrl().endsWith("/13")) {
+                    throw new ProxyException("failed");
+                }
+                return Collections.<HarEntry>emptyList();
+            }
+        });
+
+        List<HarRequest> requests = new ArrayList<HarRequest>();
+        for (int i = 0; i < 40; i++) {
+            requests.add(new HarRequest("GET", "http://localhost/" + i, "HTTP/1.1", new HarCookies(),
+                    new HarHeaders(), new HarQueryString(), -1, -1));
+        }
+        HarReplayEngine engine = new HarReplayEngine(proxy);
+        engine.setConcurrency(4);
+        engine.addMutator(new HarRequestMutator() {
+            @Override
+            public HarRequest mutate(HarRequest request) {
+                request.setComment("mutated");
+                return request;
+            }
+        });
+
+        Set<String> urls = new HashSet<String>();
+        int failures = 0;
+        for (Iterator<ReplayResult> results = engine.replay(requests); results.hasNext(); ) {
+            ReplayResult result = results.next();
+            assertThat(result.getRequest().getComment(), equalTo("mutated"));
+            urls.add(result.getRequest().getUrl());
+            failures += result.isSuccess() ? 0 : 1;
+        }
+        assertThat(urls.size(), equalTo(40));
+        assertThat(failures, equalTo(1));
+        assertThat(maxInFlight.get() <= 4, equalTo(true));
+    }
+
+    @Test
+    public void testMutatorsDoNotChangeTheRecording() {
+        LoggingProxy proxy = fake(LoggingProxy.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return Collections.<HarEntry>emptyList();
+            }
+        });
+        List<HarRequest> recording = requests(10);
+        HarReplayEngine engine = new HarReplayEngine(proxy);
+        engine.addMutator(new HarRequestMutator() {
+            @Override
+            public HarRequest mutate(HarRequest request) {
+                request.setUrl(request.getUrl() + "?mutated");
+                return request;
+            }
+        });
+
+        for (int replay = 0; replay < 2; replay++) {
+            for (Iterator<ReplayResult> results = engine.replay(recording); results.hasNext(); ) {
+                String url = results.next().getRequest().getUrl();
+                // Mutated once, from the recorded request rather than from the previous replay.
+                assertThat(url.substring(url.indexOf('?')), equalTo("?mutated"));
+            }
+        }
+        for (HarRequest request : recording) {
+            assertThat(request.getUrl().contains("?"), equalTo(false));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testClosingAnAbandonedReplayStopsItsThreads() throws InterruptedException {
+        LoggingProxy proxy = fake(LoggingProxy.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return Collections.<HarEntry>emptyList();
+            }
+        });
+        HarReplayEngine engine = new HarReplayEngine(proxy);
+        engine.setConcurrency(2);
+        HarReplayEngine.Replay replay = engine.replay(requests(100));
+        replay.next();
+
+        replay.close();
+        assertThat(replay.hasNext(), equalTo(false));
+        while (replayThreadsAlive()) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<HarRequest> requests(int count) {
+        List<HarRequest> requests = new ArrayList<HarRequest>();
+        for (int i = 0; i < count; i++) {
+            requests.add(new HarRequest("GET", "http://localhost/" + i, "HTTP/1.1", new HarCookies(),
+                    new HarHeaders(), new HarQueryString(), -1, -1));
+        }
+        return requests;
+    }
+
+    private static boolean replayThreadsAlive() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("har-replay-") && thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,105 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarCookies;
+import edu.umass.cs.benchlab.har.HarHeader;
+import edu.umass.cs.benchlab.har.HarHeaders;
+import edu.umass.cs.benchlab.har.HarPostData;
+import edu.umass.cs.benchlab.har.HarPostDataParams;
+import edu.umass.cs.benchlab.har.HarQueryString;
+import edu.umass.cs.benchlab.har.HarRequest;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class HarRequestRewriterTest {
+
+    @Test
+    public void testRewritesCookiesLikeChangeCookieValue() {
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("JSESSIONID", "shazam");
+        assertThat(HarRequestRewriter.rewritePairs("JSESSIONID=4D81", ';', values), equalTo("JSESSIONID=shazam"));
+        assertThat(HarRequestRewriter.rewritePairs("JSESSIONID=one; A=b", ';', values),
+                equalTo("JSESSIONID=shazam; A=b"));
+        assertThat(HarRequestRewriter.rewritePairs("OTHERJSESSIONID=two; JSESSIONID=one; A=b", ';', values),
+                equalTo("OTHERJSESSIONID=two; JSESSIONID=shazam; A=b"));
+        assertThat(HarRequestRewriter.rewritePairs("A=b", ';', values), nullValue());
+    }
+
+    @Test
+    public void testAppliesAllRulesInOnePass() {
+        HarHeaders headers = new HarHeaders();
+        headers.addHeader(new HarHeader("Cookie", "theme=dark; session=alice"));
+        headers.addHeader(new HarHeader("X-Csrf", "old"));
+        headers.addHeader(new HarHeader("Referer", "http://localhost/"));
+        headers.addHeader(new HarHeader("Content-Length", "27"));
+        HarRequest request = new HarRequest("POST", "http://localhost/api?user=alice&page=1#top", "HTTP/1.1",
+                new HarCookies(), headers, new HarQueryString(),
+                new HarPostData("application/json", new HarPostDataParams(),
+                        "{\"owner\": \"alice\", \"id\": 7}", null), -1, 27, null);
+
+        new HarRequestRewriter()
+                .cookie("session", "bob")
+                .header("x-csrf", "new")
+                .header("X-Extra", "1")
+                .removeHeader("Referer")
+                .queryParam("user", "bob")
+                .jsonField("owner", "bob")
+                .jsonField("id", "123")
+                .mutate(request);
+
+        assertThat(request.getUrl(), equalTo("http://localhost/api?user=bob&page=1#top"));
+        assertThat(request.getPostData().getText(), equalTo("{\"owner\":\"bob\",\"id\":\"123\"}"));
+        assertThat(request.getHeaders().getHeaders().size(), equalTo(4));
+        assertThat(request.getHeaders().getHeaders().get(0).getValue(), equalTo("theme=dark; session=bob"));
+        assertThat(request.getHeaders().getHeaders().get(1).getValue(), equalTo("new"));
+        assertThat(request.getHeaders().getHeaders().get(2).getValue(), equalTo("26"));
+        assertThat(request.getHeaders().getHeaders().get(3).getName(), equalTo("X-Extra"));
+    }
+
+    @Test
+    public void testRewritesNestedJsonFieldsWithTypedValues() {
+        HarRequest request = jsonRequest("{\"user\": {\"id\": 7, \"name\": \"alice\", \"admin\": false}, "
+                + "\"items\": [{\"owner\": 7, \"price\": 10.50}, {\"owner\": 7}], \"id\": \"keep\", "
+                + "\"tags\": [\"a\", \"b\"], \"address\": null}");
+        Map<String, Object> address = new LinkedHashMap<String, Object>();
+        address.put("city", "Oslo");
+
+        new HarRequestRewriter()
+                .jsonField("user.id", 42)
+                .jsonField("user.admin", true)
+                .jsonField("user.name", null)
+                .jsonField("address", address)
+                .jsonField("items.owner", 42L)
+                .jsonField("tags.1", "c")
+                .jsonField("missing.id", 1)
+                .mutate(request);
+
+        assertThat(request.getPostData().getText(), equalTo("{\"user\":{\"id\":42,\"name\":null,\"admin\":true},"
+                + "\"items\":[{\"owner\":42,\"price\":10.50},{\"owner\":42}],\"id\":\"keep\",\"tags\":[\"a\",\"c\"],"
+                + "\"address\":{\"city\":\"Oslo\"}}"));
+    }
+
+    @Test
+    public void testLeavesBodiesWithoutTargetedFieldsUntouched() {
+        String body = "{\"user\": {\"name\": \"alice\"}}";
+        HarRequest request = jsonRequest(body);
+        new HarRequestRewriter().jsonField("user.id", 42).mutate(request);
+        assertThat(request.getPostData().getText(), equalTo(body));
+
+        request = jsonRequest("not json");
+        new HarRequestRewriter().jsonField("user.id", 42).mutate(request);
+        assertThat(request.getPostData().getText(), equalTo("not json"));
+    }
+
+    private static HarRequest jsonRequest(String body) {
+        return new HarRequest("POST", "http://localhost/api", "HTTP/1.1", new HarCookies(), new HarHeaders(),
+                new HarQueryString(), new HarPostData("application/json", new HarPostDataParams(), body, null), -1,
+                body.length(), null);
+    }
+}
@@ -0,0 +1,159 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.api.ApiMetrics;
+import net.continuumsecurity.proxy.model.ScanInfo;
+import org.junit.Test;
+import org.zaproxy.clientapi.core.Alert;
+import org.zaproxy.clientapi.core.ApiResponse;
+import org.zaproxy.clientapi.core.ApiResponseElement;
+import org.zaproxy.clientapi.core.ApiResponseSet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.continuumsecurity.proxy.Fakes.fake;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class MetricsExporterTest {
+    private final List<Alert> alerts = new ArrayList<Alert>();
+    private final List<String> alertRanges = new ArrayList<String>();
+    private boolean zapDown;
+
+    @Test
+    public void testRendersZapStateAndApiMetrics() throws Exception {
+        alerts.add(alert(Alert.Risk.High));
+        alerts.add(alert(Alert.Risk.Low));
+        ApiMetrics apiMetrics = new ApiMetrics();
+        apiMetrics.record("core", "messagesHar", 2000000000L, 1024, false);
+        MetricsExporter exporter = new MetricsExporter(scanner(), spider(), apiMetrics);
+
+        exporter.poll();
+        String text = exporter.getMetricsText();
+
+        assertThat(text.contains("zap_scans{type=\"ascan\",state=\"running\"} 1\n"), equalTo(true));
+        assertThat(text.contains("zap_scans{type=\"ascan\",state=\"finished\"} 1\n"), equalTo(true));
+        assertThat(text.contains("zap_scans{type=\"spider\",state=\"finished\"} 1\n"), equalTo(true));
+        assertThat(text.contains("zap_scan_progress_percent{type=\"ascan\",id=\"2\"} 40\n"), equalTo(true));
+        assertThat(text.contains("zap_alerts{risk=\"High\"} 1\n"), equalTo(true));
+        assertThat(text.contains("zap_alerts{risk=\"Medium\"} 0\n"), equalTo(true));
+        assertThat(text.contains("zap_history_messages 120\n"), equalTo(true));
+        assertThat(text.contains("zap_passive_scan_records_to_scan 7\n"), equalTo(true));
+        assertThat(text.contains("zap_api_calls_total{endpoint=\"core/messagesHar\"} 1\n"), equalTo(true));
+        assertThat(text.contains("zap_api_response_bytes_total{endpoint=\"core/messagesHar\"} 1024\n"), equalTo(true));
+    }
+
+    @Test
+    public void testCountsOnlyNewAlerts() {
+        alerts.add(alert(Alert.Risk.High));
+        MetricsExporter exporter = new MetricsExporter(scanner(), spider(), null);
+        exporter.poll();
+        alerts.add(alert(Alert.Risk.High));
+        alerts.add(alert(Alert.Risk.Medium));
+        exporter.poll();
+        exporter.poll();
+
+        assertThat(alertRanges, equalTo(Arrays.asList("0+1", "1+2")));
+        assertThat(exporter.getMetricsText().contains("zap_alerts{risk=\"High\"} 2\n"), equalTo(true));
+
+        alerts.clear();
+        alerts.add(alert(Alert.Risk.Low));
+        exporter.poll();
+        assertThat(exporter.getMetricsText().contains("zap_alerts{risk=\"High\"} 0\n"), equalTo(true));
+        assertThat(exporter.getMetricsText().contains("zap_alerts{risk=\"Low\"} 1\n"), equalTo(true));
+    }
+
+    @Test
+    public void testServesLastValuesWhenZapIsDown() {
+        MetricsExporter exporter = new MetricsExporter(scanner(), spider(), null);
+        exporter.poll();
+        zapDown = true;
+        exporter.poll();
+
+        String text = exporter.getMetricsText();
+        assertThat(text.contains("zap_history_messages 120\n"), equalTo(true));
+        assertThat(text.contains("zap_metrics_poll_errors_total 1\n"), equalTo(true));
+    }
+
+    @Test
+    public void testServesMetricsOverHttp() throws Exception {
+        MetricsExporter exporter = new MetricsExporter(scanner(), spider(), null);
+        exporter.start(new InetSocketAddress("127.0.0.1", 0));
+        try {
+            URL url = new URL("http://127.0.0.1:" + exporter.getAddress().getPort() + "/metrics");
+            InputStream in = url.openStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer)) > 0; ) {
+                body.write(buffer, 0, read);
+            }
+            in.close();
+            assertThat(body.toString("UTF-8"), equalTo(exporter.getMetricsText()));
+        } finally {
+            exporter.stop();
+        }
+    }
+
+    @Test
+    public void testEscapesLabelValues() {
+        assertThat(MetricsExporter.labels("endpoint", "a\"b\\c\nd"), equalTo("endpoint=\"a\\\"b\\\\c\\nd\""));
+    }
+
+    private ScanningProxy scanner() {
+        return fake(ScanningProxy.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (zapDown) {
+                    throw new ProxyException("Connection refused");
+                }
+                String name = method.getName();
+                if (name.equals("getScans")) {
+                    return Arrays.asList(scan(1, 100, "FINISHED"), scan(2, 40, "RUNNING"));
+                }
+                if (name.equals("getHistoryCount")) {
+                    return 120;
+                }
+                if (name.equals("getPassiveScanRecordsToScan")) {
+                    return 7;
+                }
+                if (name.equals("getAlertsCount")) {
+                    return alerts.size();
+                }
+                int start = (Integer) args[0];
+                int count = (Integer) args[1];
+                alertRanges.add(start + "+" + count);
+                return new ArrayList<Alert>(alerts.subList(start, start + count));
+            }
+        });
+    }
+
+    private Spider spider() {
+        return fake(Spider.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return Arrays.asList(scan(3, 100, "FINISHED"));
+            }
+        });
+    }
+
+    private static ScanInfo scan(int id, int progress, String state) {
+        Map<String, ApiResponse> values = new HashMap<String, ApiResponse>();
+        values.put("id", new ApiResponseElement("id", String.valueOf(id)));
+        values.put("progress", new ApiResponseElement("progress", String.valueOf(progress)));
+        values.put("state", new ApiResponseElement("state", state));
+        return new ScanInfo(new ApiResponseSet("scan", values));
+    }
+
+    private static Alert alert(Alert.Risk risk) {
+        return new Alert("XSS", "http://app/", risk, Alert.Confidence.Medium, "q", "");
+    }
+}
@@ -0,0 +1,204 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.model.RoleCoverage;
+import net.continuumsecurity.proxy.model.User;
+import org.junit.Test;
+import org.zaproxy.clientapi.core.Alert;
+import org.zaproxy.clientapi.core.ApiResponse;
+import org.zaproxy.clientapi.core.ApiResponseElement;
+import org.zaproxy.clientapi.core.ApiResponseSet;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.continuumsecurity.proxy.Fakes.fake;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class MultiUserScanRunnerTest {
+    private final AtomicInteger nextScanId = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    // Scan id to user id and remaining polls.
+    private final Map<Integer, String> scanUsers = new ConcurrentHashMap<Integer, String>();
+    private final Map<Integer, AtomicInteger> polls = new ConcurrentHashMap<Integer, AtomicInteger>();
+
+    @Test
+    public void testMergesResultsOfConcurrentUsers() throws Exception {
+        Authentication authentication = fake(Authentication.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+                // Names need not be unique, users are told apart by id.
+                return Arrays.asList(user("1", "admin", true), user("2", "clerk", true), user("3", "clerk", true),
+                        user("4", "disabled", false));
+            }
+        });
+        Spider spider = fake(Spider.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("startSpiderAsUser")) {
+                    return start((String) args[2]);
+                }
+                if (method.getName().equals("getSpiderProgress")) {
+                    return progress((Integer) args[0]);
+                }
+                String userId = scanUsers.get(args[0]);
+                List<String> urls = new ArrayList<String>(Arrays.asList("http://app/", "http://app/home"));
+                if (!userId.equals("3")) {
+                    urls.add("http://app/orders");
+                }
+                if (userId.equals("1")) {
+                    urls.add("http://app/admin");
+                }
+                return urls;
+            }
+        });
+        ScanningProxy scanner = fake(ScanningProxy.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("startScanAsUser")) {
+                    return start((String) args[2]);
+                }
+                if (method.getName().equals("getScanProgress")) {
+                    return progress((Integer) args[0]);
+                }
+                String userId = scanUsers.get(args[0]);
+                List<Alert> alerts = new ArrayList<Alert>();
+                alerts.add(new Alert("XSS", "http://app/home", Alert.Risk.High, Alert.Confidence.Medium, "q", ""));
+                if (userId.equals("1")) {
+                    alerts.add(new Alert("SQL Injection", "http://app/admin", Alert.Risk.High,
+                            Alert.Confidence.Medium, "id", ""));
+                }
+                return alerts;
+            }
+        });
+
+        MultiUserScanRunner runner = new MultiUserScanRunner(spider, scanner, authentication);
+        runner.setParallelism(2);
+        runner.setPollIntervalMillis(1);
+        RoleCoverage coverage = runner.run("http://app/", "1");
+
+        assertThat(new ArrayList<String>(coverage.getResults().keySet()), equalTo(Arrays.asList("1", "2", "3")));
+        assertThat(coverage.getResults().get("3").getUserName(), equalTo("clerk"));
+        assertThat(maxRunning.get(), equalTo(2));
+        for (RoleCoverage.RoleResult result : coverage.getResults().values()) {
+            assertThat(result.isSuccess(), equalTo(true));
+            assertThat(scanUsers.get(result.getSpiderScanId()), equalTo(result.getUserId()));
+            assertThat(scanUsers.get(result.getScanId()), equalTo(result.getUserId()));
+        }
+        assertThat(coverage.getUrlMatrix().get("http://app/orders"), equalTo(names("1", "2")));
+        assertThat(coverage.getUrlMatrix().get("http://app/home"), equalTo(names("1", "2", "3")));
+        assertThat(coverage.getUrlsOnlyFoundBy("1"), equalTo(names("http://app/admin")));
+        assertThat(coverage.getFindingMatrix().get("XSS http://app/home [q]"), equalTo(names("1", "2", "3")));
+        assertThat(coverage.getFindingMatrix().get("SQL Injection http://app/admin [id]"), equalTo(names("1")));
+    }
+
+    @Test(timeout = 10000)
+    public void testInterruptedRunStopsStartedSpiders() throws Exception {
+        Authentication authentication = fake(Authentication.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+                return Arrays.asList(user("1", "admin", true), user("2", "clerk", true), user("3", "guest", true));
+            }
+        });
+        final List<Integer> stopped = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch started = new CountDownLatch(2);
+        Spider spider = fake(Spider.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("startSpiderAsUser")) {
+                    started.countDown();
+                    return start((String) args[2]);
+                }
+                if (method.getName().equals("stopSpider")) {
+                    stopped.add((Integer) args[0]);
+                    return null;
+                }
+                // The spiders never finish.
+                return 50;
+            }
+        });
+        final MultiUserScanRunner runner = new MultiUserScanRunner(spider, null, authentication);
+        runner.setParallelism(2);
+        runner.setPollIntervalMillis(1);
+        final Exception[] failure = new Exception[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    runner.run("http://app/", "1");
+                } catch (ProxyException e) {
+                    failure[0] = e;
+                }
+            }
+        };
+        thread.start();
+        started.await();
+        thread.interrupt();
+        thread.join();
+        while (stopped.size() < 2) {
+            Thread.sleep(1);
+        }
+
+        assertThat(failure[0] != null, equalTo(true));
+        assertThat(names(String.valueOf(stopped.get(0)), String.valueOf(stopped.get(1))), equalTo(names("1", "2")));
+    }
+
+    @Test(expected = ProxyException.class)
+    public void testRejectsUnknownUserIds() {
+        Authentication authentication = fake(Authentication.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+                return Arrays.asList(user("1", "admin", true));
+            }
+        });
+        new MultiUserScanRunner(null, null, authentication).run("http://app/", "1", Arrays.asList("1", "9"));
+    }
+
+    private int start(String userId) {
+        int id = nextScanId.incrementAndGet();
+        scanUsers.put(id, userId);
+        polls.put(id, new AtomicInteger(3));
+        int now = running.incrementAndGet();
+        while (true) {
+            int max = maxRunning.get();
+            if (now <= max || maxRunning.compareAndSet(max, now)) {
+                break;
+            }
+        }
+        return id;
+    }
+
+    private int progress(int scanId) {
+        if (polls.get(scanId).decrementAndGet() > 0) {
+            return 50;
+        }
+        running.decrementAndGet();
+        return 100;
+    }
+
+    private static User user(String id, String name, boolean enabled) throws Exception {
+        Map<String, ApiResponse> values = new HashMap<String, ApiResponse>();
+        values.put("id", new ApiResponseElement("id", id));
+        values.put("name", new ApiResponseElement("name", name));
+        values.put("enabled", new ApiResponseElement("enabled", String.valueOf(enabled)));
+        values.put("contextId", new ApiResponseElement("contextId", "1"));
+        values.put("credentials", new ApiResponseElement("credentials", "{}"));
+        return new User(new ApiResponseSet("user", values));
+    }
+
+    private static Set<String> names(String... names) {
+        return new TreeSet<String>(Arrays.asList(names));
+    }
+}
@@ -0,0 +1,59 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.model.PassiveScanDrain;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+
+import static net.continuumsecurity.proxy.Fakes.fake;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class PassiveScanDrainWaiterTest {
+
+    @Test
+    public void testWaitsUntilBacklogIsScanned() {
+        // 100 records, 10 scanned per poll.
+        PassiveScanDrain drain = new PassiveScanDrainWaiter(backlog(100, 10), 1, 5).await(10000);
+
+        assertThat(drain.isDrained(), equalTo(true));
+        assertThat(drain.getInitialRecords(), equalTo(100));
+        assertThat(drain.getRemainingRecords(), equalTo(0));
+        assertThat(drain.getScannedRecords(), equalTo(100L));
+        assertThat(drain.getPolls(), equalTo(11));
+    }
+
+    @Test
+    public void testReturnsImmediatelyWithoutBacklog() {
+        PassiveScanDrain drain = new PassiveScanDrainWaiter(backlog(0, 0), 1000, 1000).await(10000);
+
+        assertThat(drain.isDrained(), equalTo(true));
+        assertThat(drain.getPolls(), equalTo(1));
+    }
+
+    @Test
+    public void testGivesUpAtTimeout() {
+        PassiveScanDrain drain = new PassiveScanDrainWaiter(backlog(50, 0), 1, 5).await(30);
+
+        assertThat(drain.isDrained(), equalTo(false));
+        assertThat(drain.getRemainingRecords(), equalTo(50));
+        assertThat(drain.getScannedRecords(), equalTo(0L));
+        assertThat(drain.getElapsedMillis() >= 30, equalTo(true));
+    }
+
+    private ScanningProxy backlog(final int records, final int perPoll) {
+        final int[] remaining = {records};
+        final boolean[] first = {true};
+        return fake(ScanningProxy.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (!first[0]) {
+                    remaining[0] = Math.max(0, remaining[0] - perPoll);
+                }
+                first[0] = false;
+                return remaining[0];
+            }
+        });
+    }
+}
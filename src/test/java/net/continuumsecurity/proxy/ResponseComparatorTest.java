@@ -0,0 +1,85 @@
+package net.continuumsecurity.proxy;
+
+import edu.umass.cs.benchlab.har.HarContent;
+import edu.umass.cs.benchlab.har.HarCookies;
+import edu.umass.cs.benchlab.har.HarEntry;
+import edu.umass.cs.benchlab.har.HarHeaders;
+import edu.umass.cs.benchlab.har.HarQueryString;
+import edu.umass.cs.benchlab.har.HarRequest;
+import edu.umass.cs.benchlab.har.HarResponse;
+import net.continuumsecurity.proxy.model.AccessComparison;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class ResponseComparatorTest {
+    private static final String INVOICE = "<html><h1>Invoice 1042</h1><p>Billed to Alice Smith, 12 High Street. "
+            + "Total due 120.00 EUR for consulting services rendered in March.</p>"
+            + "<input name=csrf value=%s><p>Generated %s</p></html>";
+    private static final String HOME = "<html><h1>Welcome</h1><p>Our company offers consulting services across "
+            + "Europe. Contact us to find out more about our offering.</p></html>";
+
+    @Test
+    public void testFlagsOtherUserGettingOwnersContent() {
+        List<HarEntry> owner = Arrays.asList(
+                entry("/invoice/1042", 200, String.format(INVOICE, "8f14e45fceea167a5a36dedd4bea2543",
+                        "2024-03-01T10:15:00Z")),
+                entry("/invoice/1043", 200, String.format(INVOICE, "c9f0f895fb98ab9159f51fd0297e236d",
+                        "2024-03-01T10:15:01Z")),
+                entry("/home", 200, HOME));
+        List<HarEntry> other = Arrays.asList(
+                entry("/invoice/1042", 200, String.format(INVOICE, "45c48cce2e2d7fbdea1afc51c7c6ad26",
+                        "2024-03-01T11:00:00Z")),
+                entry("/invoice/1043", 403, "<html>Forbidden</html>"),
+                entry("/home", 200, HOME));
+        List<HarEntry> anonymous = Arrays.asList(
+                entry("/invoice/1042", 302, ""),
+                entry("/invoice/1043", 302, ""),
+                entry("/home", 200, HOME));
+
+        List<AccessComparison> comparisons = new ResponseComparator().compare(owner, other, anonymous);
+
+        assertThat(comparisons.size(), equalTo(3));
+        assertThat(comparisons.get(0).isBypassSuspected(), equalTo(true));
+        assertThat(comparisons.get(0).getSimilarity(), equalTo(1.0));
+        assertThat(comparisons.get(1).isBypassSuspected(), equalTo(false));
+        assertThat(comparisons.get(2).isBypassSuspected(), equalTo(false));
+    }
+
+    @Test
+    public void testPairsRepeatedRequestsOneToOne() {
+        List<HarEntry> owner = Arrays.asList(
+                entry("/account", 200, String.format(INVOICE, "8f14e45fceea167a5a36dedd4bea2543",
+                        "2024-03-01T10:15:00Z")),
+                entry("/account", 200, HOME),
+                entry("/home", 200, HOME),
+                entry("/account", 200, HOME));
+        List<HarEntry> other = Arrays.asList(
+                entry("/home", 200, HOME),
+                entry("/account", 200, String.format(INVOICE, "45c48cce2e2d7fbdea1afc51c7c6ad26",
+                        "2024-03-01T11:00:00Z")),
+                entry("/account", 403, HOME));
+
+        List<AccessComparison> comparisons = new ResponseComparator().compare(owner, other);
+
+        assertThat(comparisons.size(), equalTo(3));
+        assertThat(comparisons.get(0).getSimilarity(), equalTo(1.0));
+        assertThat(comparisons.get(0).isBypassSuspected(), equalTo(true));
+        assertThat(comparisons.get(1).getOtherStatus(), equalTo(403));
+        assertThat(comparisons.get(1).getSimilarity(), equalTo(1.0));
+        assertThat(comparisons.get(2).getUrl(), equalTo("http://localhost/home"));
+    }
+
+    private static HarEntry entry(String path, int status, String body) {
+        HarRequest request = new HarRequest("GET", "http://localhost" + path, "HTTP/1.1", new HarCookies(),
+                new HarHeaders(), new HarQueryString(), -1, -1);
+        HarResponse response = new HarResponse(status, "", "HTTP/1.1", new HarCookies(), new HarHeaders(),
+                new HarContent(body.length(), 0, "text/html", body, null, null), "");
+        return new HarEntry(new Date(), 10, request, response, null, null);
+    }
+}
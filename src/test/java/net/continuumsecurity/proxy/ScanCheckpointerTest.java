@@ -0,0 +1,207 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.model.ScanCheckpoint;
+import net.continuumsecurity.proxy.model.ScanCheckpoint.ScanJob;
+import net.continuumsecurity.proxy.model.ScanInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zaproxy.clientapi.core.ApiResponse;
+import org.zaproxy.clientapi.core.ApiResponseElement;
+import org.zaproxy.clientapi.core.ApiResponseSet;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.continuumsecurity.proxy.Fakes.fake;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class ScanCheckpointerTest {
+    private File file;
+    // Fake ZAP state.
+    private String sessionLocation;
+    private final List<String> calls = new ArrayList<String>();
+    private final Map<Integer, Integer> spiderScans = new HashMap<Integer, Integer>();
+    private final Map<Integer, Integer> activeScans = new HashMap<Integer, Integer>();
+    // States other than running or finished, by scan id.
+    private final Map<Integer, String> states = new HashMap<Integer, String>();
+    private int nextScanId;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("checkpoint", ".json");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testResumeRestartsOnlyUnfinishedJobsAfterZapRestart() {
+        ScanCheckpointer checkpointer = checkpointer();
+        int spiderId = checkpointer.startSpider("http://app/", "1", "2", true);
+        int scanId = checkpointer.startScan("http://app/", "1", "2", true);
+        spiderScans.put(spiderId, 100);
+        activeScans.put(scanId, 40);
+        assertThat(checkpointer.update(), equalTo(false));
+        checkpointer.getState().setCursor("alerts", 25);
+        checkpointer.checkpoint();
+        assertThat(calls, equalTo(Arrays.asList("startSpiderAsUser", "startScanAsUser", "saveSession nightly")));
+
+        // ZAP restarted: no session open, no scans.
+        sessionLocation = "";
+        spiderScans.clear();
+        activeScans.clear();
+        calls.clear();
+        ScanCheckpointer resumed = ScanCheckpointer.resume(scanner(), spider(), file);
+
+        assertThat(calls, equalTo(Arrays.asList("loadSession nightly", "startScanAsUser")));
+        List<ScanJob> jobs = resumed.getState().getJobs();
+        assertThat(jobs.get(0).isFinished(), equalTo(true));
+        assertThat(jobs.get(0).getScanId(), equalTo(spiderId));
+        assertThat(jobs.get(1).isFinished(), equalTo(false));
+        assertThat(jobs.get(1).getScanId(), equalTo(nextScanId));
+        assertThat(jobs.get(1).getUserId(), equalTo("2"));
+        assertThat(resumed.getState().getCursor("alerts"), equalTo(25));
+    }
+
+    @Test
+    public void testResumeReattachesToRunningScans() {
+        ScanCheckpointer checkpointer = checkpointer();
+        int scanId = checkpointer.startScan("http://app/", null, null, true);
+        activeScans.put(scanId, 40);
+        checkpointer.checkpoint();
+
+        // Only the client crashed.
+        sessionLocation = "/home/zap/.ZAP/session/nightly.session";
+        calls.clear();
+        ScanCheckpointer resumed = ScanCheckpointer.resume(scanner(), spider(), file);
+
+        assertThat(calls.isEmpty(), equalTo(true));
+        assertThat(resumed.getState().getJobs().get(0).getScanId(), equalTo(scanId));
+        activeScans.put(scanId, 100);
+        assertThat(resumed.update(), equalTo(true));
+    }
+
+    @Test
+    public void testResumeRelaunchesStoppedAndPausedScans() {
+        ScanCheckpointer checkpointer = checkpointer();
+        int stoppedId = checkpointer.startScan("http://app/a/", "1", "2", true);
+        int pausedId = checkpointer.startSpider("http://app/b/", "1", "2", true);
+        int completedId = checkpointer.startScan("http://app/c/", "1", "2", true);
+        checkpointer.checkpoint();
+
+        // Only the client crashed, but meanwhile ZAP stopped one scan, paused another and completed the third.
+        activeScans.put(stoppedId, 40);
+        states.put(stoppedId, "FINISHED");
+        spiderScans.put(pausedId, 60);
+        states.put(pausedId, "PAUSED");
+        activeScans.put(completedId, 100);
+        calls.clear();
+        ScanCheckpointer resumed = ScanCheckpointer.resume(scanner(), spider(), file);
+
+        assertThat(calls, equalTo(Arrays.asList("startScanAsUser", "startSpiderAsUser")));
+        List<ScanJob> jobs = resumed.getState().getJobs();
+        assertThat(jobs.get(0).getScanId() == stoppedId, equalTo(false));
+        assertThat(jobs.get(1).getScanId() == pausedId, equalTo(false));
+        assertThat(jobs.get(2).getScanId(), equalTo(completedId));
+        assertThat(jobs.get(2).isFinished(), equalTo(true));
+    }
+
+    @Test
+    public void testJobsWithoutUserAreStartedByIdWithTheirRecursion() {
+        ScanCheckpointer checkpointer = checkpointer();
+        int spiderId = checkpointer.startSpider("http://app/", null, null, false);
+        int scanId = checkpointer.startScan("http://app/", null, null, false);
+
+        assertThat(calls, equalTo(Arrays.asList("startSpider http://app/ false", "startScan http://app/ false")));
+        assertThat(checkpointer.getState().getJobs().get(0).getScanId(), equalTo(spiderId));
+        assertThat(checkpointer.getState().getJobs().get(1).getScanId(), equalTo(scanId));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsContextWithoutUser() {
+        checkpointer().startScan("http://app/", "1", null, true);
+    }
+
+    @Test
+    public void testRecognisesOpenSession() {
+        assertThat(ScanCheckpointer.isSession("/zap/session/nightly.session", "nightly"), equalTo(true));
+        assertThat(ScanCheckpointer.isSession("/zap/session/nightly.session", "/zap/session/nightly.session"),
+                equalTo(true));
+        assertThat(ScanCheckpointer.isSession("/zap/session/other.session", "nightly"), equalTo(false));
+        assertThat(ScanCheckpointer.isSession(null, "nightly"), equalTo(false));
+    }
+
+    private ScanCheckpointer checkpointer() {
+        return new ScanCheckpointer(scanner(), spider(), file, new ScanCheckpoint("nightly"));
+    }
+
+    private List<ScanInfo> scans(Map<Integer, Integer> progress) {
+        List<ScanInfo> scans = new ArrayList<ScanInfo>();
+        for (Map.Entry<Integer, Integer> scan : progress.entrySet()) {
+            String state = states.get(scan.getKey());
+            if (state == null) {
+                state = scan.getValue() >= 100 ? "FINISHED" : "RUNNING";
+            }
+            Map<String, ApiResponse> values = new HashMap<String, ApiResponse>();
+            values.put("id", new ApiResponseElement("id", String.valueOf(scan.getKey())));
+            values.put("progress", new ApiResponseElement("progress", String.valueOf(scan.getValue())));
+            values.put("state", new ApiResponseElement("state", state));
+            scans.add(new ScanInfo(new ApiResponseSet("scan", values)));
+        }
+        return scans;
+    }
+
+    private ScanningProxy scanner() {
+        return fake(ScanningProxy.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getSessionLocation")) {
+                    return sessionLocation;
+                }
+                if (name.equals("saveSession") || name.equals("loadSession")) {
+                    calls.add(name + " " + args[0]);
+                    sessionLocation = "/home/zap/.ZAP/session/" + args[0] + ".session";
+                    return null;
+                }
+                if (name.equals("getScans")) {
+                    return scans(activeScans);
+                }
+                if (name.equals("getScanProgress")) {
+                    return activeScans.get(args[0]);
+                }
+                calls.add(name.equals("startScan") ? name + " " + args[0] + " " + args[1] : name);
+                activeScans.put(++nextScanId, 0);
+                return nextScanId;
+            }
+        });
+    }
+
+    private Spider spider() {
+        return fake(Spider.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getSpiderScans")) {
+                    return scans(spiderScans);
+                }
+                if (name.equals("getSpiderProgress")) {
+                    return spiderScans.get(args[0]);
+                }
+                calls.add(name.equals("startSpider") ? name + " " + args[0] + " " + args[2] : name);
+                spiderScans.put(++nextScanId, 0);
+                return nextScanId;
+            }
+        });
+    }
+}
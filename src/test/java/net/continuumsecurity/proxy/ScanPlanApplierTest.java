@@ -0,0 +1,162 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.model.Context;
+import net.continuumsecurity.proxy.model.ScanPlan;
+import net.continuumsecurity.proxy.model.ScanPlanResult;
+import net.continuumsecurity.proxy.model.User;
+import org.junit.Test;
+import org.zaproxy.clientapi.core.ApiResponse;
+import org.zaproxy.clientapi.core.ApiResponseElement;
+import org.zaproxy.clientapi.core.ApiResponseSet;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static net.continuumsecurity.proxy.Fakes.fake;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class ScanPlanApplierTest {
+    private final List<String> contexts = new ArrayList<String>(Collections.singletonList("shop"));
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+    private final InvocationHandler zap = new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws IOException {
+            String name = method.getName();
+            if (name.equals("getContexts")) {
+                return contexts;
+            }
+            if (name.equals("getContextInfo")) {
+                return context();
+            }
+            if (name.equals("getAuthenticationMethodInfo")) {
+                Map<String, String> info = new HashMap<String, String>();
+                info.put("methodName", "formBasedAuthentication");
+                info.put("loginUrl", "http://shop/login");
+                return info;
+            }
+            if (name.equals("getUsersList")) {
+                return Collections.singletonList(user("3", "alice", "old"));
+            }
+            calls.add(name + " " + Arrays.asList(args));
+            return name.equals("newUser") ? "4" : null;
+        }
+    };
+    private final ScanPlanApplier applier = new ScanPlanApplier(fake(ScanningProxy.class, zap),
+            fake(Authentication.class, zap), fake(ContextModifier.class, zap), 2);
+
+    @Test
+    public void testOnlyAppliesDifferences() {
+        ScanPlan plan = plan("new")
+                .includeRegex("http://shop/api/.*")
+                .excludeRegex("http://shop/logout")
+                .user(new ScanPlan.UserPlan("bob", credentials("bob", "secret")));
+
+        ScanPlanResult result = applier.apply(plan);
+
+        assertThat(sorted(calls), equalTo(Arrays.asList(
+                "newUser [1, bob]",
+                "setAuthenticationCredentials [1, 3, username=alice&password=new]",
+                "setAuthenticationCredentials [1, 4, username=bob&password=secret]",
+                "setExcludeFromContext [shop, http://shop/logout]",
+                "setIncludeInContext [shop, http://shop/api/.*]",
+                "setUserEnabled [1, 4, true]")));
+        assertThat(sorted(result.getChanges()), equalTo(Arrays.asList(
+                "create user bob", "exclude http://shop/logout", "include http://shop/api/.*",
+                "set credentials of user alice")));
+        assertThat(result.getContextId(), equalTo("1"));
+        assertThat(result.getUserIds().get("alice"), equalTo("3"));
+        assertThat(result.getUserIds().get("bob"), equalTo("4"));
+    }
+
+    @Test
+    public void testPlanMatchingZapMakesNoCalls() {
+        ScanPlanResult result = applier.apply(plan("old"));
+
+        assertThat(calls.isEmpty(), equalTo(true));
+        assertThat(result.getChanges().isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void testReplacesRegexesWhenZapHasOnesMissingFromThePlan() {
+        ScanPlan plan = plan("old");
+        plan.setIncludeRegexs(new ArrayList<String>(Collections.singletonList("http://shop/api/.*")));
+        plan.excludeRegex("http://shop/logout");
+
+        ScanPlanResult result = applier.apply(plan);
+
+        assertThat(calls, equalTo(Collections.singletonList(
+                "setContextRegexs [shop, [http://shop/api/.*], [http://shop/logout]]")));
+        assertThat(result.getChanges(), equalTo(Collections.singletonList("set context regexes")));
+    }
+
+    @Test
+    public void testCreatesMissingContext() {
+        contexts.clear();
+
+        ScanPlanResult result = applier.apply(plan("old"));
+
+        assertThat(calls, equalTo(Collections.singletonList("createContext [shop, true]")));
+        assertThat(result.getChanges(), equalTo(Collections.singletonList("create context shop")));
+    }
+
+    /**
+     * A plan matching what the fake ZAP holds, apart from the given password of alice.
+     */
+    private static ScanPlan plan(String alicePassword) {
+        ScanPlan plan = new ScanPlan("shop").includeRegex("http://shop/.*");
+        plan.setLoggedInIndicator("Logout");
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        params.put("loginUrl", "http://shop/login");
+        plan.setAuthentication("formBasedAuthentication", params);
+        return plan.user(new ScanPlan.UserPlan("alice", credentials("alice", alicePassword)));
+    }
+
+    private static Map<String, String> credentials(String username, String password) {
+        Map<String, String> credentials = new LinkedHashMap<String, String>();
+        credentials.put("username", username);
+        credentials.put("password", password);
+        return credentials;
+    }
+
+    private static Context context() {
+        Map<String, ApiResponse> values = new HashMap<String, ApiResponse>();
+        values.put("id", new ApiResponseElement("id", "1"));
+        values.put("name", new ApiResponseElement("name", "shop"));
+        values.put("description", new ApiResponseElement("description", ""));
+        values.put("inScope", new ApiResponseElement("inScope", "true"));
+        values.put("loggedInPattern", new ApiResponseElement("loggedInPattern", Pattern.quote("Logout")));
+        values.put("loggedOutPattern", new ApiResponseElement("loggedOutPattern", ""));
+        values.put("includeRegexs", new ApiResponseElement("includeRegexs", "[http://shop/.*]"));
+        values.put("excludeRegexs", new ApiResponseElement("excludeRegexs", "[]"));
+        values.put("authType", new ApiResponseElement("authType", "formBasedAuthentication"));
+        values.put("authenticationDetectionMethodId", new ApiResponseElement("authenticationDetectionMethodId", "0"));
+        return new Context(new ApiResponseSet("context", values));
+    }
+
+    private static User user(String id, String name, String password) throws IOException {
+        Map<String, ApiResponse> values = new HashMap<String, ApiResponse>();
+        values.put("id", new ApiResponseElement("id", id));
+        values.put("enabled", new ApiResponseElement("enabled", "true"));
+        values.put("contextId", new ApiResponseElement("contextId", "1"));
+        values.put("name", new ApiResponseElement("name", name));
+        values.put("credentials", new ApiResponseElement("credentials",
+                "{\"username\":\"" + name + "\",\"password\":\"" + password + "\"}"));
+        return new User(new ApiResponseSet("user", values));
+    }
+
+    private static List<String> sorted(List<String> strings) {
+        List<String> sorted = new ArrayList<String>(strings);
+        Collections.sort(sorted);
+        return sorted;
+    }
+}
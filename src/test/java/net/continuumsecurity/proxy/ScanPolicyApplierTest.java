@@ -0,0 +1,91 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.model.ScanPolicyTemplate;
+import net.continuumsecurity.proxy.model.ScannerInfo;
+import org.junit.Test;
+import org.zaproxy.clientapi.core.ApiResponse;
+import org.zaproxy.clientapi.core.ApiResponseElement;
+import org.zaproxy.clientapi.core.ApiResponseSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class ScanPolicyApplierTest {
+    private final List<ScannerInfo> scanners = Arrays.asList(
+            scanner("40012", "4", "MEDIUM", "MEDIUM", true),
+            scanner("40014", "4", "MEDIUM", "MEDIUM", true),
+            scanner("40018", "4", "LOW", "MEDIUM", true),
+            scanner("6", "0", "MEDIUM", "MEDIUM", false),
+            scanner("7", "0", "MEDIUM", "HIGH", true));
+
+    @Test
+    public void testComputesOnlyTheDifferingSettingsInOneGroup() {
+        ScanPolicyTemplate template = new ScanPolicyTemplate("web")
+                .attackStrength("40012", "HIGH")
+                .attackStrength("40014", "HIGH")
+                .attackStrength("40018", "HIGH")
+                .attackStrength("6", "MEDIUM")
+                .alertThreshold("7", "LOW")
+                .enable("6")
+                .enable("7")
+                .disable("40018");
+
+        List<List<PlanStep>> groups = new ScanPolicyApplier(null).steps(template, scanners);
+
+        assertThat(groups.size(), equalTo(1));
+        assertThat(descriptions(groups.get(0)), equalTo(Arrays.asList(
+                "set attack strength of category 4=HIGH",
+                "set alert threshold 7=LOW",
+                "enable scanners 6",
+                "disable scanners 40018")));
+    }
+
+    @Test
+    public void testSetsScannersOneByOneWhenCategoryIsNotUniform() {
+        ScanPolicyTemplate template = new ScanPolicyTemplate("web")
+                .attackStrength("40012", "HIGH")
+                .attackStrength("40014", "LOW");
+
+        List<List<PlanStep>> groups = new ScanPolicyApplier(null).steps(template, scanners);
+
+        assertThat(descriptions(groups.get(0)), equalTo(Arrays.asList(
+                "set attack strength 40012=HIGH",
+                "set attack strength 40014=LOW")));
+    }
+
+    @Test
+    public void testNothingToDoWhenSettingsMatch() {
+        ScanPolicyTemplate template = new ScanPolicyTemplate("web")
+                .attackStrength("40018", "low")
+                .enable("40012")
+                .disable("6");
+
+        assertThat(new ScanPolicyApplier(null).steps(template, scanners).isEmpty(), equalTo(true));
+    }
+
+    private static List<String> descriptions(List<PlanStep> steps) {
+        List<String> descriptions = new ArrayList<String>();
+        for (PlanStep step : steps) {
+            descriptions.add(step.description);
+        }
+        return descriptions;
+    }
+
+    private static ScannerInfo scanner(String id, String policyId, String strength, String threshold,
+                                       boolean enabled) {
+        Map<String, ApiResponse> values = new HashMap<String, ApiResponse>();
+        values.put("id", new ApiResponseElement("id", id));
+        values.put("name", new ApiResponseElement("name", "Scanner " + id));
+        values.put("enabled", new ApiResponseElement("enabled", String.valueOf(enabled)));
+        values.put("policyId", new ApiResponseElement("policyId", policyId));
+        values.put("attackStrength", new ApiResponseElement("attackStrength", strength));
+        values.put("alertThreshold", new ApiResponseElement("alertThreshold", threshold));
+        return new ScannerInfo(new ApiResponseSet("scanner", values));
+    }
+}
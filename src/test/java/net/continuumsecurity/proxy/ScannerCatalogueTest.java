@@ -0,0 +1,115 @@
+package net.continuumsecurity.proxy;
+
+import net.continuumsecurity.proxy.model.ScannerInfo;
+import org.junit.Test;
+import org.zaproxy.clientapi.core.ApiResponse;
+import org.zaproxy.clientapi.core.ApiResponseElement;
+import org.zaproxy.clientapi.core.ApiResponseSet;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.continuumsecurity.proxy.Fakes.fake;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class ScannerCatalogueTest {
+    private final List<String> calls = new ArrayList<String>();
+    private final ScannerCatalogue catalogue = new ScannerCatalogue(fake(ScanningProxy.class,
+            new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    String name = method.getName();
+                    if (name.equals("getActiveScanners")) {
+                        calls.add(name);
+                        return Arrays.asList(
+                                scanner("40018", "4", 89, "release", true, false),
+                                scanner("40019", "4", 89, "beta", false, false),
+                                scanner("40012", "4", 79, "release", true, false),
+                                scanner("6", "0", 22, "release", true, false),
+                                scanner("7", "0", 0, "alpha", false, false));
+                    }
+                    if (name.equals("getPassiveScanners")) {
+                        calls.add(name);
+                        return Arrays.asList(
+                                scanner("10010", null, 16, "release", true, true),
+                                scanner("10020", null, 89, "beta", false, true));
+                    }
+                    calls.add(name + " " + args[0] + " " + args[1]);
+                    return null;
+                }
+            }));
+
+    @Test
+    public void testIndexesScannersAfterReadingThemOnce() {
+        assertThat(ids(catalogue.getByCwe(89)), equalTo(Arrays.asList("40018", "40019", "10020")));
+        assertThat(ids(catalogue.getByPolicyId("4")), equalTo(Arrays.asList("40018", "40019", "40012")));
+        assertThat(ids(catalogue.getByQuality("beta")), equalTo(Arrays.asList("40019", "10020")));
+        assertThat(ids(catalogue.getByWasc(0)).size(), equalTo(7));
+        assertThat(ids(catalogue.getByEnabled(false)), equalTo(Arrays.asList("40019", "7", "10020")));
+        assertThat(catalogue.getScanner("10010").isPassive(), equalTo(true));
+        assertThat(ids(catalogue.getByCwe(1)).isEmpty(), equalTo(true));
+
+        assertThat(calls, equalTo(Arrays.asList("getActiveScanners", "getPassiveScanners")));
+    }
+
+    @Test
+    public void testEnableOnlyIssuesOneCallPerStateAndSkipsNoOps() {
+        catalogue.enableOnly(catalogue.getByPolicyId("4"));
+
+        assertThat(calls, equalTo(Arrays.asList("getActiveScanners", "getPassiveScanners",
+                "setEnableScanners 6 false", "setEnableScanners 40019 true")));
+        assertThat(ids(catalogue.getByEnabled(true)), equalTo(Arrays.asList("40018", "40019", "40012", "10010")));
+
+        calls.clear();
+        catalogue.enableOnly(catalogue.getByPolicyId("4"));
+        assertThat(calls.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void testEnablingPassiveScannersUsesThePassiveCall() {
+        catalogue.setEnabled(catalogue.getByCwe(89), true);
+
+        assertThat(calls.subList(2, calls.size()), equalTo(Arrays.asList(
+                "setEnableScanners 40019 true", "setEnablePassiveScanners 10020 true")));
+    }
+
+    @Test
+    public void testChangesDoNotAlterScannersAlreadyHandedOut() {
+        ScannerInfo before = catalogue.getScanner("40019");
+
+        catalogue.setEnabled(Arrays.asList(before), true);
+
+        assertThat(before.isEnabled(), equalTo(false));
+        assertThat(catalogue.getScanner("40019").isEnabled(), equalTo(true));
+        assertThat(catalogue.getByQuality("beta").get(0).isEnabled(), equalTo(true));
+    }
+
+    private static List<String> ids(List<ScannerInfo> scanners) {
+        List<String> ids = new ArrayList<String>();
+        for (ScannerInfo info : scanners) {
+            ids.add(info.getId());
+        }
+        return ids;
+    }
+
+    private static ScannerInfo scanner(String id, String policyId, int cweId, String quality, boolean enabled,
+                                       boolean passive) {
+        Map<String, ApiResponse> values = new HashMap<String, ApiResponse>();
+        values.put("id", new ApiResponseElement("id", id));
+        values.put("name", new ApiResponseElement("name", "Scanner " + id));
+        values.put("enabled", new ApiResponseElement("enabled", String.valueOf(enabled)));
+        values.put("cweid", new ApiResponseElement("cweid", String.valueOf(cweId)));
+        values.put("wascid", new ApiResponseElement("wascid", "0"));
+        values.put("quality", new ApiResponseElement("quality", quality));
+        if (policyId != null) {
+            values.put("policyId", new ApiResponseElement("policyId", policyId));
+        }
+        return new ScannerInfo(new ApiResponseSet("scanner", values), passive);
+    }
+}
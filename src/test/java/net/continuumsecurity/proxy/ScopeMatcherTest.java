@@ -0,0 +1,64 @@
+package net.continuumsecurity.proxy;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class ScopeMatcherTest {
+
+    @Test
+    public void testMatchesLikeSeparateRegexs() {
+        List<String> includes = Arrays.asList(
+                "http://localhost:9090/.*",
+                Pattern.quote("http://example.com/exact"),
+                "https://(www\\.)?shop\\.com/items/\\d+",
+                "(?i)HTTP://UPPER\\.COM/.*",
+                "http://(a|b)\\.com/\\1");
+        List<String> excludes = Arrays.asList("http://localhost:9090/logout.*", ".*\\.png");
+        ScopeMatcher matcher = new ScopeMatcher(includes, excludes);
+
+        List<String> urls = Arrays.asList(
+                "http://localhost:9090/", "http://localhost:9090/app?x=1", "http://localhost:9090/logout",
+                "http://localhost:9090/img/a.png", "http://localhost:909", "http://example.com/exact",
+                "http://example.com/exact2", "https://shop.com/items/12", "https://www.shop.com/items/x",
+                "http://upper.com/path", "http://a.com/a", "http://a.com/b", "ftp://other",
+                "HTTP://LOCALHOST:9090/App", "http://Example.com/EXACT", "https://SHOP.com/items/7",
+                "http://localhost:9090/LOGOUT", "http://localhost:9090/img/A.PNG", "http://A.com/a");
+        for (String url : urls) {
+            assertThat(url, matcher.matches(url), equalTo(matchesSeparately(includes, excludes, url)));
+        }
+    }
+
+    @Test
+    public void testIgnoresCaseLikeZap() {
+        ScopeMatcher matcher = new ScopeMatcher(Arrays.asList("http://Example.com/App.*", "http://Example.com/Exact"),
+                Arrays.asList("http://example.com/app/LOGOUT"));
+        assertThat(matcher.matches("HTTP://EXAMPLE.COM/APP/page"), equalTo(true));
+        assertThat(matcher.matches("http://example.com/exact"), equalTo(true));
+        assertThat(matcher.matches("http://example.com/App/Logout"), equalTo(false));
+        assertThat(matcher.matches("http://example.com/other"), equalTo(false));
+    }
+
+    @Test
+    public void testNoIncludesMeansNothingInScope() {
+        ScopeMatcher matcher = new ScopeMatcher(null, Collections.<String>emptyList());
+        assertThat(matcher.matches("http://localhost/"), equalTo(false));
+    }
+
+    private static boolean matchesSeparately(List<String> includes, List<String> excludes, String url) {
+        boolean included = false;
+        for (String regex : includes) {
+            included |= Pattern.compile(regex, Pattern.CASE_INSENSITIVE).matcher(url).matches();
+        }
+        for (String regex : excludes) {
+            included &= !Pattern.compile(regex, Pattern.CASE_INSENSITIVE).matcher(url).matches();
+        }
+        return included;
+    }
+}
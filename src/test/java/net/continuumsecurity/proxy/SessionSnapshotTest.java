@@ -0,0 +1,44 @@
+package net.continuumsecurity.proxy;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static net.continuumsecurity.proxy.Fakes.fake;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class SessionSnapshotTest {
+    private final List<String> calls = new ArrayList<String>();
+    private final LoggingProxy proxy = fake(LoggingProxy.class, new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            calls.add(method.getName() + " " + args[0]);
+            return null;
+        }
+    });
+
+    @Test
+    public void testCaptureLeavesWorkingCopyOpen() {
+        new SessionSnapshot(proxy).capture("baseline");
+        assertThat(calls, equalTo(Arrays.asList("saveSession baseline", "saveSession baseline-work")));
+    }
+
+    @Test
+    public void testResetReplacesWorkingCopyWithNamedBaseline() {
+        SessionSnapshot snapshot = new SessionSnapshot(proxy);
+        snapshot.reset("first");
+        snapshot.reset("second");
+        assertThat(calls, equalTo(Arrays.asList("loadSession first", "saveSession first-work",
+                "loadSession second", "saveSession second-work")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testResetWithoutNameFails() {
+        new SessionSnapshot(proxy).reset(null);
+    }
+}
@@ -0,0 +1,65 @@
+package net.continuumsecurity.proxy;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.continuumsecurity.proxy.Fakes.fake;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class SpiderResultStreamTest {
+
+    @Test
+    public void testNormalizesUrls() {
+        assertThat(UrlNormalizer.normalize("HTTP://Example.COM:80"), equalTo("http://example.com/"));
+        assertThat(UrlNormalizer.normalize("https://example.com:443/A/b?z=1&a=2&z=0#frag"),
+                equalTo("https://example.com/A/b?a=2&z=1&z=0"));
+        assertThat(UrlNormalizer.normalize("http://example.com:8080/?x"), equalTo("http://example.com:8080/?x"));
+    }
+
+    @Test
+    public void testStreamsEachUniqueUrlOnceWhileSpiderRuns() {
+        final List<List<String>> polls = polls(
+                new String[]{"http://app/", "http://app/a?y=1&x=2"},
+                new String[]{"http://app/", "http://app/a?y=1&x=2", "http://APP:80/a?x=2&y=1#top", "http://app/b"},
+                new String[]{"http://app/", "http://app/a?y=1&x=2", "http://APP:80/a?x=2&y=1#top", "http://app/b",
+                        "http://app/c"});
+        final AtomicInteger poll = new AtomicInteger(-1);
+        Spider spider = fake(Spider.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getSpiderProgress")) {
+                    return poll.incrementAndGet() >= polls.size() - 1 ? 100 : 50;
+                }
+                return polls.get(poll.get());
+            }
+        });
+
+        SpiderResultStream stream = new SpiderResultStream(spider, 1);
+        stream.setPollIntervalMillis(1);
+        List<String> urls = new ArrayList<String>();
+        while (stream.hasNext()) {
+            urls.add(stream.next());
+        }
+        assertThat(urls, equalTo(Arrays.asList("http://app/", "http://app/a?x=2&y=1", "http://app/b",
+                "http://app/c")));
+        assertThat(stream.isFinished(), equalTo(true));
+    }
+
+    /**
+     * The spider results returned by successive polls.
+     */
+    private static List<List<String>> polls(String[]... results) {
+        List<List<String>> polls = new ArrayList<List<String>>();
+        for (String[] urls : results) {
+            polls.add(Arrays.asList(urls));
+        }
+        return polls;
+    }
+}
@@ -0,0 +1,88 @@
+package net.continuumsecurity.proxy;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static net.continuumsecurity.proxy.Fakes.fake;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class SpiderScanPipelineTest {
+    private final List<String> found = new ArrayList<String>();
+    private final List<String> scans = new ArrayList<String>();
+    private final List<Integer> foundAtScan = new ArrayList<Integer>();
+
+    @Test
+    public void testScansSettledDirectoriesWhileSpiderRuns() {
+        List<String> crawl = Arrays.asList("http://app/", "http://app/a/1", "http://app/a/2",
+                "http://app/a/b/1", "http://app/c/1", "http://app/a/late", "http://app/c/d/1");
+
+        List<Integer> scanIds = run(crawl, 0, 2);
+
+        // The root has scanned directories below it, so only the URL directly in it is scanned, as are URLs found
+        // below a directory after its recursive scan started.
+        assertThat(scans, equalTo(Arrays.asList("http://app/a/ recursive", "http://app/c/ recursive", "http://app/",
+                "http://app/a/late", "http://app/c/d/1")));
+        assertThat(scanIds, equalTo(Arrays.asList(1, 2, 3, 4, 5)));
+        // The first directory was scanned before the crawl had finished.
+        assertThat(foundAtScan.get(0) < crawl.size(), equalTo(true));
+    }
+
+    @Test
+    public void testChildFoundBeforeParentScanStartsIsLeftToIt() {
+        // The first scan keeps the only slot busy, so /b/ is still queued when /b/c/1 turns up and settles.
+        List<String> crawl = Arrays.asList("http://app/a/1", "http://app/b/1", "http://app/b/c/1");
+
+        run(crawl, 40, 1);
+
+        assertThat(scans, equalTo(Arrays.asList("http://app/a/ recursive", "http://app/b/ recursive")));
+    }
+
+    /**
+     * Runs a pipeline over a spider that finds one URL of the crawl every other poll.
+     *
+     * @param firstScanPolls Progress polls before the first scan completes, later scans complete straight away.
+     */
+    private List<Integer> run(final List<String> crawl, final int firstScanPolls, int maxConcurrentScans) {
+        final int[] spiderPolls = {0};
+        Spider spider = fake(Spider.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getSpiderProgress")) {
+                    int poll = spiderPolls[0]++;
+                    if (poll % 2 == 0 && poll / 2 < crawl.size()) {
+                        found.add(crawl.get(poll / 2));
+                    }
+                    return found.size() == crawl.size() ? 100 : 50;
+                }
+                return new ArrayList<String>(found);
+            }
+        });
+        final int[] scanPolls = {0};
+        ScanningProxy scanner = fake(ScanningProxy.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("startScan")) {
+                    scans.add(args[0] + (Boolean.TRUE.equals(args[1]) ? " recursive" : ""));
+                    foundAtScan.add(found.size());
+                    return scans.size();
+                }
+                if (args[0].equals(1) && scanPolls[0]++ < firstScanPolls) {
+                    return 50;
+                }
+                return 100;
+            }
+        });
+
+        SpiderScanPipeline pipeline = new SpiderScanPipeline(spider, scanner, 1);
+        pipeline.setPollIntervalMillis(1);
+        pipeline.setSettlePolls(2);
+        pipeline.setMaxConcurrentScans(maxConcurrentScans);
+        return pipeline.run();
+    }
+}
@@ -280,6 +280,19 @@ public class ZAProxyScannerTest {
         assertEquals(history.get(0).getResponse().getStatus(), 302);
     }
 
+    @Test
+    public void testResetToSnapshotDropsHistoryRecordedAfterCapture() throws ProxyException {
+        zaproxy.createContext(TEST_CONTEXT_NAME, true);
+        zaproxy.captureSnapshot("snapshot-test");
+        driver.get(BASEURL);
+        assertThat(zaproxy.getHistoryCount(), greaterThan(0));
+
+        zaproxy.resetToSnapshot("snapshot-test");
+        assertEquals(0, zaproxy.getHistoryCount());
+        assertThat(zaproxy.getContexts(), hasItems(TEST_CONTEXT_NAME));
+        assertThat(zaproxy.getSessionLocation(), endsWith("snapshot-test-work.session"));
+    }
+
     @Test
     public void testMakeRequest() throws IOException {
         driver.get(BASEURL + "task/search?q=test&search=Search");
@@ -0,0 +1,41 @@
+package net.continuumsecurity.proxy.api;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverValuesWithinThreePercent() {
+        for (long value = 0; value < LatencyHistogram.MAX_VALUE; value = value * 3 / 2 + 1) {
+            long upper = LatencyHistogram.highestEquivalentValue(LatencyHistogram.index(value));
+            assertThat(upper >= value, equalTo(true));
+            assertThat(upper - value <= value / 32, equalTo(true));
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordMicros(i * 1000L);
+        }
+
+        assertThat(histogram.getCount(), equalTo(1000L));
+        assertThat(histogram.getMaxMicros(), equalTo(1000000L));
+        assertThat(Math.abs(histogram.getPercentileMicros(50) - 500000) <= 500000 / 32, equalTo(true));
+        assertThat(Math.abs(histogram.getPercentileMicros(99) - 990000) <= 990000 / 32, equalTo(true));
+        assertThat(histogram.getPercentileMicros(100), equalTo(1000000L));
+        assertThat(histogram.getMeanMicros(), equalTo(500500.0));
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.getPercentileMicros(99), equalTo(0L));
+        assertThat(histogram.getMeanMicros(), equalTo(0.0));
+    }
+}
@@ -0,0 +1,140 @@
+package net.continuumsecurity.proxy.api;
+
+import org.junit.Test;
+import org.zaproxy.clientapi.core.ClientApiException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class ReadCoalescerTest {
+
+    @Test
+    public void testConcurrentIdenticalReadsShareOneCall() throws Exception {
+        final ReadCoalescer coalescer = new ReadCoalescer();
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final ApiCall<String> slowCall = new ApiCall<String>() {
+            @Override
+            public String call() throws ClientApiException {
+                calls.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new ClientApiException(e);
+                }
+                return "42";
+            }
+        };
+
+        List<Thread> threads = new ArrayList<Thread>();
+        final AtomicInteger answers = new AtomicInteger();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if ("42".equals(coalescer.execute("core", "numberOfAlerts", null, slowCall))) {
+                            answers.incrementAndGet();
+                        }
+                    } catch (ClientApiException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        Thread.sleep(200);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(calls.get(), equalTo(1));
+        assertThat(answers.get(), equalTo(8));
+    }
+
+    @Test
+    public void testTtlServesCachedResultUntilInvalidated() throws ClientApiException {
+        ReadCoalescer coalescer = new ReadCoalescer();
+        coalescer.setTtl("core", "numberOfMessages", 60000);
+        final AtomicInteger calls = new AtomicInteger();
+        ApiCall<Integer> call = new ApiCall<Integer>() {
+            @Override
+            public Integer call() {
+                return calls.incrementAndGet();
+            }
+        };
+
+        assertThat(coalescer.execute("core", "numberOfMessages", null, call), equalTo(1));
+        assertThat(coalescer.execute("core", "numberOfMessages", null, call), equalTo(1));
+        coalescer.invalidate();
+        assertThat(coalescer.execute("core", "numberOfMessages", null, call), equalTo(2));
+    }
+
+    @Test
+    public void testReadAfterWriteDoesNotJoinReadStartedBeforeIt() throws Exception {
+        final ReadCoalescer coalescer = new ReadCoalescer();
+        coalescer.setTtl("core", "numberOfMessages", 60000);
+        final AtomicInteger state = new AtomicInteger(1);
+        final CountDownLatch firstStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirst = new CountDownLatch(1);
+        final ApiCall<Integer> call = new ApiCall<Integer>() {
+            @Override
+            public Integer call() throws ClientApiException {
+                int value = state.get();
+                if (firstStarted.getCount() > 0) {
+                    firstStarted.countDown();
+                    try {
+                        releaseFirst.await();
+                    } catch (InterruptedException e) {
+                        throw new ClientApiException(e);
+                    }
+                }
+                return value;
+            }
+        };
+        final AtomicInteger firstRead = new AtomicInteger();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    firstRead.set(coalescer.execute("core", "numberOfMessages", null, call));
+                } catch (ClientApiException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        reader.start();
+        firstStarted.await();
+
+        // The write lands while the first read is still in flight.
+        state.set(2);
+        coalescer.invalidate();
+        final AtomicInteger secondRead = new AtomicInteger();
+        Thread second = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    secondRead.set(coalescer.execute("core", "numberOfMessages", null, call));
+                } catch (ClientApiException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        second.start();
+        second.join(5000);
+        releaseFirst.countDown();
+        reader.join();
+
+        assertThat(firstRead.get(), equalTo(1));
+        assertThat(secondRead.get(), equalTo(2));
+        // The stale first result was not cached.
+        assertThat(coalescer.execute("core", "numberOfMessages", null, call), equalTo(2));
+    }
+}
@@ -0,0 +1,369 @@
+package net.continuumsecurity.proxy.api;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.zaproxy.clientapi.core.ClientApiException;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.fail;
+
+public class ZapClientApiTest {
+    static int nextPort = 40000;
+    ZapClientApi clientApi;
+    AtomicInteger calls;
+
+    @Before
+    public void setup() {
+        ResiliencePolicy policy = new ResiliencePolicy();
+        policy.setInitialBackoffMillis(1);
+        policy.setMaxAttempts(3);
+        policy.setFailureThreshold(4);
+        // Every test gets its own node so circuit breakers are not shared between tests.
+        clientApi = new ZapClientApi("127.0.0.1", nextPort++, "apisecret", policy);
+        calls = new AtomicInteger();
+    }
+
+    @Test
+    public void testIdempotentCallIsRetriedOnTransportFailure() throws ClientApiException {
+        String result = clientApi.invoke("core", "view", "version", failingCall(2));
+        assertThat(result, equalTo("ok"));
+        assertThat(calls.get(), equalTo(3));
+    }
+
+    @Test
+    public void testNonIdempotentCallIsNotRetried() {
+        try {
+            clientApi.invoke("ascan", "action", "scan", failingCall(2));
+            fail("Expected the transport failure to be rethrown");
+        } catch (ClientApiException e) {
+            assertThat(calls.get(), equalTo(1));
+        }
+    }
+
+    @Test
+    public void testCircuitOpensAfterConsecutiveFailures() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                clientApi.invoke("core", "view", "version", failingCall(Integer.MAX_VALUE));
+            } catch (ClientApiException expected) {
+            }
+        }
+        assertThat(clientApi.getCircuitBreaker().getState(), equalTo(CircuitBreaker.State.OPEN));
+        int callsWhenOpened = calls.get();
+        try {
+            clientApi.invoke("core", "view", "version", failingCall(0));
+            fail("Expected the open circuit to reject the call");
+        } catch (ClientApiException e) {
+            assertThat(e instanceof CircuitOpenException, equalTo(true));
+        }
+        assertThat(calls.get(), equalTo(callsWhenOpened));
+    }
+
+    @Test
+    public void testBreakerIsSharedOnlyWithTheSameSettings() {
+        int port = nextPort++;
+        ResiliencePolicy policy = new ResiliencePolicy();
+        ResiliencePolicy stricter = new ResiliencePolicy();
+        stricter.setFailureThreshold(1);
+
+        CircuitBreaker breaker = new ZapClientApi("127.0.0.1", port, "apisecret", policy).getCircuitBreaker();
+        assertThat(new ZapClientApi("127.0.0.1", port, "apisecret", new ResiliencePolicy()).getCircuitBreaker()
+                == breaker, equalTo(true));
+        assertThat(new ZapClientApi("127.0.0.1", port, "apisecret", stricter).getCircuitBreaker() == breaker,
+                equalTo(false));
+    }
+
+    @Test
+    public void testErrorInTrialCallLetsNextCallTry() throws ClientApiException {
+        ResiliencePolicy policy = new ResiliencePolicy();
+        policy.setMaxAttempts(1);
+        policy.setFailureThreshold(1);
+        policy.setOpenDurationMillis(0);
+        clientApi = new ZapClientApi("127.0.0.1", nextPort++, "apisecret", policy);
+        try {
+            clientApi.invoke("core", "view", "version", failingCall(1));
+        } catch (ClientApiException expected) {
+        }
+        assertThat(clientApi.getCircuitBreaker().getState(), equalTo(CircuitBreaker.State.OPEN));
+        try {
+            clientApi.invoke("core", "view", "version", new ApiCall<String>() {
+                @Override
+                public String call() {
+                    throw new Error("Trial call failed");
+                }
+            });
+            fail("Expected the error to be rethrown");
+        } catch (Error expected) {
+        }
+        assertThat(clientApi.getCircuitBreaker().getState(), equalTo(CircuitBreaker.State.OPEN));
+
+        assertThat(clientApi.invoke("core", "view", "version", failingCall(0)), equalTo("ok"));
+        assertThat(clientApi.getCircuitBreaker().getState(), equalTo(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test(timeout = 10000)
+    public void testViewReadDuringActionIsNotCachedPastIt() throws Exception {
+        clientApi.getReadCoalescer().setTtl("ascan", "scans", 60000);
+        final CountDownLatch actionStarted = new CountDownLatch(1);
+        final CountDownLatch releaseAction = new CountDownLatch(1);
+        final AtomicInteger scans = new AtomicInteger();
+        ApiCall<Integer> listScans = new ApiCall<Integer>() {
+            @Override
+            public Integer call() {
+                return scans.get();
+            }
+        };
+        Thread action = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    clientApi.dispatch("ascan", "action", "scan", null, new ApiCall<String>() {
+                        @Override
+                        public String call() throws ClientApiException {
+                            actionStarted.countDown();
+                            try {
+                                releaseAction.await();
+                            } catch (InterruptedException e) {
+                                throw new ClientApiException(e);
+                            }
+                            scans.incrementAndGet();
+                            return "1";
+                        }
+                    });
+                } catch (ClientApiException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        action.start();
+        actionStarted.await();
+        assertThat(clientApi.dispatch("ascan", "view", "scans", null, listScans), equalTo(0));
+        releaseAction.countDown();
+        action.join();
+
+        assertThat(clientApi.dispatch("ascan", "view", "scans", null, listScans), equalTo(1));
+    }
+
+    @Test
+    public void testSendHarRequestInvalidatesCachedViews() throws ClientApiException {
+        clientApi.getReadCoalescer().setTtl("core", "numberOfMessages", 60000);
+        ApiCall<Integer> countMessages = new ApiCall<Integer>() {
+            @Override
+            public Integer call() {
+                return calls.incrementAndGet();
+            }
+        };
+        assertThat(clientApi.dispatch("core", "view", "numberOfMessages", null, countMessages), equalTo(1));
+        clientApi.dispatch("core", "other", "sendHarRequest", null, new ApiCall<byte[]>() {
+            @Override
+            public byte[] call() {
+                return new byte[0];
+            }
+        });
+        assertThat(clientApi.dispatch("core", "view", "numberOfMessages", null, countMessages), equalTo(2));
+    }
+
+    @Test
+    public void testCallsAreRecordedPerEndpoint() throws ClientApiException {
+        clientApi.getReadCoalescer().setEnabled(false);
+        clientApi.dispatch("core", "view", "version", null, failingCall(0));
+        try {
+            clientApi.dispatch("core", "view", "version", null, failingCall(Integer.MAX_VALUE));
+        } catch (ClientApiException expected) {
+        }
+        clientApi.dispatch("core", "other", "messagesHar", null, new ApiCall<byte[]>() {
+            @Override
+            public byte[] call() {
+                return new byte[1234];
+            }
+        });
+
+        EndpointStats version = null;
+        EndpointStats har = null;
+        for (EndpointStats stats : clientApi.getMetrics().snapshot()) {
+            if (stats.getEndpoint().equals("core/version")) {
+                version = stats;
+            } else if (stats.getEndpoint().equals("core/messagesHar")) {
+                har = stats;
+            }
+        }
+        assertThat(version.getCalls(), equalTo(2L));
+        assertThat(version.getErrors(), equalTo(1L));
+        assertThat(har.getCalls(), equalTo(1L));
+        assertThat(har.getBytes(), equalTo(1234L));
+    }
+
+    @Test
+    public void testInterceptorsWrapCallsInOrder() throws ClientApiException {
+        final List<String> trace = new ArrayList<String>();
+        clientApi.addInterceptor(tracingInterceptor("outer", trace));
+        clientApi.addInterceptor(tracingInterceptor("inner", trace));
+
+        String result = clientApi.dispatch("core", "view", "version", null, failingCall(0));
+
+        assertThat(result, equalTo("ok"));
+        assertThat(trace, equalTo(Arrays.asList("outer core/view/version", "inner core/view/version",
+                "inner done", "outer done")));
+    }
+
+    @Test
+    public void testInterceptorCanAnswerWithoutCallingZap() throws ClientApiException {
+        clientApi.addInterceptor(new ApiInterceptor() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T intercept(ApiInvocation<T> invocation) {
+                return (T) "cached";
+            }
+        });
+
+        assertThat(clientApi.dispatch("core", "view", "version", null, failingCall(0)), equalTo("cached"));
+        assertThat(calls.get(), equalTo(0));
+    }
+
+    @Test
+    public void testListenersSeeRedactedCallsAndErrors() {
+        final List<ApiCallEvent> events = new ArrayList<ApiCallEvent>();
+        final List<ClientApiException> errors = new ArrayList<ClientApiException>();
+        clientApi.addListener(new ApiCallListener() {
+            @Override
+            public void before(ApiCallEvent event) {
+                events.add(event);
+            }
+
+            @Override
+            public void after(ApiCallEvent event) {
+                throw new IllegalStateException("Listener failures must not fail the call");
+            }
+
+            @Override
+            public void error(ApiCallEvent event, ClientApiException e) {
+                errors.add(e);
+            }
+        });
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        params.put("contextId", "1");
+        params.put("authCredentialsConfigParams", "username=bob&password=secret");
+
+        try {
+            clientApi.dispatch("users", "action", "setAuthenticationCredentials", params, failingCall(0));
+            clientApi.dispatch("users", "action", "setAuthenticationCredentials", params,
+                    failingCall(Integer.MAX_VALUE));
+            fail("Expected the transport failure to be rethrown");
+        } catch (ClientApiException e) {
+            assertThat(errors.size(), equalTo(1));
+        }
+        ApiCallEvent event = events.get(0);
+        assertThat(event.getOperation(), equalTo("users/action/setAuthenticationCredentials"));
+        assertThat(event.getParams().get("contextId"), equalTo("1"));
+        assertThat(event.getParams().get("authCredentialsConfigParams"), equalTo(ApiCallEvent.REDACTED));
+        assertThat(event.getDurationNanos() >= 0, equalTo(true));
+    }
+
+    @Test
+    public void testListenersAreToldAboutInterceptorFailures() {
+        final List<String> trace = new ArrayList<String>();
+        clientApi.addListener(new ApiCallListener() {
+            @Override
+            public void before(ApiCallEvent event) {
+                trace.add("before");
+            }
+
+            @Override
+            public void after(ApiCallEvent event) {
+                trace.add("after");
+            }
+
+            @Override
+            public void error(ApiCallEvent event, ClientApiException e) {
+                trace.add("error " + e.getCause().getMessage());
+            }
+        });
+        clientApi.addInterceptor(new ApiInterceptor() {
+            @Override
+            public <T> T intercept(ApiInvocation<T> invocation) {
+                throw new IllegalStateException("rejected");
+            }
+        });
+
+        try {
+            clientApi.dispatch("core", "view", "version", null, failingCall(0));
+            fail("Expected the interceptor failure to be rethrown");
+        } catch (IllegalStateException e) {
+            assertThat(trace, equalTo(Arrays.asList("before", "error rejected")));
+        } catch (ClientApiException e) {
+            fail("Expected the interceptor failure to be rethrown as is");
+        }
+    }
+
+    @Test
+    public void testRedactsCredentialsInSentHarRequests() throws Exception {
+        String har = "{\"method\":\"POST\",\"url\":\"http://app/login\","
+                + "\"cookies\":[{\"name\":\"JSESSIONID\",\"value\":\"4D815DF5\"}],"
+                + "\"headers\":[{\"name\":\"Host\",\"value\":\"app\"},"
+                + "{\"name\":\"Cookie\",\"value\":\"JSESSIONID=4D815DF5\"},"
+                + "{\"name\":\"authorization\",\"value\":\"Basic Ym9iOnNlY3JldA==\"}],"
+                + "\"postData\":{\"mimeType\":\"application/x-www-form-urlencoded\",\"params\":[],"
+                + "\"text\":\"username=bob&password=secret\"}}";
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        params.put("request", har);
+        params.put("followRedirects", "false");
+
+        String redacted = ApiCallEvent.redact("core", "sendHarRequest", params).get("request");
+
+        assertThat(redacted.contains("4D815DF5"), equalTo(false));
+        assertThat(redacted.contains("Ym9iOnNlY3JldA=="), equalTo(false));
+        assertThat(redacted.contains("secret"), equalTo(false));
+        assertThat(redacted.contains("\"url\":\"http://app/login\""), equalTo(true));
+        assertThat(redacted.contains("{\"name\":\"Host\",\"value\":\"app\"}"), equalTo(true));
+        assertThat(ApiCallEvent.redact("core", "sendHarRequest", params).get("followRedirects"), equalTo("false"));
+        // Unparseable requests are dropped entirely.
+        params.put("request", "{not json");
+        assertThat(ApiCallEvent.redact("core", "sendHarRequest", params).get("request"),
+                equalTo(ApiCallEvent.REDACTED));
+    }
+
+    @Test
+    public void testRedactsCredentialsInSentHttpRequests() {
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        params.put("request", "POST http://app/login HTTP/1.1\r\nHost: app\r\nCookie: JSESSIONID=4D815DF5\r\n"
+                + "Authorization: Basic Ym9iOnNlY3JldA==\r\n\r\nusername=bob&password=secret");
+
+        assertThat(ApiCallEvent.redact("core", "sendRequest", params).get("request"),
+                equalTo("POST http://app/login HTTP/1.1\r\nHost: app\r\nCookie: ***\r\n"
+                        + "Authorization: ***\r\n\r\n***"));
+    }
+
+    private static ApiInterceptor tracingInterceptor(final String name, final List<String> trace) {
+        return new ApiInterceptor() {
+            @Override
+            public <T> T intercept(ApiInvocation<T> invocation) throws ClientApiException {
+                trace.add(name + " " + invocation.getOperation());
+                T result = invocation.proceed();
+                trace.add(name + " done");
+                return result;
+            }
+        };
+    }
+
+    private ApiCall<String> failingCall(final int failures) {
+        return new ApiCall<String>() {
+            @Override
+            public String call() throws ClientApiException {
+                if (calls.incrementAndGet() <= failures) {
+                    throw new ClientApiException(new ConnectException("Connection refused"));
+                }
+                return "ok";
+            }
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package net.continuumsecurity.proxy.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assume.assumeTrue;
+
+public class JfrEventsTest {
+
+    @Before
+    public void requireJfr() {
+        assumeTrue(JfrEvents.isAvailable());
+    }
+
+    @Test
+    public void testEventsAreDisabledByDefault() {
+        assertThat(JfrEvents.beginApiCall() == null, equalTo(true));
+        assertThat(JfrEvents.beginHarDecode() == null, equalTo(true));
+    }
+
+    @Test
+    public void testRecordsScanMilestonesOnce() throws Exception {
+        Recording recording = new Recording();
+        recording.enable("net.continuumsecurity.zap.Scan");
+        recording.enable("net.continuumsecurity.zap.ApiCall");
+        recording.start();
+        Object call = JfrEvents.beginApiCall();
+        JfrEvents.endApiCall(call, "core", "other", "messagesHar", 1234, false);
+        JfrEvents.scanStarted("ascan", 7, "http://app/");
+        for (int progress : new int[]{0, 10, 30, 40, 60, 99, 100, 100}) {
+            JfrEvents.scanProgress("ascan", 7, progress);
+        }
+        recording.stop();
+        File file = File.createTempFile("zap", ".jfr");
+        try {
+            recording.dump(file.toPath());
+            List<String> transitions = new ArrayList<String>();
+            String endpoint = null;
+            for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+                String name = event.getEventType().getName();
+                if (name.equals("net.continuumsecurity.zap.Scan")) {
+                    transitions.add(event.getString("transition") + " " + Math.round(event.getDouble("progress") * 100));
+                } else if (name.equals("net.continuumsecurity.zap.ApiCall")) {
+                    endpoint = event.getString("endpoint") + " " + event.getLong("bytes");
+                }
+            }
+            assertThat(transitions, equalTo(Arrays.asList("started 0", "progress 25", "progress 50", "progress 75",
+                    "finished 100")));
+            assertThat(endpoint, equalTo("core/messagesHar 1234"));
+        } finally {
+            recording.close();
+            file.delete();
+        }
+    }
+}